@@ -0,0 +1,76 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compare two JMH JSON results, e.g. of the base and the head of a change, and exit with 1 when a benchmark regressed by more than
+ * the threshold, 10% by default.
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar com.engineering.challenge.solution.benchmarks.BenchmarkComparison base.json head.json [10]
+ * </pre>
+ */
+public class BenchmarkComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison <base.json> <head.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10d;
+
+        Map<String, JsonNode> base = read(args[0]);
+        Map<String, JsonNode> head = read(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-60s %14s %14s %9s%n", "Benchmark", "Base", "Head", "Change");
+        for (Map.Entry<String, JsonNode> entry : head.entrySet()) {
+            JsonNode baseResult = base.get(entry.getKey());
+            if (baseResult == null) continue;
+
+            JsonNode headResult = entry.getValue();
+            double baseScore = baseResult.path("primaryMetric").path("score").asDouble();
+            double headScore = headResult.path("primaryMetric").path("score").asDouble();
+            if (baseScore == 0) continue;
+
+            // throughput is better higher, the average, sample and single shot times are better lower.
+            double change = (headScore - baseScore) / baseScore * 100;
+            double worse = "thrpt".equals(headResult.path("mode").asText()) ? -change : change;
+            boolean regressed = worse > threshold;
+            if (regressed) regressions++;
+
+            System.out.printf("%-60s %14.3f %14.3f %+8.1f%%%s%n",
+                entry.getKey(), baseScore, headScore, change, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    // keyed by the benchmark, mode and params, so the same benchmark of different params is compared separately.
+    private static Map<String, JsonNode> read(String path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(path))) {
+            String benchmark = result.path("benchmark").asText();
+            // class and method only, the package is the same for all.
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            StringBuilder key = new StringBuilder(name).append(" ").append(result.path("mode").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(" ").append(param.getKey()).append("=").append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
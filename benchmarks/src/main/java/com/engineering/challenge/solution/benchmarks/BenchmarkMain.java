@@ -0,0 +1,21 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar, runs JMH with the results exported as JSON to jmh-result.json unless -rf is given, so every
+ * run leaves a file to compare with {@link BenchmarkComparison}.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        // jmh names the file jmh-result.json unless -rff is given.
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(Arrays.asList("-rf", "json"));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
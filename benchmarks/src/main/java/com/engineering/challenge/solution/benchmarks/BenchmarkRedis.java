@@ -0,0 +1,70 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.utils.OrderCodec;
+
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Redis for the benchmarks, an embedded server is started unless -Dredis.address=redis://host:port is given.
+ */
+public class BenchmarkRedis {
+
+    private RedisServer redisServer;
+
+    private RedissonClient redissonClient;
+
+    public RedissonClient start() {
+        redissonClient = connect(startServer());
+        return redissonClient;
+    }
+
+    /**
+     * A client of the server with the codec of the application, e.g. through a proxy, to shut down by the caller.
+     */
+    public static RedissonClient connect(String address) {
+        Config config = new Config();
+        config.useSingleServer().setAddress(address);
+        config.setCodec(new OrderCodec());
+        return Redisson.create(config);
+    }
+
+    /**
+     * Start the embedded server unless -Dredis.address is given, without a client.
+     *
+     * @return the address of the server, e.g. redis://127.0.0.1:6379
+     */
+    public String startServer() {
+        String address = System.getProperty("redis.address");
+        if (address == null) {
+            int port = freePort();
+            redisServer = RedisServer.builder().port(port).setting("save \"\"").build();
+            redisServer.start();
+            address = "redis://127.0.0.1:" + port;
+        }
+        return address;
+    }
+
+    public void stop() {
+        if (redissonClient != null) {
+            redissonClient.shutdown();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
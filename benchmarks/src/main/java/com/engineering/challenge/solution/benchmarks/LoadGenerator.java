@@ -0,0 +1,304 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.RedisKafkaSolutionApplication;
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Open-loop load generator of POST /orders, i.e. the orders are sent at their arrival times whether or not the earlier ones have been
+ * answered, at a Poisson or a fixed rate. The orders are replayed from a JSON file like Engineering_Challenge_Orders.json, or generated.
+ * <p>
+ * The application is started in process against an embedded Redis and an embedded Kafka unless -Dload.target is given. The shelf
+ * change events are consumed to measure the time to shelf and to count the delivered and decayed orders, which needs
+ * -Dkafka.bootstrap along with -Dload.target.
+ * <p>
+ * Options, as system properties:
+ * <pre>
+ *   load.target       the base URL of a running application, e.g. http://localhost:8080
+ *   load.rate         orders per second, 3.25 by default
+ *   load.arrivals     poisson (default) or fixed
+ *   load.duration-s   how long to send orders, 60 by default
+ *   load.drain-s      how long to wait for the outcomes of the orders afterwards, 15 by default
+ *   load.orders       synthetic (default) or the path of a JSON array of orders to replay in a loop
+ *   load.seed         the seed of the arrivals and the synthetic orders, 1 by default
+ *   load.report       the JSON report, load-report.json by default
+ *   load.shelf-topic  the shelf change event topic of a running application, shelf-change-events by default
+ *   kafka.bootstrap   the Kafka of a running application
+ *   redis.address     the Redis of the in process application instead of the embedded one
+ *   load.redis-monitor true to count the Redis commands, keys and pub/sub traffic per order of the in process application, with
+ *                     MONITOR, e.g. along with -Dorder-app.placement-mode=lock
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final ShelfType[] TEMPS = {ShelfType.HOT, ShelfType.COLD, ShelfType.FROZEN};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LoadReport report = new LoadReport();
+
+    private final Map<Long, Long> intendedAt = new ConcurrentHashMap<>();
+
+    private final Map<Long, Long> shelvedAt = new ConcurrentHashMap<>();
+
+    private final Map<Long, RemovalReason> outcomes = new ConcurrentHashMap<>();
+
+    private volatile boolean consuming = true;
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+        // the kafka and netty threads of the application don't stop the jvm.
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        final double rate = Double.parseDouble(System.getProperty("load.rate", "3.25"));
+        final boolean poisson = !"fixed".equals(System.getProperty("load.arrivals", "poisson"));
+        final long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("load.duration-s", "60")));
+        final long drainNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("load.drain-s", "15")));
+        final String source = System.getProperty("load.orders", "synthetic");
+        final Random random = new Random(Long.parseLong(System.getProperty("load.seed", "1")));
+
+        String target = System.getProperty("load.target");
+        String kafkaBootstrap = System.getProperty("kafka.bootstrap");
+        String shelfTopic = System.getProperty("load.shelf-topic", "shelf-change-events");
+
+        BenchmarkRedis redis = null;
+        EmbeddedKafkaBroker kafka = null;
+        ConfigurableApplicationContext application = null;
+        RedisTrafficMonitor redisTrafficMonitor = null;
+        Thread consumer = null;
+        try {
+            if (target == null) {
+                redis = new BenchmarkRedis();
+                URI redisAddress = URI.create(redis.startServer());
+                kafka = new EmbeddedKafkaBroker(1, true);
+                kafka.afterPropertiesSet();
+                kafkaBootstrap = kafka.getBrokersAsString();
+
+                application = startApplication(redisAddress, kafkaBootstrap);
+                target = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+                shelfTopic = application.getEnvironment().getProperty("order-app.shelf-change-event-topic-name");
+                if (Boolean.getBoolean("load.redis-monitor")) {
+                    // from the first order on, i.e. without the startup of the application.
+                    redisTrafficMonitor = new RedisTrafficMonitor(redisAddress.toString());
+                }
+            }
+            if (kafkaBootstrap != null) {
+                consumer = consumeShelfEvents(kafkaBootstrap, shelfTopic);
+            }
+
+            List<OrderDTO> orders = "synthetic".equals(source) ? null : readOrders(source);
+            report.config("target", target);
+            report.config("arrivals", poisson ? "poisson" : "fixed");
+            report.config("rate", rate);
+            report.config("durationS", TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+            report.config("orders", source);
+            report.config("shelfEvents", consumer != null);
+
+            WebClient webClient = WebClient.create(target);
+            final long start = System.nanoTime();
+            long offset = 0;
+            for (int i = 0; offset < durationNanos; i++) {
+                final long intended = start + offset;
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(webClient, orders != null ? orders.get(i % orders.size()) : syntheticOrder(i, random), intended);
+
+                // exponential inter-arrival times make a poisson process.
+                double interval = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+                offset += (long) (interval * 1e9);
+            }
+            report.elapsed(System.nanoTime() - start);
+
+            // wait for the responses, and the outcomes of the orders if the shelf events are consumed.
+            final long drainDeadline = System.nanoTime() + drainNanos;
+            while (System.nanoTime() < drainDeadline && !isDrained(consumer != null)) {
+                Thread.sleep(200);
+            }
+            summarize();
+            if (redisTrafficMonitor != null) {
+                report.redisTraffic(redisTrafficMonitor.toMap(report.sent.get()));
+            }
+        } finally {
+            consuming = false;
+            if (redisTrafficMonitor != null) redisTrafficMonitor.close();
+            if (consumer != null) consumer.join(TimeUnit.SECONDS.toMillis(5));
+            if (application != null) application.close();
+            if (kafka != null) kafka.destroy();
+            if (redis != null) redis.stop();
+        }
+
+        File reportFile = new File(System.getProperty("load.report", "load-report.json"));
+        report.write(reportFile);
+        System.out.println(report.summary());
+        System.out.println("Load report is saved to " + reportFile);
+    }
+
+    private void send(WebClient webClient, OrderDTO order, long intended) {
+        report.sent.incrementAndGet();
+        webClient.post()
+            .uri("/orders")
+            .contentType(MediaType.APPLICATION_JSON)
+            .syncBody(order)
+            .retrieve()
+            .bodyToMono(OrderDTO.class)
+            .subscribe(
+                placed -> {
+                    LoadReport.record(report.placementLatency, System.nanoTime() - intended);
+                    intendedAt.put(placed.getIdentifier(), intended);
+                    report.accepted.incrementAndGet();
+                },
+                error -> report.failed.incrementAndGet()
+            );
+    }
+
+    private boolean isDrained(boolean withOutcomes) {
+        if (report.accepted.get() + report.failed.get() < report.sent.get()) return false;
+        return !withOutcomes || intendedAt.keySet().stream().allMatch(outcomes::containsKey);
+    }
+
+    private void summarize() {
+        intendedAt.forEach((orderIdentifier, intended) -> {
+            Long shelved = shelvedAt.get(orderIdentifier);
+            RemovalReason outcome = outcomes.get(orderIdentifier);
+            if (shelved != null) {
+                report.shelved++;
+                LoadReport.record(report.timeToShelf, shelved - intended);
+            }
+            if (outcome == RemovalReason.DELIVERED) {
+                report.delivered++;
+            } else if (outcome == RemovalReason.DECAYED) {
+                report.decayed++;
+            } else if (shelved == null) {
+                // no slot on both the target and the overflow shelf, or still retried when the run ended.
+                report.neverShelved++;
+            } else {
+                report.pending++;
+            }
+        });
+    }
+
+    /**
+     * Consume the shelf change events from now on, i.e. the first added event of each order and its last removal other than a move.
+     */
+    private Thread consumeShelfEvents(String bootstrap, String topic) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        properties.put(ConsumerConfig.GROUP_ID_CONFIG, "load-generator-" + UUID.randomUUID());
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        KafkaConsumer<String, String> kafkaConsumer = new KafkaConsumer<>(properties, new StringDeserializer(), new StringDeserializer());
+
+        List<PartitionInfo> partitions = kafkaConsumer.partitionsFor(topic);
+        for (int attempts = 0; (partitions == null || partitions.isEmpty()) && attempts < 30; attempts++) {
+            Thread.sleep(1000);
+            partitions = kafkaConsumer.partitionsFor(topic);
+        }
+        if (partitions == null || partitions.isEmpty()) {
+            kafkaConsumer.close();
+            throw new IllegalStateException("No shelf change event topic " + topic);
+        }
+        List<TopicPartition> topicPartitions = partitions.stream()
+            .map(partition -> new TopicPartition(topic, partition.partition()))
+            .collect(Collectors.toList());
+        kafkaConsumer.assign(topicPartitions);
+        kafkaConsumer.seekToEnd(topicPartitions);
+        // resolve the end offsets before the first order is sent.
+        topicPartitions.forEach(kafkaConsumer::position);
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (consuming) {
+                    for (ConsumerRecord<String, String> record : kafkaConsumer.poll(Duration.ofMillis(100))) {
+                        onShelfEvent(record.value(), System.nanoTime());
+                    }
+                }
+            } finally {
+                kafkaConsumer.close();
+            }
+        }, "load-generator-shelf-events");
+        thread.start();
+        return thread;
+    }
+
+    private void onShelfEvent(String json, long receivedAt) {
+        final ShelfEventDTO shelfEvent;
+        try {
+            shelfEvent = objectMapper.readValue(json, ShelfEventDTO.class);
+        } catch (IOException ex) {
+            return;
+        }
+        if (shelfEvent.getOrder() == null) return;
+
+        Long orderIdentifier = shelfEvent.getOrder().getIdentifier();
+        if (shelfEvent.getEvent() == ShelfEventType.ADDED) {
+            shelvedAt.putIfAbsent(orderIdentifier, receivedAt);
+        } else if (shelfEvent.getEvent() == ShelfEventType.REMOVED && shelfEvent.getReason() != RemovalReason.MOVED) {
+            outcomes.put(orderIdentifier, shelfEvent.getReason());
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(URI redisAddress, String kafkaBootstrap) {
+        // as command line args, which override the application.properties of the application.
+        String[] args = {
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--spring.redis.host=" + redisAddress.getHost(),
+            "--spring.redis.port=" + redisAddress.getPort(),
+            "--spring.kafka.bootstrap-servers=" + kafkaBootstrap,
+            "--kafka.bootstrap.servers=" + kafkaBootstrap
+        };
+        // the servlet api comes along with the embedded kafka, while the application is reactive.
+        return new SpringApplicationBuilder(RedisKafkaSolutionApplication.class)
+            .web(WebApplicationType.REACTIVE)
+            .run(args);
+    }
+
+    private List<OrderDTO> readOrders(String path) throws IOException {
+        return Arrays.asList(objectMapper.readValue(new File(path), OrderDTO[].class));
+    }
+
+    private static OrderDTO syntheticOrder(int i, Random random) {
+        OrderDTO order = new OrderDTO();
+        order.setName("Synthetic Order " + i);
+        order.setTemp(TEMPS[random.nextInt(TEMPS.length)]);
+        // about the ranges of Engineering_Challenge_Orders.json.
+        order.setShelfLife(20d + random.nextInt(581));
+        order.setDecayRate(0.05d + Math.round(random.nextDouble() * 85) / 100d);
+        return order;
+    }
+}
@@ -0,0 +1,152 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The outcome of a {@link LoadGenerator} run, i.e. the order counts and the latency histograms in microseconds, written as JSON with
+ * the percentiles in milliseconds and each histogram compressed and base64 encoded, so the runs can be merged or re-plotted later.
+ */
+public class LoadReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * From the intended send time of the order to its response, so a stalled server can't hide the orders it delayed.
+     */
+    final Histogram placementLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+    /**
+     * From the intended send time of the order to the first shelf event which added it to a shelf.
+     */
+    final Histogram timeToShelf = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+    final AtomicLong sent = new AtomicLong();
+
+    final AtomicLong accepted = new AtomicLong();
+
+    final AtomicLong failed = new AtomicLong();
+
+    long shelved;
+
+    long delivered;
+
+    long decayed;
+
+    long neverShelved;
+
+    long pending;
+
+    private final Map<String, Object> config = new LinkedHashMap<>();
+
+    private long elapsedNanos;
+
+    private Map<String, Object> redisTraffic;
+
+    void config(String key, Object value) {
+        config.put(key, value);
+    }
+
+    void elapsed(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The Redis traffic of the run, see {@link RedisTrafficMonitor}.
+     */
+    void redisTraffic(Map<String, Object> redisTraffic) {
+        this.redisTraffic = redisTraffic;
+    }
+
+    static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos))));
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+
+        Map<String, Object> orders = new LinkedHashMap<>();
+        orders.put("sent", sent.get());
+        orders.put("accepted", accepted.get());
+        orders.put("failed", failed.get());
+        orders.put("shelved", shelved);
+        orders.put("delivered", delivered);
+        orders.put("decayed", decayed);
+        orders.put("neverShelved", neverShelved);
+        orders.put("pending", pending);
+        report.put("orders", orders);
+
+        // wasted are the orders decayed on a shelf and the ones which never found a slot.
+        Map<String, Object> ratios = new LinkedHashMap<>();
+        ratios.put("delivered", ratio(delivered, accepted.get()));
+        ratios.put("wasted", ratio(decayed + neverShelved, accepted.get()));
+        report.put("ratios", ratios);
+
+        report.put("achievedRate", elapsedNanos > 0 ? sent.get() * 1e9 / elapsedNanos : 0d);
+        report.put("placementLatencyMs", toMap(placementLatency));
+        report.put("timeToShelfMs", toMap(timeToShelf));
+        if (redisTraffic != null) {
+            report.put("redisTraffic", redisTraffic);
+        }
+        return report;
+    }
+
+    void write(File file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, toMap());
+    }
+
+    String summary() {
+        String summary = String.format(
+            "sent %d, accepted %d, failed %d, shelved %d, delivered %d, decayed %d, never shelved %d, pending %d%n"
+                + "placement latency ms: %s%ntime to shelf ms:     %s",
+            sent.get(), accepted.get(), failed.get(), shelved, delivered, decayed, neverShelved, pending,
+            percentiles(placementLatency), percentiles(timeToShelf)
+        );
+        return redisTraffic == null ? summary : summary + String.format("%nredis traffic:        %s", redisTraffic);
+    }
+
+    private static Map<String, Object> toMap(Histogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.getTotalCount());
+        map.put("mean", histogram.getMean() / 1000);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            map.put(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]) / 1000d);
+        }
+        map.put("max", histogram.getMaxValue() / 1000d);
+
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        map.put("hdr", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        return map;
+    }
+
+    private static String percentiles(Histogram histogram) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            line.append(String.format("%s %.1f, ", PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]) / 1000d));
+        }
+        return line.append(String.format("max %.1f", histogram.getMaxValue() / 1000d)).toString();
+    }
+
+    private static double ratio(long count, long total) {
+        return total > 0 ? (double) count / total : 0d;
+    }
+}
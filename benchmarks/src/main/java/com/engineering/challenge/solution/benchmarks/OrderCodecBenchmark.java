@@ -0,0 +1,84 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.OrderCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.FstCodec;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Compare the default FST codec with the compact {@link OrderCodec} for the order entries on the shelves, i.e. encode and decode
+ * ns per order, the bytes per entry are printed on setup.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderCodecBenchmark {
+
+    @Param({"fst", "compact"})
+    public String codecName;
+
+    private Codec codec;
+
+    private Order order;
+
+    private ByteBuf encoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        codec = "fst".equals(codecName) ? new FstCodec() : new OrderCodec();
+
+        order = new Order();
+        order.setIdentifier(1234567890123L);
+        order.setName("Banana Split");
+        order.setTemp(ShelfType.FROZEN);
+        order.setShelfLife(20d);
+        order.setDecayRate(0.63d);
+        order.setOnShelfDate(LocalDateTime.now());
+        order.onMove();
+
+        encoded = codec.getMapValueEncoder().encode(order);
+        System.out.printf("%n[%s] %d bytes per order entry%n", codecName, encoded.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        encoded.release();
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        ByteBuf buf = codec.getMapValueEncoder().encode(order);
+        int size = buf.readableBytes();
+        buf.release();
+        return size;
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return codec.getMapValueDecoder().decode(encoded.duplicate(), null);
+    }
+}
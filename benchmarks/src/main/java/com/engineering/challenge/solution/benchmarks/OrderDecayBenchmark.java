@@ -0,0 +1,63 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The decay math of {@link Order}, i.e. ns per call of onMove on each placement and move, and of getNormalizedValue and
+ * getLatestDeliveryTime on each shelf snapshot and placement, along with the bytes per call with -prof gc.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderDecayBenchmark {
+
+    private Order order;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        order = new Order();
+        order.setIdentifier(1234567890123L);
+        order.setName("Banana Split");
+        order.setTemp(ShelfType.FROZEN);
+        // long enough to never decay within an iteration.
+        order.setShelfLife(1e9);
+        order.setDecayRate(0.63d);
+        order.setOnShelfDate(LocalDateTime.now());
+        order.onMove();
+    }
+
+    @Benchmark
+    public long onMove() {
+        order.onMove();
+        return order.getDecayDateMillis();
+    }
+
+    @Benchmark
+    public double getNormalizedValue() {
+        return order.getNormalizedValue();
+    }
+
+    @Benchmark
+    public double getLatestDeliveryTime() {
+        return order.getLatestDeliveryTime();
+    }
+}
@@ -0,0 +1,59 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.FNV1a;
+import com.engineering.challenge.solution.utils.SnowflakeIdGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.SerializationUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the order identifier derived on every {@link Order#getIdentifier()} call, i.e. the Java serialization of the name hashed
+ * with {@link FNV1a#hash64}, with the {@link SnowflakeIdGenerator} identifier assigned once on placement and read as a field since.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderIdentifierBenchmark {
+
+    private final SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(1);
+
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        order = new Order();
+        order.setName("Banana Split");
+        order.setIdentifier(idGenerator.nextId());
+    }
+
+    @Benchmark
+    public long derivedFromName() {
+        return FNV1a.hash64(SerializationUtils.serialize(order.getName()));
+    }
+
+    @Benchmark
+    public long assignOnce() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    public Long readAssigned() {
+        return order.getIdentifier();
+    }
+}
@@ -0,0 +1,94 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.domain.mapper.OrderMapper;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the reflective ModelMapper mapping with the hand-written {@link OrderMapper}, i.e. the cost per order of placing a new
+ * order (DTO to entity and back) and of a shelf snapshot (entities to DTOs).
+ * <p>
+ * Run with '-prof gc' to see the allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderMappingBenchmark {
+
+    @Param({"20"})
+    public int shelfSize;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    private OrderDTO newOrder;
+
+    private List<Order> shelf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        newOrder = new OrderDTO();
+        newOrder.setName("Banana Split");
+        newOrder.setTemp(ShelfType.FROZEN);
+        newOrder.setShelfLife(20d);
+        newOrder.setDecayRate(0.63d);
+
+        shelf = new ArrayList<>(shelfSize);
+        for (long i = 0; i < shelfSize; i++) {
+            Order order = OrderMapper.toOrder(newOrder);
+            order.setIdentifier(i);
+            order.setOnShelfDate(LocalDateTime.now());
+            order.onMove();
+            shelf.add(order);
+        }
+    }
+
+    @Benchmark
+    public OrderDTO placeNewOrderModelMapper() {
+        Order order = modelMapper.map(newOrder, Order.class);
+        return modelMapper.map(order, OrderDTO.class);
+    }
+
+    @Benchmark
+    public OrderDTO placeNewOrderOrderMapper() {
+        Order order = OrderMapper.toOrder(newOrder);
+        return OrderMapper.toOrderDTO(order);
+    }
+
+    @Benchmark
+    public ShelfDTO shelfSnapshotModelMapper() {
+        ShelfDTO shelfDTO = new ShelfDTO();
+        shelfDTO.setType(ShelfType.FROZEN);
+        shelfDTO.setOrders(shelf.stream().map(o -> modelMapper.map(o, OrderDTO.class)).collect(Collectors.toList()));
+        return shelfDTO;
+    }
+
+    @Benchmark
+    public ShelfDTO shelfSnapshotOrderMapper() {
+        return OrderMapper.toShelfDTO(ShelfType.FROZEN, shelf);
+    }
+}
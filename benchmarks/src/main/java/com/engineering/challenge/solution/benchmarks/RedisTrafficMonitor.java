@@ -0,0 +1,178 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count the traffic of a Redis server with the MONITOR command, i.e. the commands, the PUBLISH and SUBSCRIBE commands, and the
+ * distinct keys and channels, including the ones of the commands run by the scripts, so the keys created per order, e.g. a lock per
+ * order, show up next to the keys shared by all the orders.
+ * <p>
+ * MONITOR slows the server down, the counts are meant to compare the runs, not their latency.
+ */
+public class RedisTrafficMonitor implements Closeable {
+
+    private static final Set<String> NO_KEY_COMMANDS = new HashSet<>(Arrays.asList(
+        "ping", "info", "script", "client", "select", "multi", "exec", "discard", "time", "dbsize", "config", "echo", "auth", "quit",
+        "flushdb", "flushall", "keys", "scan", "readonly", "cluster", "command"
+    ));
+
+    private static final Set<String> ALL_KEY_COMMANDS = new HashSet<>(Arrays.asList("del", "exists", "mget", "unlink", "watch"));
+
+    private static final Set<String> SUBSCRIBE_COMMANDS = new HashSet<>(Arrays.asList(
+        "subscribe", "psubscribe", "unsubscribe", "punsubscribe"
+    ));
+
+    private final Socket socket;
+
+    private final Thread reader;
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private final AtomicLong publishes = new AtomicLong();
+
+    private final AtomicLong subscriptions = new AtomicLong();
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    /**
+     * Start monitoring the server from now on.
+     *
+     * @param redisAddress the address of the server, e.g. redis://127.0.0.1:6379
+     */
+    public RedisTrafficMonitor(String redisAddress) {
+        URI uri = URI.create(redisAddress);
+        try {
+            socket = new Socket(uri.getHost(), uri.getPort());
+            OutputStream out = socket.getOutputStream();
+            out.write("*1\r\n$7\r\nMONITOR\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            // +OK, the monitored commands follow.
+            in.readLine();
+            reader = new Thread(() -> read(in), "RedisTrafficMonitor");
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to monitor " + redisAddress, ex);
+        }
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * The counts so far, and per order.
+     */
+    public Map<String, Object> toMap(long orders) {
+        Map<String, Object> traffic = new LinkedHashMap<>();
+        traffic.put("commands", commands.get());
+        traffic.put("keys", keys.size());
+        traffic.put("publishes", publishes.get());
+        traffic.put("subscriptions", subscriptions.get());
+        traffic.put("channels", channels.size());
+        traffic.put("commandsPerOrder", perOrder(commands.get(), orders));
+        traffic.put("keysPerOrder", perOrder(keys.size(), orders));
+        traffic.put("publishesPerOrder", perOrder(publishes.get(), orders));
+        traffic.put("subscriptionsPerOrder", perOrder(subscriptions.get(), orders));
+        return traffic;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // closed already.
+        }
+    }
+
+    private void read(BufferedReader in) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                onCommand(line);
+            }
+        } catch (IOException ex) {
+            if (!closed) throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * A monitored command, e.g. +1571234567.123456 [0 127.0.0.1:50123] "hget" "order_status" "\x01..." or [0 lua] from a script.
+     */
+    void onCommand(String line) {
+        int source = line.indexOf(']');
+        if (!line.startsWith("+") || source < 0) return;
+
+        List<String> args = parseArgs(line, source + 1);
+        if (args.isEmpty()) return;
+        commands.incrementAndGet();
+
+        String command = args.get(0).toLowerCase();
+        if ("publish".equals(command)) {
+            publishes.incrementAndGet();
+            if (args.size() > 1) channels.add(args.get(1));
+        } else if (SUBSCRIBE_COMMANDS.contains(command)) {
+            subscriptions.incrementAndGet();
+            channels.addAll(args.subList(1, args.size()));
+        } else if ("eval".equals(command) || "evalsha".equals(command)) {
+            // the keys of the script are listed again by the commands it runs, which are monitored too.
+            int numKeys = args.size() > 2 ? Integer.parseInt(args.get(2)) : 0;
+            keys.addAll(args.subList(3, Math.min(args.size(), 3 + numKeys)));
+        } else if (ALL_KEY_COMMANDS.contains(command)) {
+            keys.addAll(args.subList(1, args.size()));
+        } else if (!NO_KEY_COMMANDS.contains(command) && args.size() > 1) {
+            keys.add(args.get(1));
+        }
+    }
+
+    /**
+     * The quoted args of the monitored command, whose special chars are escaped like \" \\ \n or \xff.
+     */
+    static List<String> parseArgs(String line, int from) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = null;
+        for (int i = from; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (arg == null) {
+                if (c == '"') arg = new StringBuilder();
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                if (escaped == 'x' && i + 2 < line.length()) {
+                    arg.append((char) Integer.parseInt(line.substring(i + 1, i + 3), 16));
+                    i += 2;
+                } else {
+                    arg.append(escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped == 't' ? '\t' : escaped);
+                }
+            } else if (c == '"') {
+                args.add(arg.toString());
+                arg = null;
+            } else {
+                arg.append(c);
+            }
+        }
+        return args;
+    }
+
+    private static double perOrder(long count, long orders) {
+        return orders > 0 ? (double) count / orders : 0d;
+    }
+}
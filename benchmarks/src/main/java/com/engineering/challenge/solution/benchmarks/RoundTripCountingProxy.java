@@ -0,0 +1,127 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TCP proxy in front of Redis counting the network round trips, i.e. the requests sent on a connection after a reply on it, so the
+ * commands of a pipelined batch sent together count once.
+ * <p>
+ * This is exact for a client waiting for the reply before its next request on the connection, e.g. a single benchmark thread.
+ */
+public class RoundTripCountingProxy implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final String redisHost;
+
+    private final int redisPort;
+
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "RoundTripCountingProxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean closed;
+
+    /**
+     * Start the proxy on a free local port.
+     *
+     * @param redisAddress the address of the server, e.g. redis://127.0.0.1:6379
+     */
+    public RoundTripCountingProxy(String redisAddress) {
+        URI uri = URI.create(redisAddress);
+        redisHost = uri.getHost();
+        redisPort = uri.getPort();
+        try {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        executor.execute(this::acceptConnections);
+    }
+
+    /**
+     * The address to connect to instead of the server, e.g. redis://127.0.0.1:50123
+     */
+    public String getAddress() {
+        return "redis://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public void reset() {
+        roundTrips.set(0);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        executor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            try {
+                Socket client = serverSocket.accept();
+                Socket server = new Socket(redisHost, redisPort);
+                client.setTcpNoDelay(true);
+                server.setTcpNoDelay(true);
+                // the first request of the connection is a round trip too.
+                AtomicBoolean replied = new AtomicBoolean(true);
+                executor.execute(() -> forward(client, server, replied, true));
+                executor.execute(() -> forward(server, client, replied, false));
+            } catch (IOException ex) {
+                if (!closed) throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private void forward(Socket from, Socket to, AtomicBoolean replied, boolean request) {
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            InputStream in = from.getInputStream();
+            OutputStream out = to.getOutputStream();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (!request) {
+                    // flagged before the client sees the reply, i.e. before its next request.
+                    replied.set(true);
+                } else if (replied.compareAndSet(true, false)) {
+                    roundTrips.incrementAndGet();
+                }
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // the connection is closed.
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            // closed already.
+        }
+    }
+}
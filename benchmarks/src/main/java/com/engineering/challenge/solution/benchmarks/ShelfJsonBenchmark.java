@@ -0,0 +1,82 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.configuration.ObjectMapperConfig;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.domain.mapper.OrderMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization and deserialization of a {@link ShelfDTO} with the ObjectMapper of the application, i.e. ns per shelf of the
+ * snapshots sent to the shelf streams and read back by their subscribers, the bytes per shelf are printed on setup.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShelfJsonBenchmark {
+
+    @Param({"20"})
+    public int shelfSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapperConfig().customObjectMapper();
+
+    private ShelfDTO shelf;
+
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        OrderDTO newOrder = new OrderDTO();
+        newOrder.setName("Banana Split");
+        newOrder.setTemp(ShelfType.FROZEN);
+        newOrder.setShelfLife(20d);
+        newOrder.setDecayRate(0.63d);
+
+        List<Order> orders = new ArrayList<>(shelfSize);
+        for (long i = 0; i < shelfSize; i++) {
+            Order order = OrderMapper.toOrder(newOrder);
+            order.setIdentifier(i);
+            order.setOnShelfDate(LocalDateTime.now());
+            order.onMove();
+            orders.add(order);
+        }
+        shelf = OrderMapper.toShelfDTO(ShelfType.FROZEN, orders);
+
+        json = objectMapper.writeValueAsBytes(shelf);
+        System.out.printf("%n%d bytes per shelf of %d orders%n", json.length, shelfSize);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(shelf);
+    }
+
+    @Benchmark
+    public ShelfDTO deserialize() throws IOException {
+        return objectMapper.readValue(json, ShelfDTO.class);
+    }
+}
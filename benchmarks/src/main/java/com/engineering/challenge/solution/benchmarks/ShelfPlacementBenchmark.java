@@ -0,0 +1,216 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.services.InMemoryShelfStore;
+import com.engineering.challenge.solution.services.KitchenMetrics;
+import com.engineering.challenge.solution.services.OrderRetryService;
+import com.engineering.challenge.solution.services.OrderService;
+import com.engineering.challenge.solution.services.OrderStatusMachine;
+import com.engineering.challenge.solution.services.RMapCacheManager;
+import com.engineering.challenge.solution.services.RedisShelfStore;
+import com.engineering.challenge.solution.services.ShelfDecayIndex;
+import com.engineering.challenge.solution.services.ShelfPlacementEngine;
+import com.engineering.challenge.solution.services.ShelfOwnerService;
+import com.engineering.challenge.solution.services.ShelfService;
+import com.engineering.challenge.solution.services.ShelfStore;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.redisson.api.RedissonClient;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+
+/**
+ * Compare the lock based placement with the atomic placement script, and the latter with the in-memory shelf store, i.e. orders/sec
+ * and p99 placement latency of {@link OrderService#accept(Order)}.
+ * <p>
+ * The shelves are large enough to never be full, so each placement takes the common path to the target shelf. In 'lock' mode
+ * the orders which fail to get the shelf lock are requeued instead of placed, the ratio is printed after each iteration.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class ShelfPlacementBenchmark {
+
+    private static final ShelfType[] TEMPS = {HOT, COLD, FROZEN};
+
+    /**
+     * 'memory' is the script placement mode on the {@link InMemoryShelfStore}, the others are the placement modes on Redis.
+     */
+    @Param({"lock", "script", "memory"})
+    public String placementMode;
+
+    private final BenchmarkRedis redis = new BenchmarkRedis();
+
+    private final AtomicLong orderSequence = new AtomicLong();
+
+    private RedissonClient redissonClient;
+
+    private KitchenMetrics kitchenMetrics;
+
+    private OrderRetryService orderRetryService;
+
+    private RMapCacheManager rMapCacheManager;
+
+    private ShelfPlacementEngine shelfPlacementEngine;
+
+    private OrderService orderService;
+
+    private HashedTimingWheel orderTimingWheel;
+
+    private long requeuedBefore;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redissonClient = redis.start();
+        rMapCacheManager = new RMapCacheManager(redissonClient);
+        shelfPlacementEngine = new ShelfPlacementEngine(redissonClient, rMapCacheManager);
+        shelfPlacementEngine.init();
+
+        kitchenMetrics = new KitchenMetrics(new SimpleMeterRegistry());
+        orderRetryService = new OrderRetryService(new NoopKafkaTemplate(), kitchenMetrics);
+        setField(orderRetryService, "topicName", "order-change-benchmark-events");
+        setField(orderRetryService, "retryDelays", new long[]{1000, 5000, 25000});
+        orderRetryService.init();
+
+    }
+
+    @Setup(Level.Iteration)
+    public void clearShelves() {
+        redissonClient.getKeys().flushdb();
+        if (orderTimingWheel != null) {
+            orderTimingWheel.stop();
+        }
+        // the local deadlines are armed as in the application, but never due within the benchmark.
+        orderTimingWheel = new HashedTimingWheel("BenchmarkTimingWheel", 10, TimeUnit.MILLISECONDS, 512, Runnable::run);
+        ShelfDecayIndex shelfDecayIndex = new ShelfDecayIndex(redissonClient, orderTimingWheel);
+        ShelfStore shelfStore = "memory".equals(placementMode)
+            ? new InMemoryShelfStore(orderTimingWheel)
+            : new RedisShelfStore(redissonClient, rMapCacheManager, shelfPlacementEngine, shelfDecayIndex);
+        orderService = new OrderService(
+            redissonClient,
+            rMapCacheManager,
+            new NoopShelfService(),
+            shelfStore,
+            orderRetryService,
+            Mockito.mock(ShelfOwnerService.class, Mockito.withSettings().stubOnly()),
+            shelfDecayIndex,
+            new OrderStatusMachine(redissonClient, kitchenMetrics),
+            kitchenMetrics
+        );
+        Map<ShelfType, Integer> shelfCapacity = new EnumMap<>(ShelfType.class);
+        for (ShelfType shelfType : ShelfType.values()) {
+            shelfCapacity.put(shelfType, Integer.MAX_VALUE);
+        }
+        setField(orderService, "shelfCapacity", shelfCapacity);
+        setField(orderService, "placementMode", "memory".equals(placementMode) ? "script" : placementMode);
+        requeuedBefore = getRequeued();
+        orderSequence.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRequeued() {
+        System.out.printf("%n[%s] requeued %d of %d orders%n", placementMode, getRequeued() - requeuedBefore, orderSequence.get());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        orderTimingWheel.stop();
+        redis.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void accept() {
+        orderService.accept(newOrder(orderSequence.incrementAndGet()));
+    }
+
+    private long getRequeued() {
+        return orderRetryService.getRequeueCounts().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static Order newOrder(long sequence) {
+        Order order = new Order();
+        order.setIdentifier(sequence);
+        order.setName("Benchmark Order " + sequence);
+        order.setTemp(TEMPS[(int) (sequence % TEMPS.length)]);
+        order.setShelfLife(300d);
+        order.setDecayRate(0.5d);
+        return order;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    /**
+     * Drop the shelf changes instead of publishing them, a mock costs more per call than the in-memory placement.
+     */
+    static class NoopShelfService extends ShelfService {
+
+        NoopShelfService() {
+            super(null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public void onOrderAdded(ShelfType shelfType, Order order) {
+        }
+
+        @Override
+        public void onOrderRemoved(ShelfType shelfType, Order order, RemovalReason reason) {
+        }
+    }
+
+    /**
+     * Drop the requeued orders instead of sending them to Kafka.
+     */
+    static class NoopKafkaTemplate extends KafkaTemplate<Long, Object> {
+
+        NoopKafkaTemplate() {
+            super(() -> {
+                throw new UnsupportedOperationException();
+            });
+        }
+
+        @Override
+        public ListenableFuture<SendResult<Long, Object>> send(ProducerRecord<Long, Object> record) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.services.KitchenMetrics;
+import com.engineering.challenge.solution.services.OrderRetryService;
+import com.engineering.challenge.solution.services.OrderService;
+import com.engineering.challenge.solution.services.OrderStatusMachine;
+import com.engineering.challenge.solution.services.RMapCacheManager;
+import com.engineering.challenge.solution.services.RedisShelfStore;
+import com.engineering.challenge.solution.services.ShelfDecayIndex;
+import com.engineering.challenge.solution.services.ShelfOwnerService;
+import com.engineering.challenge.solution.services.ShelfPlacementEngine;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.api.RedissonClient;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+
+/**
+ * Count the network round trips per order of the shelf operations on Redis, i.e. the client of the measured operation talks to Redis
+ * through a {@link RoundTripCountingProxy}, and the round trips per order are printed after each iteration.
+ * <p>
+ * 'place-lock' is the lock based placement, i.e. the shelf lock around the capacity check and the shelf, status and decay index
+ * writes, 'place-script' the placement script. 'deliver' removes the orders from the shelf as a delivery, and 'expire' as decayed,
+ * one by one for a batch size of 1, otherwise together. The orders to remove are put on the shelf beforehand by a client bypassing
+ * the proxy. The delivery service reads the statuses of a batch and removes it from the delivery schedule on top, i.e. two more round
+ * trips per batch.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(1)
+public class ShelfRoundTripBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"place-lock", "place-script", "deliver", "expire"})
+    public String operation;
+
+    /**
+     * The orders per call, 1 for one call per order.
+     */
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private final BenchmarkRedis redis = new BenchmarkRedis();
+
+    private final AtomicLong orderSequence = new AtomicLong();
+
+    private RoundTripCountingProxy proxy;
+
+    private RedissonClient directClient;
+
+    private RedissonClient proxiedClient;
+
+    private HashedTimingWheel orderTimingWheel;
+
+    private RedisShelfStore directStore;
+
+    private RedisShelfStore proxiedStore;
+
+    private OrderService orderService;
+
+    private List<Order> orders = new ArrayList<>();
+
+    private long orderCount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String address = redis.startServer();
+        proxy = new RoundTripCountingProxy(address);
+        directClient = BenchmarkRedis.connect(address);
+        proxiedClient = BenchmarkRedis.connect(proxy.getAddress());
+        // the local deadlines are armed as in the application, but never due within the benchmark.
+        orderTimingWheel = new HashedTimingWheel("BenchmarkTimingWheel", 10, TimeUnit.MILLISECONDS, 512, Runnable::run);
+
+        directStore = newShelfStore(directClient);
+        proxiedStore = newShelfStore(proxiedClient);
+
+        KitchenMetrics kitchenMetrics = new KitchenMetrics(new SimpleMeterRegistry());
+        OrderRetryService orderRetryService = new OrderRetryService(new ShelfPlacementBenchmark.NoopKafkaTemplate(), kitchenMetrics);
+        orderService = new OrderService(
+            proxiedClient,
+            new RMapCacheManager(proxiedClient),
+            new ShelfPlacementBenchmark.NoopShelfService(),
+            proxiedStore,
+            orderRetryService,
+            Mockito.mock(ShelfOwnerService.class, Mockito.withSettings().stubOnly()),
+            new ShelfDecayIndex(proxiedClient, orderTimingWheel),
+            new OrderStatusMachine(proxiedClient, kitchenMetrics),
+            kitchenMetrics
+        );
+        Map<ShelfType, Integer> shelfCapacity = new EnumMap<>(ShelfType.class);
+        for (ShelfType shelfType : ShelfType.values()) {
+            shelfCapacity.put(shelfType, Integer.MAX_VALUE);
+        }
+        setField(orderService, "shelfCapacity", shelfCapacity);
+        setField(orderService, "placementMode", "lock");
+    }
+
+    @Setup(Level.Iteration)
+    public void clearShelves() {
+        directClient.getKeys().flushdb();
+        proxy.reset();
+        orderCount = 0;
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareOrders() {
+        orders = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Order order = newOrder(orderSequence.incrementAndGet());
+            if (!operation.startsWith("place")) {
+                directStore.place(order, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            }
+            orders.add(order);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRoundTrips() {
+        System.out.printf("%n[%s, batch %d] %.2f round trips per order%n", operation, batchSize, (double) proxy.getRoundTrips() / orderCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        orderTimingWheel.stop();
+        proxiedClient.shutdown();
+        directClient.shutdown();
+        proxy.close();
+        redis.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int run() {
+        int done = 0;
+        for (int from = 0; from < orders.size(); from += batchSize) {
+            done += run(orders.subList(from, Math.min(from + batchSize, orders.size())));
+        }
+        orderCount += orders.size();
+        return done;
+    }
+
+    private int run(List<Order> batch) {
+        switch (operation) {
+            case "place-lock":
+                batch.forEach(orderService::accept);
+                return batch.size();
+            case "place-script":
+                batch.forEach(order -> proxiedStore.place(order, Integer.MAX_VALUE, Integer.MAX_VALUE));
+                return batch.size();
+            case "deliver":
+                if (batch.size() == 1) {
+                    return proxiedStore.remove(HOT, batch.get(0).getIdentifier()) == null ? 0 : 1;
+                }
+                List<Long> orderIdentifiers = new ArrayList<>(batch.size());
+                batch.forEach(order -> orderIdentifiers.add(order.getIdentifier()));
+                return proxiedStore.removeAll(HOT, orderIdentifiers).size();
+            case "expire":
+                if (batch.size() == 1) {
+                    Order order = batch.get(0);
+                    return proxiedStore.removeDecayed(HOT, HOT, order.getIdentifier(), order.getDecayDateMillis()) == null ? 0 : 1;
+                }
+                return proxiedStore.removeAllDecayed(HOT, batch).size();
+            default:
+                throw new IllegalArgumentException(operation);
+        }
+    }
+
+    private RedisShelfStore newShelfStore(RedissonClient redissonClient) {
+        RMapCacheManager rMapCacheManager = new RMapCacheManager(redissonClient);
+        ShelfPlacementEngine shelfPlacementEngine = new ShelfPlacementEngine(redissonClient, rMapCacheManager);
+        shelfPlacementEngine.init();
+        return new RedisShelfStore(
+            redissonClient, rMapCacheManager, shelfPlacementEngine, new ShelfDecayIndex(redissonClient, orderTimingWheel)
+        );
+    }
+
+    private static Order newOrder(long sequence) {
+        Order order = new Order();
+        order.setIdentifier(sequence);
+        order.setName("Benchmark Order " + sequence);
+        order.setTemp(HOT);
+        order.setShelfLife(300d);
+        order.setDecayRate(0.5d);
+        return order;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
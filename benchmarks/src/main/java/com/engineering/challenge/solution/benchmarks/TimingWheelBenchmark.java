@@ -0,0 +1,189 @@
+package com.engineering.challenge.solution.benchmarks;
+
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compare the task scheduler heap with the {@link HashedTimingWheel} for the order timers, with the pickup timers of
+ * {@code pendingOrders} orders pending, i.e. 20-100s out.
+ * <p>
+ * scheduleAndCancel is the throughput of arming and cancelling one more timer, alone and by 4 threads, and jitter fires a batch of
+ * timers due within 500ms and prints the percentiles of how late they fire on tear down.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimingWheelBenchmark {
+
+    private static final int JITTER_TIMERS = 10_000;
+
+    @Param({"scheduler", "wheel"})
+    public String timerName;
+
+    @Param({"100000"})
+    public int pendingOrders;
+
+    private Timer timer;
+
+    private long[] lateness = new long[0];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("scheduler".equals(timerName)) {
+            ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+            scheduler.setPoolSize(1);
+            // otherwise the cancelled timers stay on the heap until due.
+            scheduler.setRemoveOnCancelPolicy(true);
+            scheduler.initialize();
+            timer = new SchedulerTimer(scheduler);
+        } else {
+            // the configured resolution, i.e. order-app.timer-tick-ms and order-app.timer-wheel-size.
+            timer = new WheelTimer(new HashedTimingWheel("BenchmarkTimingWheel", 10, TimeUnit.MILLISECONDS, 512, Runnable::run));
+        }
+        for (int i = 0; i < pendingOrders; i++) {
+            timer.schedule(() -> {
+            }, pickupDelay());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timer.stop();
+        if (lateness.length > 0) {
+            Arrays.sort(lateness);
+            System.out.printf("%n%s lateness of %d timers (ms): p50=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                timerName, lateness.length, percentile(0.5), percentile(0.99), percentile(0.999), lateness[lateness.length - 1] / 1e6);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean scheduleAndCancel() {
+        return timer.cancel(timer.schedule(() -> {
+        }, pickupDelay()));
+    }
+
+    /**
+     * As the order event consumers and the delivery poller arm and cancel timers at the same time.
+     */
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean scheduleAndCancelContended() {
+        return scheduleAndCancel();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void jitter() throws InterruptedException {
+        long[] late = new long[JITTER_TIMERS];
+        AtomicInteger fired = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(JITTER_TIMERS);
+        for (int i = 0; i < JITTER_TIMERS; i++) {
+            long delay = ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toNanos(500));
+            long deadline = System.nanoTime() + delay;
+            timer.schedule(() -> {
+                late[fired.getAndIncrement()] = System.nanoTime() - deadline;
+                latch.countDown();
+            }, delay);
+        }
+        latch.await();
+
+        long[] all = Arrays.copyOf(lateness, lateness.length + JITTER_TIMERS);
+        System.arraycopy(late, 0, all, lateness.length, JITTER_TIMERS);
+        lateness = all;
+    }
+
+    private double percentile(double percentile) {
+        return lateness[(int) Math.min(lateness.length - 1, Math.ceil(percentile * lateness.length) - 1)] / 1e6;
+    }
+
+    private static long pickupDelay() {
+        return TimeUnit.SECONDS.toNanos(ThreadLocalRandom.current().nextLong(20, 100));
+    }
+
+    private interface Timer {
+
+        Object schedule(Runnable task, long delayNanos);
+
+        boolean cancel(Object timeout);
+
+        void stop();
+    }
+
+    private static class SchedulerTimer implements Timer {
+
+        private final ThreadPoolTaskScheduler scheduler;
+
+        SchedulerTimer(ThreadPoolTaskScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Object schedule(Runnable task, long delayNanos) {
+            return scheduler.getScheduledExecutor().schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean cancel(Object timeout) {
+            return ((ScheduledFuture<?>) timeout).cancel(false);
+        }
+
+        @Override
+        public void stop() {
+            scheduler.shutdown();
+        }
+    }
+
+    private static class WheelTimer implements Timer {
+
+        private final HashedTimingWheel timingWheel;
+
+        WheelTimer(HashedTimingWheel timingWheel) {
+            this.timingWheel = timingWheel;
+        }
+
+        @Override
+        public Object schedule(Runnable task, long delayNanos) {
+            return timingWheel.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean cancel(Object timeout) {
+            return ((HashedTimingWheel.Timeout) timeout).cancel();
+        }
+
+        @Override
+        public void stop() {
+            timingWheel.stop();
+        }
+    }
+}
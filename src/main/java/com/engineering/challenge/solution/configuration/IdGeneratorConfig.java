@@ -0,0 +1,49 @@
+package com.engineering.challenge.solution.configuration;
+
+import com.engineering.challenge.solution.utils.FNV1a;
+import com.engineering.challenge.solution.utils.SnowflakeIdGenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    private static Logger logger = LoggerFactory.getLogger(IdGeneratorConfig.class);
+
+    @Value("${order-app.node-id:}")
+    private String nodeId;
+
+    @Value("${server.port:8080}")
+    private String serverPort;
+
+    @Bean
+    public SnowflakeIdGenerator orderIdGenerator() {
+        long id;
+        if (StringUtils.hasText(nodeId)) {
+            id = Long.parseLong(nodeId.trim());
+        } else {
+            // !important, set order-app.node-id explicitly when running many nodes, the derived one might collide.
+            String node = getHostName() + ":" + serverPort;
+            id = FNV1a.hash32(node.getBytes(StandardCharsets.UTF_8)) & SnowflakeIdGenerator.MAX_NODE_ID;
+            logger.info("order-app.node-id is not set, derived node id {} from {}", id, node);
+        }
+        return new SnowflakeIdGenerator(id);
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.engineering.challenge.solution.configuration;
 
+import com.engineering.challenge.solution.services.OrderRetryService;
+import com.engineering.challenge.solution.services.ShelfOwnerService;
+
+import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.LongSerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
@@ -13,26 +19,78 @@ import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
 
 @Configuration
 public class KafkaTemplateConfig {
 
+    private static Logger logger = LoggerFactory.getLogger(KafkaTemplateConfig.class);
+
+    private static final long TOPIC_OPERATION_TIMEOUT_S = 10;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Autowired
     private KafkaProperties kafkaProperties;
 
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
     @Value("${order-app.topic-partitions}")
     private Integer topicPartitions;
 
+    @Value("${order-app.order-event-topic-name}")
+    private String orderEventTopicName;
+
+    @Value("${order-app.retry-delays-ms:1000,5000,25000}")
+    private long[] retryDelays;
+
+    /**
+     * Create the retry topics, one per configured delay, which the KafkaAdmin doesn't as they are not NewTopic beans, before the retry
+     * containers are started. Like the KafkaAdmin, a broker not available is logged rather than fatal.
+     */
+    @PostConstruct
+    public void createRetryTopics() {
+        List<NewTopic> retryTopics = Arrays.stream(retryDelays)
+            .mapToObj(delay -> new NewTopic(OrderRetryService.getRetryTopicName(orderEventTopicName, delay), topicPartitions, (short) 1))
+            .collect(Collectors.toList());
+        AdminClient adminClient = AdminClient.create(kafkaAdmin.getConfig());
+        try {
+            Set<String> existing = adminClient.listTopics().names().get(TOPIC_OPERATION_TIMEOUT_S, TimeUnit.SECONDS);
+            List<NewTopic> missing = retryTopics.stream().filter(t -> !existing.contains(t.name())).collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                adminClient.createTopics(missing).all().get(TOPIC_OPERATION_TIMEOUT_S, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while creating the retry topics.", e);
+        } catch (ExecutionException | TimeoutException e) {
+            logger.error("Could not create the retry topics {}.", retryTopics, e);
+        } finally {
+            adminClient.close(TOPIC_OPERATION_TIMEOUT_S, TimeUnit.SECONDS);
+        }
+    }
+
     @Bean
     public Map<String, Object> producerConfigs() {
         Map<String, Object> props = new HashMap<>(kafkaProperties.buildProducerProperties());
@@ -52,11 +110,26 @@ public class KafkaTemplateConfig {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * The sender of the new orders, which serializes and hands the records to the producer off the calling thread, so the placement
+     * never blocks the event loop, e.g. on the metadata of the topic or a full producer buffer. A failed record doesn't stop the
+     * others, its result carries the exception.
+     */
+    @Bean
+    public KafkaSender<Long, Object> orderSender() {
+        return KafkaSender.create(SenderOptions.<Long, Object>create(producerConfigs()).stopOnError(false));
+    }
+
     @Bean
     public NewTopic orderEventsTopic(@Value("${order-app.order-event-topic-name}") String topicName) {
         return new NewTopic(topicName, topicPartitions, (short) 1);
     }
 
+    @Bean
+    public NewTopic orderEventsDeadLetterTopic() {
+        return new NewTopic(OrderRetryService.getDeadLetterTopicName(orderEventTopicName), topicPartitions, (short) 1);
+    }
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
@@ -67,10 +140,12 @@ public class KafkaTemplateConfig {
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(ShelfOwnerService shelfOwnerService) {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        // track which shelves this node owns in single-writer mode, i.e. which partitions of the order event topic are assigned.
+        factory.getContainerProperties().setConsumerRebalanceListener(shelfOwnerService);
 
         return factory;
     }
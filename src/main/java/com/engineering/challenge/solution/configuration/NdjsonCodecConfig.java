@@ -0,0 +1,35 @@
+package com.engineering.challenge.solution.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.util.Collections;
+
+/**
+ * Read and write newline delimited JSON, i.e. one order per line, which the Jackson codecs of WebFlux only know as
+ * application/stream+json.
+ */
+@Configuration
+public class NdjsonCodecConfig {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            // the decoder reads the top level values one by one, whether they are the elements of an array or on separate lines.
+            configurer.customCodecs().decoder(new Jackson2JsonDecoder(objectMapper, APPLICATION_NDJSON));
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(Collections.singletonList(APPLICATION_NDJSON));
+            configurer.customCodecs().encoder(encoder);
+        };
+    }
+}
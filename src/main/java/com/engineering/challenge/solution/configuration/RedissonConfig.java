@@ -1,8 +1,11 @@
 package com.engineering.challenge.solution.configuration;
 
+import com.engineering.challenge.solution.utils.OrderCodec;
+
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -21,7 +24,9 @@ import java.util.List;
 public class RedissonConfig {
 
     @Bean(destroyMethod = "shutdown")
-    RedissonClient redisson(RedisProperties redisProperties) {
+    RedissonClient redisson(RedisProperties redisProperties,
+                            @Value("${order-app.eviction-min-delay-s:5}") int evictionMinDelay,
+                            @Value("${order-app.eviction-max-delay-s:1800}") int evictionMaxDelay) {
         Config config = null;
         Method clusterMethod = ReflectionUtils.findMethod(RedisProperties.class, "getCluster");
         Method timeoutMethod = ReflectionUtils.findMethod(RedisProperties.class, "getTimeout");
@@ -81,9 +86,13 @@ public class RedissonConfig {
                 .setPassword(redisProperties.getPassword());
         }
 
-        // !important, disable EvictionScheduler from tuning the task lunch time.
-        config.setMinCleanUpDelay(1);
-        config.setMaxCleanUpDelay(1);
+        // the decay engine expires the orders at their decay date, the eviction is only the backstop, so let it back off while it
+        // finds nothing to evict.
+        config.setMinCleanUpDelay(evictionMinDelay);
+        config.setMaxCleanUpDelay(evictionMaxDelay);
+
+        // compact binary entries for the orders on the shelves, their identifiers and status.
+        config.setCodec(new OrderCodec());
 
         return Redisson.create(config);
     }
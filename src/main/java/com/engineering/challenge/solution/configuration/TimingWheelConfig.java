@@ -0,0 +1,28 @@
+package com.engineering.challenge.solution.configuration;
+
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class TimingWheelConfig {
+
+    @Value("${order-app.timer-tick-ms:10}")
+    private long tickDuration;
+
+    @Value("${order-app.timer-wheel-size:512}")
+    private int wheelSize;
+
+    /**
+     * The local timers of the orders, the due tasks run on the task scheduler.
+     */
+    @Bean(destroyMethod = "stop")
+    public HashedTimingWheel orderTimingWheel(ThreadPoolTaskScheduler threadPoolTaskScheduler) {
+        return new HashedTimingWheel("OrderTimingWheel", tickDuration, TimeUnit.MILLISECONDS, wheelSize, threadPoolTaskScheduler);
+    }
+}
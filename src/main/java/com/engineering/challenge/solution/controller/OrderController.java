@@ -1,14 +1,27 @@
 package com.engineering.challenge.solution.controller;
 
+import com.engineering.challenge.solution.configuration.NdjsonCodecConfig;
 import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.OrderResultDTO;
+import com.engineering.challenge.solution.domain.dto.OrderStatusDTO;
 import com.engineering.challenge.solution.services.OrderEventService;
+import com.engineering.challenge.solution.services.OrderStatusService;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RequestMapping("/orders")
 @RestController
@@ -17,13 +30,56 @@ public class OrderController {
 
     private final OrderEventService orderEventService;
 
+    private final OrderStatusService orderStatusService;
+
+    /**
+     * How many orders of a batch request are placed together, i.e. share one Redis round trip and are sent to Kafka at once.
+     */
+    @Value("${order-app.order-batch-size:500}")
+    private int batchSize;
+
     /**
      * Place a new order, note the delivery service will be automatically called and adding 2~10s delay to pick up the order from the shelf.
      * @param newOrder
      */
     @PostMapping
-    public OrderDTO placeNewOrder(@RequestBody OrderDTO newOrder) {
+    public Mono<OrderDTO> placeNewOrder(@RequestBody OrderDTO newOrder) {
         return orderEventService.placeNewOrder(newOrder);
     }
 
+    /**
+     * Place a batch of new orders, sent as a JSON array or newline delimited JSON, the orders are placed in chunks while they are
+     * read, and the result of each order is returned in the same order, as a JSON array or newline delimited JSON as accepted.
+     */
+    @PostMapping(
+        path = "/batch",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE, NdjsonCodecConfig.APPLICATION_NDJSON_VALUE}
+    )
+    public Flux<OrderResultDTO> placeNewOrders(@RequestBody Flux<OrderDTO> newOrders) {
+        return newOrders
+            .buffer(batchSize)
+            .concatMap(orderEventService::placeNewOrders)
+            .flatMapIterable(results -> results);
+    }
+
+    /**
+     * Get the shelf, normalized value and seconds to decay of the order, not found once it's delivered or wasted.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<OrderStatusDTO>> getOrderStatus(@PathVariable("id") Long id) {
+        return orderStatusService
+            .getStatus(id)
+            .filter(status -> status.getShelf() != null)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get the status of the orders at once, in the same order, the delivered, wasted or unknown orders come without a shelf.
+     */
+    @PostMapping("/status")
+    public Mono<List<OrderStatusDTO>> getOrderStatuses(@RequestBody List<Long> ids) {
+        return orderStatusService.getStatuses(ids);
+    }
+
 }
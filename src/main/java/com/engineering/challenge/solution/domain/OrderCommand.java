@@ -0,0 +1,32 @@
+package com.engineering.challenge.solution.domain;
+
+/**
+ * The commands sent to the owner of a shelf in single-writer mode, carried by the 'order-command' header of the order event.
+ */
+public enum OrderCommand {
+
+    /**
+     * Put the order on its target shelf, or forward it to the overflow shelf if the target shelf is full.
+     */
+    PLACE,
+
+    /**
+     * Put the order on the overflow shelf, or waste it if the overflow shelf is full.
+     */
+    OVERFLOW,
+
+    /**
+     * Pick up the order from the shelf it's on.
+     */
+    DELIVER,
+
+    /**
+     * The order decayed and has been evicted from the shelf.
+     */
+    EXPIRE,
+
+    /**
+     * The order left its target shelf, move the overflow orders back to the target shelves with free slots.
+     */
+    RESCUE
+}
@@ -0,0 +1,22 @@
+package com.engineering.challenge.solution.domain;
+
+/**
+ * Why an order has been removed from a shelf, along with the {@link ShelfEventType#REMOVED} events.
+ */
+public enum RemovalReason {
+
+    /**
+     * The order has been picked up by the driver.
+     */
+    DELIVERED,
+
+    /**
+     * The order value reached zero, i.e. it's wasted.
+     */
+    DECAYED,
+
+    /**
+     * The order has been moved from the overflow shelf to its target shelf.
+     */
+    MOVED
+}
@@ -0,0 +1,22 @@
+package com.engineering.challenge.solution.domain;
+
+/**
+ * The kinds of shelf change events on the 'shelf-change-events' topic.
+ */
+public enum ShelfEventType {
+
+    /**
+     * All the orders on the shelf, sent periodically or on request, e.g. a subscriber missed some events.
+     */
+    SNAPSHOT,
+
+    /**
+     * An order has been put on the shelf.
+     */
+    ADDED,
+
+    /**
+     * An order has been removed from the shelf, i.e. delivered, decayed or moved to another shelf, see {@link RemovalReason}.
+     */
+    REMOVED
+}
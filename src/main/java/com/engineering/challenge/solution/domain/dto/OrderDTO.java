@@ -10,6 +10,8 @@ import lombok.Data;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class OrderDTO {
 
+    private Long identifier;
+
     private String name;
 
     private Double decayRate;
@@ -0,0 +1,29 @@
+package com.engineering.challenge.solution.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of an order of a batch, in the order of the batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderResultDTO {
+
+    /**
+     * The placed order with its identifier, or the rejected order as received.
+     */
+    OrderDTO order;
+
+    /**
+     * Why the order is rejected, null if it's placed.
+     */
+    String error;
+}
@@ -0,0 +1,37 @@
+package com.engineering.challenge.solution.domain.dto;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Where an order is, and how long it lasts there.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderStatusDTO {
+
+    Long identifier;
+
+    /**
+     * The shelf on which the order is, waiting before it's put on a shelf, null once it's delivered or wasted, or if it's unknown.
+     */
+    ShelfType shelf;
+
+    /**
+     * The normalized value of the order now, null unless it's on a shelf.
+     */
+    Double normalizedValue;
+
+    /**
+     * The seconds until the order decays on its current shelf, null unless it's on a shelf.
+     */
+    Double secondsToDecay;
+}
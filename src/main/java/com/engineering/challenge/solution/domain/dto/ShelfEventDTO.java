@@ -0,0 +1,43 @@
+package com.engineering.challenge.solution.domain.dto;
+
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * A shelf change event, i.e. a delta with the added or removed order, or a snapshot with all the orders on the shelf.
+ * <p>
+ * The sequence increases by one on each change of the shelf, a snapshot carries the sequence of the last change it includes.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ShelfEventDTO {
+
+    ShelfType type;
+
+    ShelfEventType event;
+
+    Long sequence;
+
+    /**
+     * The added or removed order of a delta.
+     */
+    OrderDTO order;
+
+    /**
+     * Why the order of a removed delta left the shelf.
+     */
+    RemovalReason reason;
+
+    /**
+     * The orders on the shelf of a snapshot.
+     */
+    List<OrderDTO> orders;
+}
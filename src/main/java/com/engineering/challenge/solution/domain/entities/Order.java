@@ -1,40 +1,58 @@
 package com.engineering.challenge.solution.domain.entities;
 
 import com.engineering.challenge.solution.domain.ShelfType;
-import com.engineering.challenge.solution.utils.FNV1a;
-
-import org.springframework.util.SerializationUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
+import lombok.AccessLevel;
 import lombok.Data;
-
-import static java.time.temporal.ChronoUnit.MILLIS;
-import static java.time.temporal.ChronoUnit.SECONDS;
-
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The decay state is held as primitives, i.e. the value as a double which is NaN until the first move and the dates as epoch millis
+ * which are {@link #NO_DATE} until set, so the decay math doesn't allocate. The boxed and date-time accessors are kept for the JSON
+ * shape of the order events.
+ */
 @Data
+@JsonPropertyOrder({"identifier", "name", "decayRate", "temp", "shelfLife", "value", "onShelfDate", "isOnOverflowShelf", "decayDate"})
 public class Order implements Serializable {
 
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Assigned once when the order is placed, see {@link com.engineering.challenge.solution.utils.SnowflakeIdGenerator}.
+     */
+    private Long identifier;
+
     private String name;
 
-    private Double decayRate;
+    private double decayRate;
 
     private ShelfType temp;
 
-    private Double shelfLife;
+    private double shelfLife;
 
-    private Double value;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double value = Double.NaN;
 
-    private LocalDateTime onShelfDate;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long onShelfMillis = NO_DATE;
 
-    private Boolean isOnOverflowShelf = false;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean isOnOverflowShelf;
 
-    private LocalDateTime decayDate;
-
-    public Long getIdentifier() {
-        return FNV1a.hash64(SerializationUtils.serialize(name));
-    }
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long decayDateMillis = NO_DATE;
 
     /**
      *  Reset the order value, this needs to be called each time when the order has been picked up or put on the shelf.
@@ -43,25 +61,30 @@ public class Order implements Serializable {
      * V (N) = V (N-1)-(1 + actualDecayRate) * t where V (N) is the value on shelf-N and t is the time on shelf-N
      */
     public void onMove() {
-        Long onShelfDuration = SECONDS.between(onShelfDate, LocalDateTime.now());
-        Double actualDecayRate = getActualDecayRate();
-        if (value == null) {
-            value = shelfLife - (1d + actualDecayRate) * onShelfDuration;
-        } else {
-            value = value - (1d + actualDecayRate) * onShelfDuration;
-        }
+        onMove(System.currentTimeMillis());
+    }
+
+    public void onMove(long now) {
+        if (onShelfMillis == NO_DATE) throw new IllegalStateException("Order [" + identifier + "] is not on a shelf");
+        // whole seconds on the shelf.
+        long onShelfDuration = (now - onShelfMillis) / 1000;
+        value = (hasValue() ? value : shelfLife) - (1d + getActualDecayRate()) * onShelfDuration;
         // reset value happens always on picking up or putting the order on the shelf and it's almost instantly,
         // so trigger the recalculation of decay date is necessary.
-        calcDecayDate();
+        calcDecayDate(now);
     }
 
     /**
      * Get the normalized order value.
      * @return
      */
-    public Double getNormalizedValue() {
-        if (decayDate == null) calcDecayDate();
-        Long latestDeliveryTime = MILLIS.between(LocalDateTime.now(), decayDate);
+    public double getNormalizedValue() {
+        return getNormalizedValue(System.currentTimeMillis());
+    }
+
+    public double getNormalizedValue(long now) {
+        // as if the decay date is calculated now, when it's not yet.
+        long latestDeliveryTime = decayDateMillis != NO_DATE ? decayDateMillis - now : (long) (getLatestDeliveryTime() * 1000);
         return latestDeliveryTime * (1d + getActualDecayRate()) / (shelfLife * 1000);
     }
 
@@ -69,40 +92,119 @@ public class Order implements Serializable {
      * Calculate the decay date.
      */
     public void calcDecayDate() {
-        final Double latestDeliveryTime = getLatestDeliveryTime();
-        decayDate = LocalDateTime.now().plus(new Double(latestDeliveryTime * 1000).longValue(), MILLIS);
+        calcDecayDate(System.currentTimeMillis());
+    }
+
+    public void calcDecayDate(long now) {
+        decayDateMillis = now + (long) (getLatestDeliveryTime() * 1000);
     }
 
     /**
      * Get the latest delivery time in seconds.
      * @return
      */
-    public Double getLatestDeliveryTime() {
-        Double actualDecayRate = getActualDecayRate();
-        Double latestDeliveryTime = null;
-        if (value == null) {
-            latestDeliveryTime = new Double(shelfLife / (1d + actualDecayRate));
-        } else {
-            latestDeliveryTime = new Double(value / (1d + actualDecayRate));
-        }
-        return latestDeliveryTime;
-    }
-
-    private Double getActualDecayRate() {
+    public double getLatestDeliveryTime() {
+        return (hasValue() ? value : shelfLife) / (1d + getActualDecayRate());
+    }
+
+    public boolean hasValue() {
+        return !Double.isNaN(value);
+    }
+
+    public Double getValue() {
+        return hasValue() ? value : null;
+    }
+
+    public void setValue(Double value) {
+        this.value = value != null ? value : Double.NaN;
+    }
+
+    @JsonIgnore
+    public long getOnShelfMillis() {
+        return onShelfMillis;
+    }
+
+    @JsonIgnore
+    public void setOnShelfMillis(long onShelfMillis) {
+        this.onShelfMillis = onShelfMillis;
+    }
+
+    public LocalDateTime getOnShelfDate() {
+        return toLocalDateTime(onShelfMillis);
+    }
+
+    public void setOnShelfDate(LocalDateTime onShelfDate) {
+        this.onShelfMillis = toEpochMillis(onShelfDate);
+    }
+
+    public Boolean getIsOnOverflowShelf() {
+        return isOnOverflowShelf;
+    }
+
+    public void setIsOnOverflowShelf(Boolean isOnOverflowShelf) {
+        this.isOnOverflowShelf = Boolean.TRUE.equals(isOnOverflowShelf);
+    }
+
+    @JsonIgnore
+    public long getDecayDateMillis() {
+        return decayDateMillis;
+    }
+
+    @JsonIgnore
+    public void setDecayDateMillis(long decayDateMillis) {
+        this.decayDateMillis = decayDateMillis;
+    }
+
+    public LocalDateTime getDecayDate() {
+        return toLocalDateTime(decayDateMillis);
+    }
+
+    public void setDecayDate(LocalDateTime decayDate) {
+        this.decayDateMillis = toEpochMillis(decayDate);
+    }
+
+    /**
+     * A copy of the order, field by field.
+     */
+    public Order copy() {
+        Order copy = new Order();
+        copy.identifier = identifier;
+        copy.name = name;
+        copy.decayRate = decayRate;
+        copy.temp = temp;
+        copy.shelfLife = shelfLife;
+        copy.value = value;
+        copy.onShelfMillis = onShelfMillis;
+        copy.isOnOverflowShelf = isOnOverflowShelf;
+        copy.decayDateMillis = decayDateMillis;
+        return copy;
+    }
+
+    private double getActualDecayRate() {
         return isOnOverflowShelf ? 2 * decayRate : decayRate;
     }
 
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return epochMillis != NO_DATE ? LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()) : null;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NO_DATE;
+    }
+
     @Override
     public String toString() {
+        long now = System.currentTimeMillis();
         return "Order{" +
-            "name='" + name + '\'' +
+            "identifier=" + identifier +
+            ", name='" + name + '\'' +
             ", decayRate=" + decayRate +
             ", temp=" + temp +
             ", shelfLife=" + shelfLife +
             ", value=" + value +
-            ", onShelfDate=" + onShelfDate +
+            ", onShelfMillis=" + onShelfMillis +
             ", isOnOverflowShelf=" + isOnOverflowShelf +
-            ", normalizedValue=" + getNormalizedValue() +
+            ", normalizedValue=" + getNormalizedValue(now) +
             ", latestDeliveryTime=" + getLatestDeliveryTime() +
             '}';
     }
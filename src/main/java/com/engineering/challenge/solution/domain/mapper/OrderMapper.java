@@ -0,0 +1,67 @@
+package com.engineering.challenge.solution.domain.mapper;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hand-written mappers between the order entity and the DTOs, i.e. plain getter/setter calls instead of reflection, they run for
+ * every order of a shelf snapshot.
+ */
+public final class OrderMapper {
+
+    private OrderMapper() {
+    }
+
+    /**
+     * Map the new order from the client, the identifier is assigned on placement and the value is calculated on shelf.
+     */
+    public static Order toOrder(OrderDTO orderDTO) {
+        Order order = new Order();
+        order.setName(orderDTO.getName());
+        // the decay state is primitive, so a missing decay rate or shelf life is 0.
+        if (orderDTO.getDecayRate() != null) order.setDecayRate(orderDTO.getDecayRate());
+        order.setTemp(orderDTO.getTemp());
+        if (orderDTO.getShelfLife() != null) order.setShelfLife(orderDTO.getShelfLife());
+        return order;
+    }
+
+    public static OrderDTO toOrderDTO(Order order) {
+        return toOrderDTO(order, System.currentTimeMillis());
+    }
+
+    /**
+     * Map the order with its normalized value at the given epoch millis, e.g. the same for all the orders of a shelf.
+     */
+    public static OrderDTO toOrderDTO(Order order, long now) {
+        OrderDTO orderDTO = new OrderDTO();
+        orderDTO.setIdentifier(order.getIdentifier());
+        orderDTO.setName(order.getName());
+        orderDTO.setDecayRate(order.getDecayRate());
+        orderDTO.setTemp(order.getTemp());
+        orderDTO.setShelfLife(order.getShelfLife());
+        orderDTO.setNormalizedValue(order.getNormalizedValue(now));
+        return orderDTO;
+    }
+
+    public static List<OrderDTO> toOrderDTOs(Collection<Order> orders) {
+        final long now = System.currentTimeMillis();
+        List<OrderDTO> orderDTOs = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            orderDTOs.add(toOrderDTO(order, now));
+        }
+        return orderDTOs;
+    }
+
+    public static ShelfDTO toShelfDTO(ShelfType shelfType, Collection<Order> orders) {
+        ShelfDTO shelf = new ShelfDTO();
+        shelf.setType(shelfType);
+        shelf.setOrders(toOrderDTOs(orders));
+        return shelf;
+    }
+}
@@ -0,0 +1,240 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.Batcher;
+
+import org.redisson.api.RMapCache;
+import org.redisson.client.protocol.ScoredEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Waste the orders at their decay date, i.e. the local deadlines of the {@link ShelfStore} fire on the timing wheel, and the order is
+ * removed from its shelf along with its status by one atomic operation of the store, e.g. a script along with its decay index entry,
+ * then the shelf change is published and the overflow shelf is rebalanced if a target shelf has a free slot now. The deadlines due
+ * within order-app.removal-batch-window-ms are expired together, i.e. one round trip per shelf for the batch.
+ * <p>
+ * The orders whose node stopped before their decay date are found overdue in the decay index by a sweep on a fixed cadence, the
+ * Redisson eviction of the shelves only remains as the last backstop and backs off as it finds nothing to evict.
+ */
+@Service
+@RequiredArgsConstructor
+public class DecayEngine {
+
+    private static Logger logger = LoggerFactory.getLogger(DecayEngine.class);
+
+    private final RMapCacheManager rMapCacheManager;
+
+    private final ShelfService shelfService;
+
+    private final ShelfStore shelfStore;
+
+    private final ShelfOwnerService shelfOwnerService;
+
+    private final ShelfDecayIndex shelfDecayIndex;
+
+    private final OverflowRebalancer overflowRebalancer;
+
+    private final OrderStatusMachine orderStatusMachine;
+
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    private static final ShelfType[] TARGET_SHELVES = {HOT, COLD, FROZEN};
+
+    /**
+     * How long an order is overdue before the sweep takes it over from the local deadline of its node.
+     */
+    private static final long SWEEP_GRACE = 1000;
+
+    @Value("${order-app.decay-sweep-interval-ms:5000}")
+    private long sweepInterval;
+
+    @Value("${order-app.removal-batch-window-ms:10}")
+    private long removalBatchWindow;
+
+    @Value("${order-app.removal-batch-size:100}")
+    private int removalBatchSize;
+
+    private ScheduledFuture<?> sweepTask;
+
+    private Batcher<Deadline> expiryBatcher;
+
+    @PostConstruct
+    public void init() {
+        expiryBatcher = new Batcher<>(scheduler, removalBatchWindow, removalBatchSize, this::expire);
+        shelfStore.setDeadlineHandler(this::onDeadline);
+        sweepTask = scheduler.scheduleWithFixedDelay(this::sweepOverdueOrders, sweepInterval);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        shelfStore.setDeadlineHandler(null);
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+    }
+
+    void onDeadline(ShelfType shelfType, Order order) {
+        if (shelfOwnerService.isEnabled()) {
+            // the shelf owner is the only writer of the shelf.
+            shelfOwnerService.send(OrderCommand.EXPIRE, shelfType, order);
+            return;
+        }
+        expiryBatcher.add(new Deadline(shelfType, order));
+    }
+
+    /**
+     * Expire the orders whose deadlines are due together, i.e. one atomic removal of the store per shelf for the batch, and one overflow
+     * rebalance for all the slots freed on the target shelves.
+     */
+    void expire(List<Deadline> deadlines) {
+        Map<ShelfType, List<Order>> onShelves = new EnumMap<>(ShelfType.class);
+        deadlines.forEach(deadline -> onShelves.computeIfAbsent(deadline.shelfType, st -> new ArrayList<>()).add(deadline.order));
+        onShelves.forEach((shelfType, orders) -> {
+            try {
+                final long start = System.nanoTime();
+                List<Order> decayedOrders = shelfStore.removeAllDecayed(shelfType, orders);
+                decayedOrders.forEach(decayedOrder -> kitchenMetrics.recordRemoval(RemovalReason.DECAYED, start));
+                onDecayed(shelfType, decayedOrders);
+            } catch (Exception ex) {
+                // left to the sweep and the Redisson eviction.
+                logger.error("Failed to expire {} orders from shelf[{}]", orders.size(), shelfType, ex);
+            }
+        });
+        kitchenMetrics.recordBatch(KitchenMetrics.EXPIRE_BATCH, deadlines.size());
+    }
+
+    /**
+     * Single-writer mode, waste the decayed order, it's on the shelf still if the deadline is due, or it has been evicted by Redisson
+     * already and only its status is left, which is removed if it still names the shelf at the version read.
+     */
+    public void expireAsOwner(Order order, ShelfType shelfType) {
+        final long start = System.nanoTime();
+        Order decayedOrder = shelfStore.removeDecayed(
+            shelfType, order.getTemp(), order.getIdentifier(), order.getDecayDateMillis()
+        );
+        if (decayedOrder == null) {
+            RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+            OrderStatusMachine.VersionedStatus status = orderStatusMachine.get(order.getIdentifier());
+            // the order may have been moved or delivered meanwhile.
+            if (status.getShelfType() != shelfType || shelf.containsKey(order.getIdentifier())) return;
+            if (!orderStatusMachine.transition(order.getIdentifier(), status, null)) return;
+
+            shelfDecayIndex.remove(shelfType, order);
+            decayedOrder = order;
+        }
+        kitchenMetrics.recordRemoval(RemovalReason.DECAYED, start);
+        onDecayed(shelfType, Collections.singletonList(decayedOrder));
+    }
+
+    /**
+     * Expire the orders overdue in the decay index, i.e. whose node stopped before their decay date, each shelf is swept by its owner in
+     * single-writer mode and by every node otherwise, the script lets only one of them remove an order.
+     */
+    void sweepOverdueOrders() {
+        // every order of a local shelf store has its deadline on this node.
+        if (!shelfStore.isShared()) return;
+        try {
+            for (ShelfType temp : TARGET_SHELVES) {
+                sweepOverdueOrders(temp, temp);
+                sweepOverdueOrders(OVERFLOW, temp);
+            }
+        } catch (Exception ex) {
+            logger.error("Failed to sweep the overdue orders", ex);
+        }
+    }
+
+    /**
+     * The overdue orders of the index are expired at once, and the stale index entries are removed at once.
+     */
+    private void sweepOverdueOrders(ShelfType shelfType, ShelfType temp) {
+        if (shelfOwnerService.isEnabled() && !shelfOwnerService.isOwner(shelfType)) return;
+
+        Collection<ScoredEntry<Long>> overdueOrders = shelfDecayIndex.get(shelfType, temp)
+            .entryRange(Double.NEGATIVE_INFINITY, true, System.currentTimeMillis() - SWEEP_GRACE, true);
+        if (overdueOrders.isEmpty()) return;
+
+        List<Order> deadlines = new ArrayList<>(overdueOrders.size());
+        for (ScoredEntry<Long> overdueOrder : overdueOrders) {
+            // the order as far as the index knows it, i.e. the decay date it's expired for.
+            Order deadline = new Order();
+            deadline.setIdentifier(overdueOrder.getValue());
+            deadline.setTemp(temp);
+            deadline.setDecayDateMillis(overdueOrder.getScore().longValue());
+            deadlines.add(deadline);
+        }
+
+        final long start = System.nanoTime();
+        List<Order> decayedOrders = shelfStore.removeAllDecayed(shelfType, deadlines);
+        Set<Long> staleOrders = new HashSet<>();
+        deadlines.forEach(deadline -> staleOrders.add(deadline.getIdentifier()));
+        for (Order decayedOrder : decayedOrders) {
+            kitchenMetrics.recordRemoval(RemovalReason.DECAYED, start);
+            logger.info("Order [{}] overdue on shelf[{}], expire it.", decayedOrder.getIdentifier(), shelfType);
+            staleOrders.remove(decayedOrder.getIdentifier());
+        }
+        if (!staleOrders.isEmpty()) {
+            // the index entries are stale, e.g. the orders have been evicted by Redisson already.
+            shelfDecayIndex.get(shelfType, temp).removeAll(staleOrders);
+        }
+        onDecayed(shelfType, decayedOrders);
+    }
+
+    private void onDecayed(ShelfType shelfType, List<Order> orders) {
+        for (Order order : orders) {
+            logger.info("Order [{}]-[{}] decayed, will be wasted", order.getIdentifier(), order.getName());
+            shelfService.onOrderRemoved(shelfType, order, RemovalReason.DECAYED);
+        }
+        if (shelfType == OVERFLOW || orders.isEmpty()) return;
+
+        // the target shelf has free slots now.
+        if (shelfOwnerService.isEnabled()) {
+            orders.forEach(order -> shelfOwnerService.send(OrderCommand.RESCUE, OVERFLOW, order));
+        } else {
+            overflowRebalancer.rebalance();
+        }
+    }
+
+    /**
+     * A deadline fired at the decay date of the order, waiting for the batch.
+     */
+    static final class Deadline {
+
+        private final ShelfType shelfType;
+
+        private final Order order;
+
+        Deadline(ShelfType shelfType, Order order) {
+            this.shelfType = shelfType;
+            this.order = order;
+        }
+    }
+}
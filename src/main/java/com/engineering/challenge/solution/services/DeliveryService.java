@@ -1,23 +1,44 @@
 package com.engineering.challenge.solution.services;
 
 
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.RemovalReason;
 import com.engineering.challenge.solution.domain.ShelfType;
 import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.Batcher;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+import com.engineering.challenge.solution.utils.LuaScript;
 
 import org.redisson.api.RLock;
 import org.redisson.api.RMapCache;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScript;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 
-import lombok.RequiredArgsConstructor;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
-import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
@@ -33,52 +54,359 @@ public class DeliveryService {
 
     private final OrderService orderService;
 
+    private final ShelfOwnerService shelfOwnerService;
+
+    private final HashedTimingWheel orderTimingWheel;
+
+    private final ShelfStore shelfStore;
+
+    private final ShelfService shelfService;
+
+    private final OrderStatusMachine orderStatusMachine;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    /**
+     * The order identifiers scored by the due date of their delivery in millis.
+     */
+    static final String DELIVERY_SCHEDULE = "delivery_schedule";
+
+    private static final String CLAIM_DUE_DELIVERIES_SCRIPT = "scripts/claim-due-deliveries.lua";
+
+    private static final long WAITING_RETRY_DELAY = 1000;
+
+    /**
+     * How many shelves a delivery in lock mode tries, i.e. follows the order moved meanwhile, see {@link #deliverUnderLocks(Long)}.
+     */
+    private static final int MAX_DELIVERY_ATTEMPTS = 3;
+
+    @Value("${order-app.placement-mode:script}")
+    private String placementMode;
+
+    @Value("${order-app.delivery-poll-interval-ms:200}")
+    private long pollInterval;
+
+    /**
+     * How far ahead the deliveries are claimed, the claimed ones fire from the local timing wheel at their exact due date.
+     */
+    @Value("${order-app.delivery-lookahead-ms:1000}")
+    private long lookahead;
+
+    @Value("${order-app.delivery-batch-size:100}")
+    private int batchSize;
+
+    /**
+     * How long a claimed delivery is reserved for the node, it's due again if the node stops before delivering it.
+     */
+    @Value("${order-app.delivery-lease-ms:30000}")
+    private long leaseTime;
+
+    /**
+     * How long the due deliveries are collected to be removed from the shelves together, see {@link #deliverFromStore(List)}.
+     */
+    @Value("${order-app.removal-batch-window-ms:10}")
+    private long removalBatchWindow;
+
+    @Value("${order-app.removal-batch-size:100}")
+    private int removalBatchSize;
+
+    private LuaScript claimScript;
+
+    private ScheduledFuture<?> drainTask;
+
+    private Batcher<DueDelivery> deliveryBatcher;
+
     /**
      * Deliver the order, for now, it will only log the event, and in real production, an external system would be integrated.
+     * <p>
+     * The delivery is scheduled in Redis rather than in memory, so it survives restarts and is picked up by any node shortly before
+     * it's due. The shelves of a local shelf store don't survive restarts either, so their deliveries are only local timers.
      */
     public void accept(Order order) {
-        scheduler.schedule(
-            new Runnable() {
-                @Override
-                public void run() {
-                    final Long candidateOrderIdentifier = order.getIdentifier();
-
-                    // lock the order_status.
-                    RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
-                    RLock statusLock = orderStatus.getReadWriteLock(candidateOrderIdentifier).writeLock();
-                    statusLock.lock();
-                    try {
-                        // locate the shelf on which the order is.
-                        String shelfName = orderStatus.get(candidateOrderIdentifier);
-                        if (shelfName != null) {
-                            RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfName);
-                            RLock shelfLock = redissonClient.getReadWriteLock(shelfName + "_lock").writeLock();
-                            shelfLock.lock();
-                            try {
-                                Order candidateOrder = orderService.removeFromShelf(
-                                    candidateOrderIdentifier,
-                                    ShelfType.fromString(shelfName).equals(OVERFLOW),
-                                    shelf,
-                                    orderStatus
-                                );
-                                if (candidateOrder != null) {
-                                    logger.info("Deliver the order [{}]-[{}] successfully: {}", candidateOrderIdentifier, candidateOrder.getName(), candidateOrder);
-                                } else {
-                                    logger.warn("Failed to deliver the order [{}]-[{}] cause it already decayed.", candidateOrderIdentifier, order.getName());
-                                }
-                            } finally {
-                                shelfLock.unlock();
-                            }
-                        } else {
-                            logger.warn("Failed to deliver the order [{}]-[{}] cause it already decayed.", candidateOrderIdentifier, order.getName());
-                        }
-                    } finally {
-                        statusLock.unlock();
+        final Long orderIdentifier = order.getIdentifier();
+        long dueDate = System.currentTimeMillis() + getRandomNumberInRange(20000, 100000);
+        if (shelfStore.isShared()) {
+            getDeliverySchedule().add(dueDate, orderIdentifier);
+        } else {
+            orderTimingWheel.scheduleAt(() -> onDue(orderIdentifier, dueDate), dueDate);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        deliveryBatcher = new Batcher<>(scheduler, removalBatchWindow, removalBatchSize, this::deliverFromStore);
+        if (!shelfStore.isShared()) return;
+
+        claimScript = LuaScript.load(CLAIM_DUE_DELIVERIES_SCRIPT);
+        // the first drain runs on startup, i.e. picks up the due and overdue deliveries left by the stopped nodes.
+        drainTask = scheduler.scheduleWithFixedDelay(this::drainDueDeliveries, pollInterval);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+        }
+    }
+
+    /**
+     * Claim the deliveries due within the lookahead in batches and arm a local timer for each, the nodes share the work by claiming
+     * different batches.
+     */
+    void drainDueDeliveries() {
+        try {
+            List<Object> claimed;
+            do {
+                claimed = claimScript.eval(
+                    redissonClient.getScript(StringCodec.INSTANCE),
+                    RScript.ReturnType.MULTI,
+                    Collections.singletonList(DELIVERY_SCHEDULE),
+                    System.currentTimeMillis() + lookahead, batchSize, leaseTime
+                );
+                for (int i = 0; i + 1 < claimed.size(); i += 2) {
+                    Long orderIdentifier = Long.valueOf(claimed.get(i).toString());
+                    long dueDate = Double.valueOf(claimed.get(i + 1).toString()).longValue();
+                    orderTimingWheel.scheduleAt(() -> onDue(orderIdentifier, dueDate), dueDate);
+                }
+            } while (claimed.size() >= 2 * batchSize);
+        } catch (Exception ex) {
+            // the claimed deliveries are due again after the lease.
+            logger.error("Failed to claim the due deliveries", ex);
+        }
+    }
+
+    /**
+     * The delivery is due, the ones removed from the shelf store are batched, the others are done one by one under the locks or by the
+     * shelf owners.
+     */
+    void onDue(Long candidateOrderIdentifier, long dueDate) {
+        if (shelfOwnerService.isEnabled() || "lock".equals(placementMode)) {
+            deliverSafely(candidateOrderIdentifier, dueDate);
+        } else {
+            deliveryBatcher.add(new DueDelivery(candidateOrderIdentifier, dueDate));
+        }
+    }
+
+    private void deliverSafely(Long candidateOrderIdentifier, long dueDate) {
+        try {
+            if (deliver(candidateOrderIdentifier, dueDate)) {
+                kitchenMetrics.recordDelivery(dueDate);
+            }
+        } catch (Exception ex) {
+            logger.error("Failed to deliver the order [{}], retry after the lease.", candidateOrderIdentifier, ex);
+        }
+    }
+
+    /**
+     * @return false if the delivery is postponed, i.e. the order is not on a shelf yet
+     */
+    private boolean deliver(Long candidateOrderIdentifier, long dueDate) {
+        boolean onShelf = shelfOwnerService.isEnabled()
+            ? requestDelivery(candidateOrderIdentifier)
+            : deliverUnderLocks(candidateOrderIdentifier);
+        if (!onShelf) {
+            // the order is on its way to the shelf, try again shortly.
+            postpone(Collections.singletonList(candidateOrderIdentifier), Collections.singletonMap(candidateOrderIdentifier, dueDate));
+            return false;
+        }
+        if (shelfStore.isShared()) {
+            getDeliverySchedule().remove(candidateOrderIdentifier);
+        }
+        return true;
+    }
+
+    /**
+     * Remove the due orders from the shelves on which they are with one atomic operation of the shelf store per shelf. An order moved
+     * between the status read and its removal is left on the shelf, so its status is read again and the removal tried on its new
+     * shelf, up to {@link #MAX_DELIVERY_ATTEMPTS} times.
+     * <p>
+     * The statuses of the orders are read at once, the orders are removed at once per shelf and their schedule entries at once, i.e. a
+     * few round trips for the whole batch rather than a few per order. Only the entries of the delivered and the decayed orders are
+     * removed, the orders not on a shelf yet or still moving are due again shortly.
+     */
+    void deliverFromStore(List<DueDelivery> dueDeliveries) {
+        Map<Long, Long> dueDates = new LinkedHashMap<>();
+        dueDeliveries.forEach(dueDelivery -> dueDates.put(dueDelivery.orderIdentifier, dueDelivery.dueDate));
+        try {
+            final long start = System.nanoTime();
+            Set<Long> delivered = new HashSet<>();
+            List<Long> decayed = new ArrayList<>();
+            List<Long> postponed = new ArrayList<>();
+            Collection<Long> pending = dueDates.keySet();
+            for (int attempt = 0; attempt < MAX_DELIVERY_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                // locate the shelves on which the orders are.
+                Map<Long, ShelfType> statuses = shelfStore.getStatuses(pending);
+                Map<ShelfType, List<Long>> onShelves = new EnumMap<>(ShelfType.class);
+                for (Long orderIdentifier : pending) {
+                    ShelfType shelfType = statuses.get(orderIdentifier);
+                    if (shelfType == null) {
+                        decayed.add(orderIdentifier);
+                    } else if (shelfType == ShelfType.WAITING) {
+                        // the order is on its way to the shelf.
+                        postponed.add(orderIdentifier);
+                    } else {
+                        onShelves.computeIfAbsent(shelfType, st -> new ArrayList<>()).add(orderIdentifier);
+                    }
+                }
+
+                List<Long> moved = new ArrayList<>();
+                onShelves.forEach((shelfType, orderIdentifiers) -> {
+                    Set<Long> removed = new HashSet<>();
+                    for (Order candidateOrder : shelfStore.removeAll(shelfType, orderIdentifiers)) {
+                        removed.add(candidateOrder.getIdentifier());
+                        kitchenMetrics.recordRemoval(RemovalReason.DELIVERED, start);
+                        logger.info("Deliver the order [{}]-[{}] successfully: {}", candidateOrder.getIdentifier(), candidateOrder.getName(), candidateOrder);
+                        // send shelf change event
+                        shelfService.onOrderRemoved(shelfType, candidateOrder, RemovalReason.DELIVERED);
                     }
+                    delivered.addAll(removed);
+                    // moved or removed meanwhile, its status tells which.
+                    orderIdentifiers.stream().filter(orderIdentifier -> !removed.contains(orderIdentifier)).forEach(moved::add);
+                });
+                pending = moved;
+            }
+            postponed.addAll(pending);
+
+            if (shelfStore.isShared()) {
+                List<Long> done = new ArrayList<>(delivered);
+                done.addAll(decayed);
+                if (!done.isEmpty()) getDeliverySchedule().removeAll(done);
+            }
+            postpone(postponed, dueDates);
+
+            decayed.forEach(orderIdentifier -> logger.warn("Failed to deliver the order [{}] cause it already decayed.", orderIdentifier));
+            delivered.forEach(orderIdentifier -> kitchenMetrics.recordDelivery(dueDates.get(orderIdentifier)));
+            kitchenMetrics.recordBatch(KitchenMetrics.DELIVER_BATCH, dueDates.size());
+        } catch (Exception ex) {
+            logger.error("Failed to deliver the orders {}, retry after the lease.", dueDates.keySet(), ex);
+        }
+    }
+
+    /**
+     * The deliveries are due again shortly, e.g. the orders not on a shelf yet.
+     */
+    private void postpone(List<Long> orderIdentifiers, Map<Long, Long> dueDates) {
+        if (orderIdentifiers.isEmpty()) return;
+
+        final long retryAt = System.currentTimeMillis() + WAITING_RETRY_DELAY;
+        if (shelfStore.isShared()) {
+            Map<Long, Double> retries = new HashMap<>();
+            orderIdentifiers.forEach(orderIdentifier -> retries.put(orderIdentifier, (double) retryAt));
+            getDeliverySchedule().addAll(retries);
+            return;
+        }
+        orderIdentifiers.forEach(orderIdentifier -> {
+            long dueDate = dueDates.get(orderIdentifier);
+            orderTimingWheel.scheduleAt(() -> onDue(orderIdentifier, dueDate), retryAt);
+        });
+    }
+
+    /**
+     * Lock mode, remove the order from the shelf named by its status under the shelf lock. The status is not locked, the removal only
+     * removes it if it still names the shelf. If the order is not on the shelf any more and the version of its status has changed,
+     * e.g. it's been moved by the rebalancer before the shelf is locked, the order is removed from the shelf it's on now.
+     *
+     * @return false if the order is not on a shelf yet
+     */
+    private boolean deliverUnderLocks(Long candidateOrderIdentifier) {
+        OrderStatusMachine.VersionedStatus status = orderStatusMachine.get(candidateOrderIdentifier);
+        for (int attempt = 0; attempt < MAX_DELIVERY_ATTEMPTS; attempt++) {
+            ShelfType shelfType = status.getShelfType();
+            if (shelfType == ShelfType.WAITING) return false;
+            if (shelfType == null) break;
+
+            String shelfLockName = shelfType + "_lock";
+            RLock shelfLock = redissonClient.getReadWriteLock(shelfLockName).writeLock();
+            long shelfWaitStart = System.nanoTime();
+            shelfLock.lock();
+            long shelfLockedAt = kitchenMetrics.onLockAcquired(shelfLockName, shelfWaitStart);
+            try {
+                final long start = System.nanoTime();
+                Order candidateOrder = orderService.removeFromShelf(candidateOrderIdentifier, shelfType);
+                if (candidateOrder != null) {
+                    kitchenMetrics.recordRemoval(RemovalReason.DELIVERED, start);
+                    logger.info("Deliver the order [{}]-[{}] successfully: {}", candidateOrderIdentifier, candidateOrder.getName(), candidateOrder);
+                    return true;
                 }
-            },
-            new Date(System.currentTimeMillis() + getRandomNumberInRange(20000, 100000))
-        );
+            } finally {
+                shelfLock.unlock();
+                kitchenMetrics.onLockReleased(shelfLockName, shelfLockedAt);
+            }
+
+            OrderStatusMachine.VersionedStatus current = orderStatusMachine.get(candidateOrderIdentifier);
+            if (current.getVersion() == status.getVersion()) break;
+            status = current;
+        }
+        logger.warn("Failed to deliver the order [{}] cause it already decayed.", candidateOrderIdentifier);
+        return true;
+    }
+
+    /**
+     * Single-writer mode, ask the owner of the shelf on which the order is to deliver it.
+     *
+     * @return false if the order is not on a shelf yet
+     */
+    private boolean requestDelivery(Long candidateOrderIdentifier) {
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        String shelfName = orderStatus.get(candidateOrderIdentifier);
+        ShelfType shelfType = shelfName == null ? null : ShelfType.fromString(shelfName);
+        if (shelfType == ShelfType.WAITING) return false;
+
+        RMapCache<Long, Order> shelf = shelfType == null ? null : rMapCacheManager.getCache(shelfName);
+        Order order = shelf == null ? null : shelf.get(candidateOrderIdentifier);
+        if (order == null) {
+            logger.warn("Failed to deliver the order [{}] cause it already decayed.", candidateOrderIdentifier);
+            return true;
+        }
+        shelfOwnerService.send(OrderCommand.DELIVER, shelfType, order);
+        return true;
+    }
+
+    private RScoredSortedSet<Long> getDeliverySchedule() {
+        return redissonClient.getScoredSortedSet(DELIVERY_SCHEDULE, LongCodec.INSTANCE);
+    }
+
+    /**
+     * Single-writer mode, deliver the order from the owned shelf, this runs on the consumer thread of the shelf owner.
+     * <p>
+     * The order status names the shelf whose owner is responsible for the order, so follow the order if it has been moved meanwhile,
+     * the command is queued behind the one which moves the order in the partition of the new shelf.
+     */
+    public void deliverAsOwner(Order order, ShelfType ownedShelfType) {
+        final Long candidateOrderIdentifier = order.getIdentifier();
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        String shelfName = orderStatus.get(candidateOrderIdentifier);
+        ShelfType shelfType = shelfName == null ? null : ShelfType.fromString(shelfName);
+        if (shelfType != null && shelfType != ShelfType.WAITING && shelfType != ownedShelfType) {
+            shelfOwnerService.send(OrderCommand.DELIVER, shelfType, order);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        Order candidateOrder = shelfType == ownedShelfType
+            ? orderService.removeFromShelf(candidateOrderIdentifier, ownedShelfType)
+            : null;
+        if (candidateOrder != null) {
+            kitchenMetrics.recordRemoval(RemovalReason.DELIVERED, start);
+            logger.info("Deliver the order [{}]-[{}] successfully: {}", candidateOrderIdentifier, candidateOrder.getName(), candidateOrder);
+        } else {
+            logger.warn("Failed to deliver the order [{}]-[{}] cause it already decayed.", candidateOrderIdentifier, order.getName());
+        }
+    }
+
+    /**
+     * A delivery fired at its due date, waiting for the batch.
+     */
+    static final class DueDelivery {
+
+        private final Long orderIdentifier;
+
+        private final long dueDate;
+
+        DueDelivery(Long orderIdentifier, long dueDate) {
+            this.orderIdentifier = orderIdentifier;
+            this.dueDate = dueDate;
+        }
     }
 
     private static int getRandomNumberInRange(int min, int max) {
@@ -0,0 +1,444 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+import com.engineering.challenge.solution.utils.LongObjectHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * The shelves of a single node kitchen in process, i.e. no network round trip per operation, and the shelves are lost on restart.
+ * <p>
+ * Each shelf is a primitive keyed map of its orders under its own lock, and the order status is a primitive keyed map split into
+ * stripes. A placement locks the target shelf and then the overflow shelf, and a move from the overflow shelf locks all the shelves in
+ * the same order, so they never deadlock. The deadline of each order is a timer on the local timing wheel, cancelled when it leaves
+ * the shelf.
+ * <p>
+ * The orders are copied in and out, so the ones on the shelves are only changed under the shelf lock.
+ */
+@Service
+@ConditionalOnProperty(name = "order-app.shelf-store", havingValue = "memory")
+@RequiredArgsConstructor
+public class InMemoryShelfStore implements ShelfStore {
+
+    private static final ShelfType[] SHELVES = {HOT, COLD, FROZEN, OVERFLOW};
+
+    private static final ShelfType[] TARGET_SHELVES = {HOT, COLD, FROZEN};
+
+    private static final int STATUS_STRIPE_BITS = 6;
+
+    private static final int STATUS_STRIPES = 1 << STATUS_STRIPE_BITS;
+
+    private final HashedTimingWheel orderTimingWheel;
+
+    @Value("${order-app.placement-mode:script}")
+    private String placementMode;
+
+    private final Map<ShelfType, Shelf> shelves = new EnumMap<>(ShelfType.class);
+
+    private final Map<ShelfType, AtomicLong> sequences = new EnumMap<>(ShelfType.class);
+
+    @SuppressWarnings("unchecked")
+    private final LongObjectHashMap<ShelfType>[] orderStatus = new LongObjectHashMap[STATUS_STRIPES];
+
+    private volatile BiConsumer<ShelfType, Order> deadlineHandler;
+
+    {
+        for (ShelfType shelfType : SHELVES) {
+            shelves.put(shelfType, new Shelf(shelfType));
+            sequences.put(shelfType, new AtomicLong());
+        }
+        for (int i = 0; i < STATUS_STRIPES; i++) {
+            orderStatus[i] = new LongObjectHashMap<>(1024);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!"script".equals(placementMode)) {
+            throw new IllegalStateException("the in-memory shelf store only supports order-app.placement-mode=script, not " + placementMode);
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public ShelfType place(Order order, int targetCapacity, int overflowCapacity) {
+        Shelf targetShelf = shelves.get(order.getTemp());
+        Shelf overflowShelf = shelves.get(OVERFLOW);
+        final long now = System.currentTimeMillis();
+        order.setOnShelfMillis(now);
+        targetShelf.lock.lock();
+        try {
+            if (targetShelf.orders.size() < targetCapacity) {
+                order.setIsOnOverflowShelf(false);
+                order.onMove(now);
+                put(targetShelf, order);
+                return targetShelf.shelfType;
+            }
+            // the target shelf stays locked, so it's never found with a free slot once the order is put on the overflow shelf.
+            overflowShelf.lock.lock();
+            try {
+                if (overflowShelf.orders.size() < overflowCapacity) {
+                    order.setIsOnOverflowShelf(true);
+                    order.onMove(now);
+                    put(overflowShelf, order);
+                    return OVERFLOW;
+                }
+            } finally {
+                overflowShelf.lock.unlock();
+            }
+        } finally {
+            targetShelf.lock.unlock();
+        }
+        removeStatus(order.getIdentifier(), null);
+        return null;
+    }
+
+    @Override
+    public Order remove(ShelfType shelfType, Long orderIdentifier) {
+        Shelf shelf = shelves.get(shelfType);
+        Entry entry;
+        shelf.lock.lock();
+        try {
+            entry = shelf.orders.remove(orderIdentifier);
+            if (entry == null) return null;
+
+            entry.deadline.cancel();
+            removeStatus(orderIdentifier, shelfType);
+        } finally {
+            shelf.lock.unlock();
+        }
+        // !Important, need to reset value when situation changes.
+        entry.order.onMove();
+        return entry.order;
+    }
+
+    /**
+     * No round trip to save, the orders are removed one by one.
+     */
+    @Override
+    public List<Order> removeAll(ShelfType shelfType, Collection<Long> orderIdentifiers) {
+        List<Order> orders = new ArrayList<>(orderIdentifiers.size());
+        for (Long orderIdentifier : orderIdentifiers) {
+            Order order = remove(shelfType, orderIdentifier);
+            if (order != null) orders.add(order);
+        }
+        return orders;
+    }
+
+    @Override
+    public Order removeDecayed(ShelfType shelfType, ShelfType temp, Long orderIdentifier, long deadline) {
+        Shelf shelf = shelves.get(shelfType);
+        shelf.lock.lock();
+        try {
+            Entry entry = shelf.orders.get(orderIdentifier);
+            // an order put back on the shelf has a later decay date.
+            if (entry == null || entry.decayDate > deadline) return null;
+
+            shelf.orders.remove(orderIdentifier);
+            entry.deadline.cancel();
+            removeStatus(orderIdentifier, shelfType);
+            return entry.order;
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Order> removeAllDecayed(ShelfType shelfType, List<Order> orders) {
+        List<Order> decayedOrders = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            Order decayedOrder = removeDecayed(shelfType, order.getTemp(), order.getIdentifier(), order.getDecayDateMillis());
+            if (decayedOrder != null) decayedOrders.add(decayedOrder);
+        }
+        return decayedOrders;
+    }
+
+    /**
+     * Group the overflow orders by temperature and sort them by decay date, the overflow shelf only holds a few dozen orders.
+     */
+    @Override
+    public List<Order> getOverflowCandidates(Map<ShelfType, Integer> shelfCapacity) {
+        Map<ShelfType, Integer> freeSlots = new EnumMap<>(ShelfType.class);
+        for (ShelfType shelfType : TARGET_SHELVES) {
+            Shelf shelf = shelves.get(shelfType);
+            shelf.lock.lock();
+            try {
+                freeSlots.put(shelfType, shelfCapacity.get(shelfType) - shelf.orders.size());
+            } finally {
+                shelf.lock.unlock();
+            }
+        }
+
+        List<Entry> overflowEntries;
+        Shelf overflowShelf = shelves.get(OVERFLOW);
+        overflowShelf.lock.lock();
+        try {
+            overflowEntries = overflowShelf.orders.values();
+        } finally {
+            overflowShelf.lock.unlock();
+        }
+
+        long now = System.currentTimeMillis();
+        Map<ShelfType, Collection<Long>> atRiskFirst = overflowEntries.stream()
+            // the orders already decayed are left to expire.
+            .filter(entry -> entry.decayDate >= now)
+            .sorted(Comparator.comparingLong(entry -> entry.decayDate))
+            .collect(Collectors.groupingBy(
+                entry -> entry.order.getTemp(),
+                () -> new EnumMap<>(ShelfType.class),
+                Collectors.mapping(entry -> entry.order.getIdentifier(), Collectors.toCollection(ArrayList::new))
+            ));
+        List<Long> candidateIdentifiers = OverflowRebalancer.selectCandidates(atRiskFirst, freeSlots);
+
+        List<Order> candidates = new ArrayList<>(candidateIdentifiers.size());
+        overflowShelf.lock.lock();
+        try {
+            for (Long candidateIdentifier : candidateIdentifiers) {
+                // the order may have left the overflow shelf meanwhile.
+                Entry entry = overflowShelf.orders.get(candidateIdentifier);
+                if (entry != null) candidates.add(entry.order.copy());
+            }
+        } finally {
+            overflowShelf.lock.unlock();
+        }
+        return candidates;
+    }
+
+    @Override
+    public List<Order> moveFromOverflow(List<Order> candidates, Map<ShelfType, Integer> shelfCapacity) {
+        if (candidates.isEmpty()) return new ArrayList<>();
+
+        List<Order> movedOrders = new ArrayList<>(candidates.size());
+        Shelf overflowShelf = shelves.get(OVERFLOW);
+        lockAll();
+        try {
+            for (Order candidate : candidates) {
+                Shelf targetShelf = shelves.get(candidate.getTemp());
+                if (targetShelf.orders.size() >= shelfCapacity.get(targetShelf.shelfType)) continue;
+                // the order may have left the overflow shelf meanwhile.
+                Entry entry = overflowShelf.orders.remove(candidate.getIdentifier());
+                if (entry == null) continue;
+
+                entry.deadline.cancel();
+                Order order = entry.order;
+                // !Important, take the time on the overflow shelf into account, then reset the order for the target shelf.
+                final long now = System.currentTimeMillis();
+                order.onMove(now);
+                order.setOnShelfMillis(now);
+                order.setIsOnOverflowShelf(false);
+                order.onMove(now);
+                put(targetShelf, order);
+                movedOrders.add(order.copy());
+            }
+        } finally {
+            unlockAll();
+        }
+        return movedOrders;
+    }
+
+    @Override
+    public List<Order> getOrders(ShelfType shelfType) {
+        Shelf shelf = shelves.get(shelfType);
+        List<Order> orders = new ArrayList<>();
+        shelf.lock.lock();
+        try {
+            shelf.orders.forEach((orderIdentifier, entry) -> orders.add(entry.order.copy()));
+        } finally {
+            shelf.lock.unlock();
+        }
+        return orders;
+    }
+
+    @Override
+    public Map<Long, Order> getOrders(ShelfType shelfType, Collection<Long> orderIdentifiers) {
+        Shelf shelf = shelves.get(shelfType);
+        Map<Long, Order> orders = new HashMap<>();
+        shelf.lock.lock();
+        try {
+            for (Long orderIdentifier : orderIdentifiers) {
+                Entry entry = shelf.orders.get(orderIdentifier);
+                if (entry != null) orders.put(orderIdentifier, entry.order.copy());
+            }
+        } finally {
+            shelf.lock.unlock();
+        }
+        return orders;
+    }
+
+    @Override
+    public int size(ShelfType shelfType) {
+        Shelf shelf = shelves.get(shelfType);
+        shelf.lock.lock();
+        try {
+            return shelf.orders.size();
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    @Override
+    public ShelfType getStatus(Long orderIdentifier) {
+        LongObjectHashMap<ShelfType> stripe = statusStripe(orderIdentifier);
+        synchronized (stripe) {
+            return stripe.get(orderIdentifier);
+        }
+    }
+
+    @Override
+    public Map<Long, ShelfType> getStatuses(Collection<Long> orderIdentifiers) {
+        Map<Long, ShelfType> statuses = new HashMap<>();
+        for (Long orderIdentifier : orderIdentifiers) {
+            ShelfType status = getStatus(orderIdentifier);
+            if (status != null) statuses.put(orderIdentifier, status);
+        }
+        return statuses;
+    }
+
+    /**
+     * Put the status in place, the stripe is held for a single map put only.
+     */
+    @Override
+    public Mono<Void> putStatusAsync(Long orderIdentifier, ShelfType shelfType) {
+        return Mono.fromRunnable(() -> putStatus(orderIdentifier, shelfType));
+    }
+
+    @Override
+    public Mono<Void> putStatusesAsync(Collection<Long> orderIdentifiers, ShelfType shelfType) {
+        return Mono.fromRunnable(() -> {
+            for (Long orderIdentifier : orderIdentifiers) {
+                putStatus(orderIdentifier, shelfType);
+            }
+        });
+    }
+
+    @Override
+    public void putStatus(Long orderIdentifier, ShelfType shelfType) {
+        LongObjectHashMap<ShelfType> stripe = statusStripe(orderIdentifier);
+        synchronized (stripe) {
+            stripe.put(orderIdentifier, shelfType);
+        }
+    }
+
+    @Override
+    public long getSequence(ShelfType shelfType) {
+        return sequences.get(shelfType).get();
+    }
+
+    @Override
+    public long incrementSequence(ShelfType shelfType) {
+        return sequences.get(shelfType).incrementAndGet();
+    }
+
+    @Override
+    public void setDeadlineHandler(BiConsumer<ShelfType, Order> deadlineHandler) {
+        this.deadlineHandler = deadlineHandler;
+    }
+
+    /**
+     * Put the order prepared for the shelf on it along with its status and deadline, under the shelf lock.
+     */
+    private void put(Shelf shelf, Order order) {
+        final ShelfType shelfType = shelf.shelfType;
+        final Order stored = order.copy();
+        final Order expiring = order.copy();
+        final long decayDate = order.getDecayDateMillis();
+        HashedTimingWheel.Timeout deadline = orderTimingWheel.scheduleAt(() -> {
+            BiConsumer<ShelfType, Order> handler = deadlineHandler;
+            if (handler != null) {
+                handler.accept(shelfType, expiring);
+            }
+        }, decayDate);
+        shelf.orders.put(order.getIdentifier(), new Entry(stored, decayDate, deadline));
+        putStatus(order.getIdentifier(), shelfType);
+    }
+
+    /**
+     * Remove the order status, only if it names the shelf unless the shelf is null.
+     */
+    private void removeStatus(Long orderIdentifier, ShelfType shelfType) {
+        LongObjectHashMap<ShelfType> stripe = statusStripe(orderIdentifier);
+        synchronized (stripe) {
+            if (shelfType == null || stripe.get(orderIdentifier) == shelfType) {
+                stripe.remove(orderIdentifier);
+            }
+        }
+    }
+
+    private LongObjectHashMap<ShelfType> statusStripe(long orderIdentifier) {
+        // the high bits of the hash pick the stripe, the low ones the slot within the stripe.
+        return orderStatus[LongObjectHashMap.hash(orderIdentifier) >>> (Integer.SIZE - STATUS_STRIPE_BITS)];
+    }
+
+    private void lockAll() {
+        for (ShelfType shelfType : SHELVES) {
+            shelves.get(shelfType).lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = SHELVES.length - 1; i >= 0; i--) {
+            shelves.get(SHELVES[i]).lock.unlock();
+        }
+    }
+
+    private static final class Shelf {
+
+        private final ShelfType shelfType;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LongObjectHashMap<Entry> orders = new LongObjectHashMap<>();
+
+        Shelf(ShelfType shelfType) {
+            this.shelfType = shelfType;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Order order;
+
+        /**
+         * The decay date in epoch millis.
+         */
+        private final long decayDate;
+
+        private final HashedTimingWheel.Timeout deadline;
+
+        Entry(Order order, long decayDate, HashedTimingWheel.Timeout deadline) {
+            this.order = order;
+            this.decayDate = decayDate;
+            this.deadline = deadline;
+        }
+    }
+}
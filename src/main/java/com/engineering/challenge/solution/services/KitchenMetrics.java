@@ -0,0 +1,205 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.utils.ExpiringLruCache;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The meters of the kitchen, exposed by the actuator at /actuator/prometheus, i.e. the shelf occupancy, the wait and hold time of the
+ * locks, the placement, removal and delivery latency, the removal batch sizes, the order status transitions, the wasted orders, the
+ * Kafka consume lag and the shelf event publishing.
+ * <p>
+ * The timers take the {@link System#nanoTime()} at which the timed step started. The offset lag of the Kafka consumers is bound by
+ * Spring Boot as kafka.consumer.records.lag.max, the consume lag here is the age of the record, i.e. how far the consumer is behind.
+ */
+@Service
+@RequiredArgsConstructor
+public class KitchenMetrics {
+
+    /**
+     * The write locks of all the shelves, taken together by the overflow rebalancer.
+     */
+    public static final String SHELVES_LOCK = "shelves_lock";
+
+    public static final String PLACED_ON_TARGET = "target";
+
+    public static final String PLACED_ON_OVERFLOW = "overflow";
+
+    public static final String HANDED_OVER = "handed-over";
+
+    public static final String REQUEUED = "requeued";
+
+    public static final String WASTED = "wasted";
+
+    public static final String DELIVER_BATCH = "deliver";
+
+    public static final String EXPIRE_BATCH = "expire";
+
+    public static final String TRANSITION_APPLIED = "applied";
+
+    public static final String TRANSITION_CONFLICT = "conflict";
+
+    public static final String TRANSITION_ILLEGAL = "illegal";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Record the wait for the lock.
+     *
+     * @return the nanos at which the lock has been acquired, to pass to {@link #onLockReleased(String, long)}
+     */
+    public long onLockAcquired(String lockName, long waitStart) {
+        long lockedAt = System.nanoTime();
+        meterRegistry.timer("kitchen.lock.wait", "lock", lockName).record(lockedAt - waitStart, TimeUnit.NANOSECONDS);
+        return lockedAt;
+    }
+
+    /**
+     * Record the wait for the lock which is busy, i.e. a failed tryLock which requeues the order.
+     */
+    public void onLockFailed(String lockName, long waitStart) {
+        long waited = System.nanoTime() - waitStart;
+        meterRegistry.timer("kitchen.lock.wait", "lock", lockName).record(waited, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("kitchen.lock.failures", "lock", lockName).increment();
+    }
+
+    public void onLockReleased(String lockName, long lockedAt) {
+        meterRegistry.timer("kitchen.lock.hold", "lock", lockName).record(System.nanoTime() - lockedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the placement of an order, e.g. {@link #PLACED_ON_TARGET}, {@link #WASTED}, and count it as wasted on arrival if so.
+     */
+    public void recordPlacement(String outcome, ShelfType temp, long start) {
+        long placement = System.nanoTime() - start;
+        meterRegistry.timer("kitchen.order.placement", "outcome", outcome).record(placement, TimeUnit.NANOSECONDS);
+        if (WASTED.equals(outcome)) {
+            meterRegistry.counter("kitchen.orders.wasted", "shelf", temp.toString(), "cause", "no-space").increment();
+        }
+    }
+
+    /**
+     * Record the removal of an order from its shelf.
+     */
+    public void recordRemoval(RemovalReason reason, long start) {
+        long removal = System.nanoTime() - start;
+        meterRegistry.timer("kitchen.order.removal", "reason", reason.name().toLowerCase()).record(removal, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record how late the delivery is done after its due date in epoch millis.
+     */
+    public void recordDelivery(long dueDate) {
+        long late = Math.max(0, System.currentTimeMillis() - dueDate);
+        meterRegistry.timer("kitchen.order.delivery").record(late, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record the number of orders removed from the shelves together, e.g. {@link #DELIVER_BATCH}, i.e. the round trips saved.
+     */
+    public void recordBatch(String operation, int orders) {
+        DistributionSummary.builder("kitchen.shelf.batch.orders").tag("operation", operation).register(meterRegistry).record(orders);
+    }
+
+    /**
+     * Count the order status transition by result, e.g. {@link #TRANSITION_CONFLICT} if the status has changed since it's been read.
+     */
+    public void recordStatusTransition(String result) {
+        meterRegistry.counter("kitchen.order.status.transitions", "result", result).increment();
+    }
+
+    public void onDecayed(ShelfType shelfType) {
+        meterRegistry.counter("kitchen.orders.wasted", "shelf", shelfType.toString(), "cause", "decayed").increment();
+    }
+
+    /**
+     * Record the age of the consumed record, i.e. from its timestamp or due date in epoch millis.
+     */
+    public void recordConsumeLag(String topic, long timestamp) {
+        long lag = Math.max(0, System.currentTimeMillis() - timestamp);
+        meterRegistry.timer("kitchen.kafka.consume.lag", "topic", topic).record(lag, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record the publishing of a shelf event, i.e. reading the shelf and sequence, serializing and handing the record to the sender.
+     */
+    public void recordPublish(ShelfEventType eventType, ShelfType shelfType, long start) {
+        meterRegistry.timer("kitchen.shelf.publish", "event", eventType.name().toLowerCase(), "shelf", shelfType.toString())
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gauge the number of orders on the shelf, read on each scrape.
+     */
+    public void gaugeShelfSize(ShelfType shelfType, ToDoubleFunction<ShelfType> size) {
+        Gauge.builder("kitchen.shelf.orders", shelfType, size).tag("shelf", shelfType.toString()).register(meterRegistry);
+    }
+
+    /**
+     * Count the snapshot requests of the shelf, and the ones absorbed by a pending snapshot, from the counts kept by the coalescer.
+     */
+    public void countSnapshotRequests(ShelfType shelfType, ToDoubleFunction<ShelfType> requests, ToDoubleFunction<ShelfType> absorbed) {
+        FunctionCounter.builder("kitchen.shelf.snapshot.requests", shelfType, requests)
+            .tag("shelf", shelfType.toString())
+            .register(meterRegistry);
+        FunctionCounter.builder("kitchen.shelf.snapshot.absorbed", shelfType, absorbed)
+            .tag("shelf", shelfType.toString())
+            .register(meterRegistry);
+    }
+
+    /**
+     * Count the snapshot read of the shelf, served by the near cache or read from the store.
+     */
+    public void recordNearCacheRead(ShelfType shelfType, boolean hit) {
+        meterRegistry.counter("kitchen.shelf.cache.reads", "shelf", shelfType.toString(), "result", hit ? "hit" : "miss").increment();
+    }
+
+    /**
+     * Gauge the millis since the replica of the shelf has been verified, and the changes it was behind the store on the last reconcile.
+     */
+    public void gaugeNearCache(ShelfType shelfType, ToDoubleFunction<ShelfType> staleness, ToDoubleFunction<ShelfType> lag) {
+        Gauge.builder("kitchen.shelf.cache.staleness", shelfType, staleness)
+            .tag("shelf", shelfType.toString())
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("kitchen.shelf.cache.lag", shelfType, lag).tag("shelf", shelfType.toString()).register(meterRegistry);
+    }
+
+    /**
+     * Count the reads of the order status cache by result, and gauge its hit ratio and size, from the counts kept by the cache.
+     */
+    public void gaugeOrderStatusCache(ExpiringLruCache<?, ?> cache) {
+        FunctionCounter.builder("kitchen.order.status.cache.reads", cache, ExpiringLruCache::getHitCount)
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("kitchen.order.status.cache.reads", cache, ExpiringLruCache::getMissCount)
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("kitchen.order.status.cache.hit.ratio", cache, ExpiringLruCache::getHitRatio).register(meterRegistry);
+        Gauge.builder("kitchen.order.status.cache.size", cache, ExpiringLruCache::size).register(meterRegistry);
+    }
+
+    /**
+     * The requeues of the orders because the shelf lock is busy.
+     */
+    public Counter requeueCounter(ShelfType contendedShelf) {
+        return meterRegistry.counter("kitchen.order.requeues", "shelf", contendedShelf.toString());
+    }
+
+    public Counter deadLetterCounter() {
+        return meterRegistry.counter("kitchen.order.dead.letters");
+    }
+}
@@ -1,24 +1,31 @@
 package com.engineering.challenge.solution.services;
 
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.RemovalReason;
 import com.engineering.challenge.solution.domain.ShelfType;
 import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.OrderResultDTO;
 import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.domain.mapper.OrderMapper;
+import com.engineering.challenge.solution.utils.SnowflakeIdGenerator;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.modelmapper.ModelMapper;
-import org.redisson.api.RLock;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.redisson.api.RMapCache;
-import org.redisson.api.RScoredSortedSet;
-import org.redisson.api.RedissonClient;
 import org.redisson.api.map.event.EntryEvent;
 import org.redisson.api.map.event.EntryExpiredListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.http.HttpStatus;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,6 +37,10 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
 
 @Service
 @RequiredArgsConstructor
@@ -41,37 +52,153 @@ public class OrderEventService {
 
     private final DeliveryService deliveryService;
 
-    private final RedissonClient redissonClient;
-
     private final RMapCacheManager rMapCacheManager;
 
     private final ShelfService shelfService;
 
-    private final KafkaTemplate<Long, Object> kafkaTemplate;
+    private final KafkaSender<Long, Object> orderSender;
+
+    private final SnowflakeIdGenerator orderIdGenerator;
+
+    private final OrderRetryService orderRetryService;
+
+    private final ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory;
+
+    private final ShelfOwnerService shelfOwnerService;
+
+    private final OverflowRebalancer overflowRebalancer;
+
+    private final ShelfDecayIndex shelfDecayIndex;
+
+    private final DecayEngine decayEngine;
+
+    private final ShelfStore shelfStore;
+
+    private final OrderStatusMachine orderStatusMachine;
+
+    private final KitchenMetrics kitchenMetrics;
 
     @Value("${order-app.order-event-topic-name}")
     private String topicName;
 
     private Map<RMapCache, List<Integer>> shelfEventListeners = new HashMap<>();
 
-    private final ModelMapper mapper = new ModelMapper();
+    private List<ConcurrentMessageListenerContainer<String, Object>> retryContainers = new ArrayList<>();
+
+    /**
+     * How often the consumer of a retry topic checks whether its paused partitions are due, while it has no records to handle.
+     */
+    @Value("${order-app.retry-poll-interval-ms:100}")
+    private long retryPollIntervalMs;
+
+    /**
+     * Place a new order, i.e. write its status and send its record without blocking the subscribing thread, e.g. the event loop.
+     *
+     * @return the placed order once its record is acknowledged, a bad request error if the order is not valid like in a batch
+     */
+    public Mono<OrderDTO> placeNewOrder(OrderDTO newOrder) {
+        String error = validate(newOrder);
+        if (error != null) return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, error));
+
+        Order order = OrderMapper.toOrder(newOrder);
+        // assign the identifier once, the client is not allowed to choose one.
+        order.setIdentifier(orderIdGenerator.nextId());
+        return shelfStore.putStatusAsync(order.getIdentifier(), ShelfType.WAITING)
+            .thenMany(orderSender.send(Mono.just(toRecord(order, 0))))
+            .next()
+            .flatMap(result -> {
+                if (result.exception() != null) {
+                    logger.error("Failed to send the new order [{}]", order.getIdentifier(), result.exception());
+                    return Mono.error(result.exception());
+                }
+                return Mono.fromSupplier(() -> OrderMapper.toOrderDTO(order));
+            });
+    }
+
+    /**
+     * Place a batch of new orders, i.e. the valid ones are mapped, their statuses written at once and their records sent without
+     * waiting for each other, so the producer batches and compresses them.
+     *
+     * @return the result of each order in the order of the batch, once all the records are sent
+     */
+    public Mono<List<OrderResultDTO>> placeNewOrders(List<OrderDTO> newOrders) {
+        final long now = System.currentTimeMillis();
+        OrderResultDTO[] results = new OrderResultDTO[newOrders.size()];
+        Order[] orders = new Order[newOrders.size()];
+        List<SenderRecord<Long, Object, Integer>> records = new ArrayList<>(newOrders.size());
+        List<Long> orderIdentifiers = new ArrayList<>(newOrders.size());
+        for (int i = 0; i < newOrders.size(); i++) {
+            OrderDTO newOrder = newOrders.get(i);
+            String error = validate(newOrder);
+            if (error != null) {
+                results[i] = new OrderResultDTO(newOrder, error);
+                continue;
+            }
+            Order order = OrderMapper.toOrder(newOrder);
+            order.setIdentifier(orderIdGenerator.nextId());
+            orders[i] = order;
+            orderIdentifiers.add(order.getIdentifier());
+            // the position of the order in the batch comes back with its result.
+            records.add(toRecord(order, i));
+        }
+        if (records.isEmpty()) return Mono.just(Arrays.asList(results));
+
+        return shelfStore.putStatusesAsync(orderIdentifiers, ShelfType.WAITING)
+            .thenMany(orderSender.send(Flux.fromIterable(records)))
+            .doOnNext(result -> {
+                int position = result.correlationMetadata();
+                Order order = orders[position];
+                if (result.exception() != null) {
+                    logger.error("Failed to send the new order [{}]", order.getIdentifier(), result.exception());
+                    results[position] = new OrderResultDTO(OrderMapper.toOrderDTO(order, now), "Failed to send the order");
+                } else {
+                    results[position] = new OrderResultDTO(OrderMapper.toOrderDTO(order, now), null);
+                }
+            })
+            .then(Mono.fromSupplier(() -> Arrays.asList(results)));
+    }
 
-    public OrderDTO placeNewOrder(OrderDTO newOrder) {
-        Order order = mapper.map(newOrder, Order.class);
-        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
-        orderStatus.put(order.getIdentifier(), ShelfType.WAITING.toString());
-        kafkaTemplate.send(topicName, order.getIdentifier(), order);
-        return mapper.map(order, OrderDTO.class);
+    /**
+     * Why the new order can't be placed, null if it can.
+     */
+    static String validate(OrderDTO newOrder) {
+        if (newOrder.getTemp() == null || newOrder.getTemp() == ShelfType.OVERFLOW || newOrder.getTemp() == ShelfType.WAITING) {
+            return "temp must be hot, cold or frozen";
+        }
+        if (newOrder.getShelfLife() == null || newOrder.getShelfLife() <= 0) {
+            return "shelfLife must be positive";
+        }
+        if (newOrder.getDecayRate() == null || newOrder.getDecayRate() < 0) {
+            return "decayRate must not be negative";
+        }
+        return null;
+    }
+
+    /**
+     * The record of the new order, with the correlation metadata to find the order back from its send result.
+     */
+    private <T> SenderRecord<Long, Object, T> toRecord(Order order, T correlationMetadata) {
+        if (shelfOwnerService.isEnabled()) {
+            // route the new order to the owner of its target shelf.
+            return SenderRecord.create(
+                topicName, ShelfOwnerService.partitionOf(order.getTemp()), null, order.getIdentifier(), order, correlationMetadata
+            );
+        }
+        return SenderRecord.create(new ProducerRecord<>(topicName, order.getIdentifier(), order), correlationMetadata);
     }
 
     @PostConstruct
     public void init() {
-        Arrays.stream(ShelfType.values()).forEach(
-            st -> {
-                RMapCache shelf = rMapCacheManager.getCache(st.toString());
-                registerExpiredHandler(shelf);
-            }
-        );
+        // the backstop of the decay engine, the orders of a local shelf store never expire in Redis.
+        if (shelfStore.isShared()) {
+            Arrays.stream(ShelfType.values()).forEach(
+                st -> {
+                    RMapCache shelf = rMapCacheManager.getCache(st.toString());
+                    registerExpiredHandler(shelf);
+                }
+            );
+        }
+        orderRetryService.getRetryTopics().forEach(this::startRetryContainer);
     }
 
     @PreDestroy
@@ -81,6 +208,7 @@ public class OrderEventService {
                 l -> e.getKey().removeListener(l)
             )
         );
+        retryContainers.forEach(ConcurrentMessageListenerContainer::stop);
     }
 
     /**
@@ -89,48 +217,105 @@ public class OrderEventService {
     @KafkaListener(topics = "#{'${order-app.order-event-topic-name}'}", clientIdPrefix = "order-event", containerFactory = "kafkaListenerContainerFactory")
     public void accept(ConsumerRecord<Long, Order> cr, @Payload Order payload) {
         //logger.info("[OrderEventService] received key {} | Payload: {} | Record: {}", cr.key(), payload, cr.toString());
+        kitchenMetrics.recordConsumeLag(cr.topic(), cr.timestamp());
+        if (shelfOwnerService.isEnabled()) {
+            acceptAsOwner(cr, payload);
+            return;
+        }
         orderService.accept(payload);
         deliveryService.accept(payload);
     }
 
+    /**
+     * Single-writer mode, run the command on the shelf owned through the partition of the record.
+     */
+    private void acceptAsOwner(ConsumerRecord<Long, Order> cr, Order payload) {
+        ShelfType shelfType = ShelfOwnerService.shelfOf(cr.partition());
+        OrderCommand command = ShelfOwnerService.getCommand(cr);
+        if (command == null) {
+            // a new order.
+            orderService.placeAsOwner(payload);
+            deliveryService.accept(payload);
+            return;
+        }
+        switch (command) {
+            case PLACE:
+                orderService.placeAsOwner(payload);
+                break;
+            case OVERFLOW:
+                orderService.placeOnOverflowAsOwner(payload);
+                break;
+            case DELIVER:
+                deliveryService.deliverAsOwner(payload, shelfType);
+                break;
+            case EXPIRE:
+                decayEngine.expireAsOwner(payload, shelfType);
+                break;
+            case RESCUE:
+                overflowRebalancer.rebalanceAsOwner();
+                break;
+        }
+    }
+
+    /**
+     * Put the requeued order on shelf once it's due, the delivery has been scheduled already when the order was accepted.
+     */
+    void retry(ConsumerRecord<String, Object> cr) {
+        // behind the due date rather than the record timestamp, which is early by the delay.
+        kitchenMetrics.recordConsumeLag(cr.topic(), OrderRetryService.getDueAt(cr));
+        orderService.retry((Order) cr.value(), OrderRetryService.getAttempts(cr));
+    }
+
+    private void startRetryContainer(String retryTopic) {
+        // one container per retry topic, so a long delay never blocks a short one.
+        ConcurrentMessageListenerContainer<String, Object> container = kafkaListenerContainerFactory.createContainer(retryTopic);
+        // the records of a retry topic have the same delay, so pausing the partition until its head is due doesn't delay the others.
+        RetryTopicListener listener = new RetryTopicListener(this::retry);
+        ContainerProperties containerProperties = container.getContainerProperties();
+        containerProperties.setMessageListener(listener);
+        if (!kafkaListenerContainerFactory.getConsumerFactory().isAutoCommit()) {
+            // never commit the offset of a record sought back, the auto commit commits the position, i.e. the record itself.
+            containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        }
+        containerProperties.setPollTimeout(retryPollIntervalMs);
+        containerProperties.setIdleEventInterval(retryPollIntervalMs);
+        // resume the paused partitions once due while the consumer has no records to handle, on the consumer thread.
+        container.setApplicationEventPublisher(event -> {
+            if (event instanceof ListenerContainerIdleEvent) listener.resumeDue(((ListenerContainerIdleEvent) event).getConsumer());
+        });
+        container.start();
+        retryContainers.add(container);
+    }
+
     public void registerExpiredHandler(RMapCache shelf) {
         shelfEventListeners.putIfAbsent(shelf, new ArrayList<>());
         List listeners = shelfEventListeners.get(shelf);
 
-        // listener for expire event, i.e. decaying of the order .
+        // listener for expire event, i.e. decaying of the order, only the backstop of the decay engine now.
+        final ShelfType expiringShelfType = ShelfType.fromString(shelf.getName());
         listeners.add(shelf.addListener(new EntryExpiredListener<Long, Order>() {
             @Override
             public void onExpired(EntryEvent<Long, Order> entryEvent) {
-                RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
-                RScoredSortedSet<Long> overflowShelfTracker = redissonClient.getScoredSortedSet("overflow_shelf_tracker");
-                Long orderIdentifier = entryEvent.getKey();
-                String orderName = entryEvent.getValue().getName();
-                RLock statusLock = orderStatus.getReadWriteLock(orderIdentifier).writeLock();
-                statusLock.lock();
-                try {
-                    String s = orderStatus.get(orderIdentifier);
-                    if (s != null) {
-                        ShelfType shelfType = ShelfType.fromString(s);
-                        switch (shelfType) {
-                            case HOT:
-                            case COLD:
-                            case FROZEN:
-                                logger.info("Order [{}]-[{}] decayed, will be wasted", orderIdentifier, orderName);
-                                orderStatus.remove(orderIdentifier);
-                                orderService.scanOverflowShelf();
-                                break;
-                            case OVERFLOW:
-                                logger.info("Order [{}]-[{}] decayed, will be wasted", orderIdentifier, orderName);
-                                orderStatus.remove(orderIdentifier);
-                                // remove the tracker for the order on the overflow shelf.
-                                overflowShelfTracker.remove(entryEvent.getValue());
-                                break;
-                        }
-                        shelfService.onShelfChange(shelfType);
+                if (shelfOwnerService.isEnabled()) {
+                    // every node is notified, only the shelf owner handles the expiry.
+                    if (shelfOwnerService.isOwner(expiringShelfType)) {
+                        shelfOwnerService.send(OrderCommand.EXPIRE, expiringShelfType, entryEvent.getValue());
                     }
-                } finally {
-                    statusLock.unlock();
+                    return;
+                }
+                // waste the order only if its status still names the shelf at the version read, a move or a delivery meanwhile wins.
+                Long orderIdentifier = entryEvent.getKey();
+                OrderStatusMachine.VersionedStatus status = orderStatusMachine.get(orderIdentifier);
+                if (status.getShelfType() != expiringShelfType
+                    || !orderStatusMachine.transition(orderIdentifier, status, null)) {
+                    return;
+                }
+                logger.info("Order [{}]-[{}] decayed, will be wasted", orderIdentifier, entryEvent.getValue().getName());
+                shelfDecayIndex.remove(expiringShelfType, entryEvent.getValue());
+                if (expiringShelfType != ShelfType.OVERFLOW) {
+                    overflowRebalancer.rebalance();
                 }
+                shelfService.onOrderRemoved(expiringShelfType, entryEvent.getValue(), RemovalReason.DECAYED);
             }
         }));
     }
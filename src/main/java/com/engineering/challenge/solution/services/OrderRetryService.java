@@ -0,0 +1,147 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Requeue the orders which failed to get the shelf lock, i.e. system busy, with increasing delays.
+ * <p>
+ * Each delay has its own retry topic, e.g. 'order-change-events-retry-1s', 'order-change-events-retry-5s', so the records of a
+ * topic are due in order and the consumer only waits for the head of the topic. The order is sent to the dead letter topic
+ * after all the delays are used up.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderRetryService {
+
+    private static Logger logger = LoggerFactory.getLogger(OrderRetryService.class);
+
+    static final String ATTEMPTS_HEADER = "order-retry-attempts";
+
+    static final String DUE_AT_HEADER = "order-retry-due-at";
+
+    private final KafkaTemplate<Long, Object> kafkaTemplate;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    @Value("${order-app.order-event-topic-name}")
+    private String topicName;
+
+    /**
+     * The delay in millis before each retry, the size is the max attempts before the order is dead-lettered.
+     */
+    @Value("${order-app.retry-delays-ms:1000,5000,25000}")
+    private long[] retryDelays;
+
+    private List<String> retryTopics;
+
+    private final Map<ShelfType, Counter> requeueCounters = new EnumMap<>(ShelfType.class);
+
+    private Counter deadLetterCounter;
+
+    @PostConstruct
+    public void init() {
+        List<String> topics = new ArrayList<>();
+        Arrays.stream(retryDelays).forEach(delay -> topics.add(getRetryTopicName(topicName, delay)));
+        retryTopics = Collections.unmodifiableList(topics);
+        Arrays.stream(ShelfType.values()).forEach(st -> requeueCounters.put(st, kitchenMetrics.requeueCounter(st)));
+        deadLetterCounter = kitchenMetrics.deadLetterCounter();
+    }
+
+    /**
+     * Requeue the order with the delay of the given attempt.
+     *
+     * @param contendedShelf the shelf which failed to be locked
+     * @param attempts       how many times the order has been requeued before
+     */
+    public void requeue(Order order, ShelfType contendedShelf, int attempts) {
+        Counter requeueCounter = requeueCounters.get(contendedShelf);
+        requeueCounter.increment();
+        long requeues = (long) requeueCounter.count();
+
+        final String topic;
+        final long dueAt;
+        if (attempts < retryDelays.length) {
+            topic = retryTopics.get(attempts);
+            dueAt = System.currentTimeMillis() + retryDelays[attempts];
+            logger.info("Shelf[{}] busy, requeue order [{}] to {}, {} requeues on the shelf so far.", contendedShelf, order.getIdentifier(), topic,
+                requeues);
+        } else {
+            topic = getDeadLetterTopicName(topicName);
+            dueAt = System.currentTimeMillis();
+            deadLetterCounter.increment();
+            logger.warn("Shelf[{}] busy, order [{}] has been requeued {} times, send to {}.", contendedShelf, order.getIdentifier(), attempts, topic);
+        }
+
+        List<Header> headers = Arrays.asList(
+            new RecordHeader(ATTEMPTS_HEADER, String.valueOf(attempts + 1).getBytes(StandardCharsets.UTF_8)),
+            new RecordHeader(DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8))
+        );
+        // keep the order identifier as key, so the order stays on the same partition.
+        kafkaTemplate.send(new ProducerRecord<Long, Object>(topic, null, order.getIdentifier(), order, headers));
+    }
+
+    public List<String> getRetryTopics() {
+        return retryTopics;
+    }
+
+    /**
+     * Get the number of requeues per shelf, i.e. how often the shelf lock is contended.
+     */
+    public Map<ShelfType, Long> getRequeueCounts() {
+        Map<ShelfType, Long> counts = new EnumMap<>(ShelfType.class);
+        requeueCounters.forEach((st, counter) -> counts.put(st, (long) counter.count()));
+        return counts;
+    }
+
+    public long getDeadLetterCount() {
+        return (long) deadLetterCounter.count();
+    }
+
+    public static String getRetryTopicName(String topicName, long delay) {
+        return topicName + "-retry-" + (delay % 1000 == 0 ? (delay / 1000) + "s" : delay + "ms");
+    }
+
+    public static String getDeadLetterTopicName(String topicName) {
+        return topicName + "-dlt";
+    }
+
+    /**
+     * Get how many times the order in the retry record has been requeued.
+     */
+    public static int getAttempts(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(ATTEMPTS_HEADER);
+        return header == null ? 0 : Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the epoch millis at which the retry record is due.
+     */
+    public static long getDueAt(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(DUE_AT_HEADER);
+        return header == null ? record.timestamp() : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+}
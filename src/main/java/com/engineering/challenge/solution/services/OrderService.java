@@ -1,20 +1,21 @@
 package com.engineering.challenge.solution.services;
 
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.RemovalReason;
 import com.engineering.challenge.solution.domain.ShelfType;
 import com.engineering.challenge.solution.domain.entities.Order;
 
+import org.redisson.api.RBatch;
 import org.redisson.api.RLock;
 import org.redisson.api.RMapCache;
-import org.redisson.api.RScoredSortedSet;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,161 +35,244 @@ public class OrderService {
 
     private final RMapCacheManager rMapCacheManager;
 
-    private final KafkaTemplate<Long, Object> kafkaTemplate;
-
     private final ShelfService shelfService;
 
+    private final ShelfStore shelfStore;
+
+    private final OrderRetryService orderRetryService;
+
+    private final ShelfOwnerService shelfOwnerService;
+
+    private final ShelfDecayIndex shelfDecayIndex;
+
+    private final OrderStatusMachine orderStatusMachine;
+
+    private final KitchenMetrics kitchenMetrics;
+
     @Value("#{${order-app.shelf-capacity}}")
     private Map<ShelfType, Integer> shelfCapacity;
 
-    @Value("${order-app.order-event-topic-name}")
-    private String topicName;
+    /**
+     * 'script' to put orders on shelves with the atomic placement script, 'lock' to put them under the shelf locks.
+     */
+    @Value("${order-app.placement-mode:script}")
+    private String placementMode;
 
     private Map<RMapCache, List<Integer>> shelfEventListeners = new HashMap<>();
 
     /**
-     * Scan the overflow shelf and move order back to the target shelf if possible.
+     * Put the order on shelf
      */
-    public void scanOverflowShelf() {
-        // lock the overflow shelf.
-        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
-        RLock overflowShelfLock = redissonClient.getReadWriteLock(OVERFLOW.toString() + "_lock").writeLock();
-        RScoredSortedSet<Long> overflowShelfTracker = redissonClient.getScoredSortedSet("overflow_shelf_tracker");
-        overflowShelfLock.lock();
-        try {
-            RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
-            while (overflowShelf.size() > 0) {
-                Long candidateOrderIdentifier = overflowShelfTracker.pollLast();
-                if (candidateOrderIdentifier != null) {
-                    Order candidateOrder = overflowShelf.get(candidateOrderIdentifier);
-                    if (candidateOrder != null) {
-                        // lock the target shelf.
-                        ShelfType targetShelfType = candidateOrder.getTemp();
-                        RLock targetShelfLock = redissonClient.getReadWriteLock(targetShelfType + "_lock").writeLock();
-                        targetShelfLock.lock();
-                        try {
-                            RMapCache<Long, Order> targetShelf = rMapCacheManager.getCache(targetShelfType.toString());
-                            if (targetShelf.size() < shelfCapacity.get(targetShelfType)) {
-                                // remove order from the overflow shelf.
-                                candidateOrder = removeFromShelf(candidateOrderIdentifier, true, overflowShelf, orderStatus);
-
-                                // check again considering no way to lock the expired data.
-                                if (candidateOrder != null) {
-                                    // put the order on the target shelf.
-                                    putOrderOnShelf(candidateOrder, false, overflowShelf, orderStatus, overflowShelfTracker);
-                                }
-                            } else {
-                                // recover overflowShelfTracker if failed to move
-                                overflowShelfTracker.add(candidateOrder.getLatestDeliveryTime(), candidateOrder.getIdentifier());
-                            }
-                        } finally {
-                            targetShelfLock.unlock();
-                        }
-                        // break if successfully moved an order from overflow to target shelf.
-                        break;
-                    }
-                }
-            }
-        } finally {
-            overflowShelfLock.unlock();
+    @Async
+    public void accept(Order order) {
+        place(order, 0);
+    }
+
+    /**
+     * Put the requeued order on shelf.
+     *
+     * @param attempts how many times the order has been requeued
+     */
+    public void retry(Order order, int attempts) {
+        place(order, attempts);
+    }
+
+    private void place(Order order, int attempts) {
+        if (isScriptPlacement()) {
+            placeWithScript(order);
+        } else {
+            placeWithLock(order, attempts);
         }
     }
 
     /**
-     * Put the order on shelf
+     * Put the order on shelf with one atomic operation of the shelf store, e.g. the placement script, no shelf lock is needed.
      */
-    @Async
-    public void accept(Order order) {
-        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
-        RScoredSortedSet<Long> overflowShelfTracker = redissonClient.getScoredSortedSet("overflow_shelf_tracker");
+    void placeWithScript(Order order) {
+        final long start = System.nanoTime();
+        ShelfType shelfType = shelfStore.place(order, shelfCapacity.get(order.getTemp()), shelfCapacity.get(OVERFLOW));
+        if (shelfType != null) {
+            logger.info("Put order on shelf[{}]: {}", shelfType, order);
+            String outcome = shelfType == OVERFLOW ? KitchenMetrics.PLACED_ON_OVERFLOW : KitchenMetrics.PLACED_ON_TARGET;
+            kitchenMetrics.recordPlacement(outcome, order.getTemp(), start);
+            // send shelf change event
+            shelfService.onOrderAdded(shelfType, order);
+        } else {
+            // if both the target shelf and the overflow shelf are full, the order has been marked as 'wasted'.
+            logger.info("No space for order [{}]: {}, waste directly.", order.getIdentifier(), order);
+            kitchenMetrics.recordPlacement(KitchenMetrics.WASTED, order.getTemp(), start);
+        }
+    }
+
+    /**
+     * Put the order on shelf under the shelf locks, the order will be requeued with backoff if the shelf is locked.
+     */
+    void placeWithLock(Order order, int attempts) {
         ShelfType shelfType = order.getTemp();
+        final long start = System.nanoTime();
         // lock the target shelf.
-        RLock shelfLock = redissonClient.getReadWriteLock(shelfType.toString() + "_lock").writeLock();
+        String shelfLockName = shelfType.toString() + "_lock";
+        RLock shelfLock = redissonClient.getReadWriteLock(shelfLockName).writeLock();
         if (shelfLock.tryLock()) {
+            long shelfLockedAt = kitchenMetrics.onLockAcquired(shelfLockName, start);
             try {
                 RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
                 if (shelf.size() < shelfCapacity.get(shelfType)) {
                     // put order on the target shelf
-                    putOrderOnShelf(order, false, shelf, orderStatus, overflowShelfTracker);
+                    putOrderOnShelf(order, false, shelf);
+                    kitchenMetrics.recordPlacement(KitchenMetrics.PLACED_ON_TARGET, shelfType, start);
                 }
                 // if the target shelf is full, try to put it on the overflow shelf.
                 else {
                     // lock the overflow shelf.
-                    RLock overflowShelfLock = redissonClient.getReadWriteLock(OVERFLOW.toString() + "_lock").writeLock();
+                    String overflowShelfLockName = OVERFLOW.toString() + "_lock";
+                    RLock overflowShelfLock = redissonClient.getReadWriteLock(overflowShelfLockName).writeLock();
+                    long overflowWaitStart = System.nanoTime();
                     if (overflowShelfLock.tryLock()) {
+                        long overflowShelfLockedAt = kitchenMetrics.onLockAcquired(overflowShelfLockName, overflowWaitStart);
                         try {
                             RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
                             if (overflowShelf.size() < shelfCapacity.get(OVERFLOW)) {
                                 // put order on the overflow shelf.
-                                putOrderOnShelf(order, true, overflowShelf, orderStatus, overflowShelfTracker);
+                                putOrderOnShelf(order, true, overflowShelf);
+                                kitchenMetrics.recordPlacement(KitchenMetrics.PLACED_ON_OVERFLOW, shelfType, start);
                             } else {
                                 // if both the target shelf and the overflow shelf are full, mark the order as 'wasted'.
                                 logger.info("No space for order [{}]: {}, waste directly.", order.getIdentifier(), order);
-                                orderStatus.remove(order.getIdentifier());
+                                orderStatusMachine.set(order.getIdentifier(), null);
+                                kitchenMetrics.recordPlacement(KitchenMetrics.WASTED, shelfType, start);
                             }
                         } finally {
                             overflowShelfLock.unlock();
+                            kitchenMetrics.onLockReleased(overflowShelfLockName, overflowShelfLockedAt);
                         }
                     } else {
                         // system busy, requeue the order.
-                        kafkaTemplate.send(topicName, order);
+                        kitchenMetrics.onLockFailed(overflowShelfLockName, overflowWaitStart);
+                        orderRetryService.requeue(order, OVERFLOW, attempts);
+                        kitchenMetrics.recordPlacement(KitchenMetrics.REQUEUED, shelfType, start);
                     }
                 }
             } finally {
                 shelfLock.unlock();
+                kitchenMetrics.onLockReleased(shelfLockName, shelfLockedAt);
             }
         } else {
             // system busy, requeue the order.
-            kafkaTemplate.send(topicName, order);
+            kitchenMetrics.onLockFailed(shelfLockName, start);
+            orderRetryService.requeue(order, shelfType, attempts);
+            kitchenMetrics.recordPlacement(KitchenMetrics.REQUEUED, shelfType, start);
+        }
+    }
+
+    /**
+     * Single-writer mode, put the order on its target shelf or hand it over to the owner of the overflow shelf if full.
+     * <p>
+     * This runs on the consumer thread of the target shelf owner, i.e. the only writer of the shelf, so no lock is needed. The order
+     * status always names the shelf whose owner is responsible for the order, including when the order is handed over, which is a
+     * compare and set of the status read, so a concurrent change of the status wins over the handover.
+     */
+    public void placeAsOwner(Order order) {
+        final long start = System.nanoTime();
+        ShelfType shelfType = order.getTemp();
+        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+        OrderStatusMachine.VersionedStatus status = getStatusIfResponsible(order, shelfType, shelf);
+        if (status == null) return;
+
+        if (shelf.size() < shelfCapacity.get(shelfType)) {
+            // put order on the target shelf
+            putOrderOnShelf(order, false, shelf);
+            kitchenMetrics.recordPlacement(KitchenMetrics.PLACED_ON_TARGET, shelfType, start);
+        } else {
+            // the target shelf is full, hand the order over to the owner of the overflow shelf.
+            if (!orderStatusMachine.transition(order.getIdentifier(), status, OVERFLOW)) return;
+            shelfOwnerService.send(OrderCommand.OVERFLOW, OVERFLOW, order);
+            kitchenMetrics.recordPlacement(KitchenMetrics.HANDED_OVER, shelfType, start);
+        }
+    }
+
+    /**
+     * Single-writer mode, put the order on the overflow shelf or waste it if full, this runs on the consumer thread of the overflow shelf owner.
+     */
+    public void placeOnOverflowAsOwner(Order order) {
+        final long start = System.nanoTime();
+        RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
+        OrderStatusMachine.VersionedStatus status = getStatusIfResponsible(order, OVERFLOW, overflowShelf);
+        if (status == null) return;
+
+        if (overflowShelf.size() < shelfCapacity.get(OVERFLOW)) {
+            // put order on the overflow shelf.
+            putOrderOnShelf(order, true, overflowShelf);
+            kitchenMetrics.recordPlacement(KitchenMetrics.PLACED_ON_OVERFLOW, order.getTemp(), start);
+        } else {
+            // if both the target shelf and the overflow shelf are full, mark the order as 'wasted'.
+            logger.info("No space for order [{}]: {}, waste directly.", order.getIdentifier(), order);
+            if (!orderStatusMachine.transition(order.getIdentifier(), status, null)) return;
+            kitchenMetrics.recordPlacement(KitchenMetrics.WASTED, order.getTemp(), start);
+        }
+    }
+
+    /**
+     * Whether the owner of the shelf is responsible for putting the order on it, i.e. the order is waiting or handed over to the shelf,
+     * and it's not on the shelf yet, in case the command is delivered more than once.
+     *
+     * @return the status as read, null if the owner is not responsible
+     */
+    private OrderStatusMachine.VersionedStatus getStatusIfResponsible(Order order, ShelfType shelfType, RMapCache<Long, Order> shelf) {
+        OrderStatusMachine.VersionedStatus status = orderStatusMachine.get(order.getIdentifier());
+        if (status.getShelfType() == ShelfType.WAITING
+            || (status.getShelfType() == shelfType && !shelf.containsKey(order.getIdentifier()))) {
+            return status;
         }
+        logger.info("Skip order [{}] with status {} for shelf[{}].", order.getIdentifier(), status.getShelfType(), shelfType);
+        return null;
     }
 
-    void putOrderOnShelf(Order order, Boolean toOverflowShelf, RMapCache<Long, Order> shelf, RMapCache<Long, String> orderStatus, RScoredSortedSet<Long> overflowShelfTracker) {
+    void putOrderOnShelf(Order order, Boolean toOverflowShelf, RMapCache<Long, Order> shelf) {
         // set/reset on-shelf date for the order and ready to put on shelf.
-        order.setOnShelfDate(LocalDateTime.now());
+        final long now = System.currentTimeMillis();
+        order.setOnShelfMillis(now);
         order.setIsOnOverflowShelf(toOverflowShelf);
-        order.onMove();
+        order.onMove(now);
 
         ShelfType toShelfType = toOverflowShelf ? OVERFLOW : order.getTemp();
         logger.info("Put order on shelf[{}]: {}", toShelfType, order);
-        shelf.put(order.getIdentifier(), order, new Double(order.getLatestDeliveryTime() * 1000).longValue(), TimeUnit.MILLISECONDS);
 
-        // update the order status.
-        orderStatus.put(order.getIdentifier(), toShelfType.toString());
+        // the shelf entry, the order status along with its version and the decay index entry in one pipelined batch, i.e. one round trip.
+        RBatch batch = redissonClient.createBatch();
+        batch.<Long, Order>getMapCache(shelf.getName())
+            .fastPutAsync(order.getIdentifier(), order, (long) (order.getLatestDeliveryTime() * 1000), TimeUnit.MILLISECONDS);
+        orderStatusMachine.set(batch, order.getIdentifier(), toShelfType);
+        batch.<Long>getScoredSortedSet(ShelfDecayIndex.getName(toShelfType, order.getTemp()), LongCodec.INSTANCE)
+            .addAsync(order.getDecayDateMillis(), order.getIdentifier());
+        batch.execute();
 
-        // setup the tracker if it's for overflow shelf.
-        if (toOverflowShelf) {
-            overflowShelfTracker.add(order.getLatestDeliveryTime(), order.getIdentifier());
-        }
+        // the order is indexed by its decay date, arm its local deadline.
+        shelfDecayIndex.track(toShelfType, order);
 
         // send shelf change event
-        shelfService.onShelfChange(toShelfType);
+        shelfService.onOrderAdded(toShelfType, order);
     }
 
-    Order removeFromShelf(Long orderIdentifier, Boolean fromOverflowShelf, RMapCache<Long, Order> shelf, RMapCache<Long, String> orderStatus) {
-        Order order = shelf.remove(orderIdentifier);
+    /**
+     * Remove the order from the shelf along with its decay index entry and its status in one round trip, see {@link ShelfStore#remove},
+     * the status is only removed if it still names the shelf, so no lock of the status is needed.
+     */
+    Order removeFromShelf(Long orderIdentifier, ShelfType fromShelfType) {
+        Order order = shelfStore.remove(fromShelfType, orderIdentifier);
 
         if (order == null) return null;
 
-        ShelfType fromShelfType = fromOverflowShelf ? OVERFLOW : order.getTemp();
-
-        // !Important, need to reset value when situation changes.
-        order.onMove();
         logger.info("Remove order from shelf[{}]: {}", fromShelfType, order);
 
-        // remove from the order status.
-        RLock statusLock = orderStatus.getReadWriteLock(orderIdentifier).writeLock();
-        statusLock.lock();
-        try {
-            orderStatus.remove(orderIdentifier);
-        } finally {
-            statusLock.unlock();
-        }
-
         // send shelf change event
-        shelfService.onShelfChange(fromShelfType);
+        shelfService.onOrderRemoved(fromShelfType, order, RemovalReason.DELIVERED);
 
         return order;
     }
 
+    private boolean isScriptPlacement() {
+        return "script".equals(placementMode);
+    }
+
 }
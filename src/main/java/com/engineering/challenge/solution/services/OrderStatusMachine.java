@@ -0,0 +1,180 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.utils.LuaScript;
+
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.codec.CompositeCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+import javax.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+import static com.engineering.challenge.solution.domain.ShelfType.WAITING;
+
+/**
+ * The transitions of the order status in Redis as versioned compare and set, i.e. a transition only applies if the status is still
+ * the expected one at the expected version, otherwise the caller reads the status again, so no per-order lock is needed.
+ * <p>
+ * The version of an order counts the writes of its status in the order_status_version hash, the placement, move and removal scripts
+ * bump or remove it along with the status. The WAITING status written once on creation is version 0. The illegal transitions, e.g.
+ * from one target shelf to another, are rejected locally without a round trip.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderStatusMachine {
+
+    private static Logger logger = LoggerFactory.getLogger(OrderStatusMachine.class);
+
+    /**
+     * The version per order, keyed like the order_status entries.
+     */
+    public static final String ORDER_STATUS_VERSION = "order_status_version";
+
+    private static final String ORDER_STATUS = "order_status";
+
+    private static final String TRANSITION_ORDER_STATUS_SCRIPT = "scripts/transition-order-status.lua";
+
+    private final RedissonClient redissonClient;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    private LuaScript transitionScript;
+
+    @PostConstruct
+    public void init() {
+        transitionScript = LuaScript.load(TRANSITION_ORDER_STATUS_SCRIPT);
+    }
+
+    /**
+     * Read the status of the order along with its version in one round trip.
+     *
+     * @return the status, whose shelf type is null if the order has none, i.e. it's delivered, wasted or unknown
+     */
+    public VersionedStatus get(Long orderIdentifier) {
+        RBatch batch = redissonClient.createBatch();
+        RFuture<String> status = batch.<Long, String>getMapCache(ORDER_STATUS).getAsync(orderIdentifier);
+        RFuture<Long> version = getVersions(batch).getAsync(orderIdentifier);
+        batch.execute();
+        return new VersionedStatus(
+            status.getNow() == null ? null : ShelfType.fromString(status.getNow()),
+            version.getNow() == null ? 0 : version.getNow()
+        );
+    }
+
+    /**
+     * Set the status of the order if it's still the expected one at the expected version, with one atomic script.
+     *
+     * @param newStatus the new status, null to remove the status, e.g. the order is wasted
+     * @return false if the transition is illegal or the status has changed meanwhile
+     */
+    public boolean transition(Long orderIdentifier, VersionedStatus expected, ShelfType newStatus) {
+        if (!isLegal(expected.getShelfType(), newStatus)) {
+            logger.warn("Reject the status transition of order [{}] from {} to {}.", orderIdentifier, expected.getShelfType(), newStatus);
+            kitchenMetrics.recordStatusTransition(KitchenMetrics.TRANSITION_ILLEGAL);
+            return false;
+        }
+
+        final Codec codec = redissonClient.getConfig().getCodec();
+        Long version = transitionScript.eval(
+            redissonClient.getScript(ByteArrayCodec.INSTANCE), RScript.ReturnType.INTEGER,
+            Arrays.asList(ORDER_STATUS, ORDER_STATUS_VERSION),
+            ShelfPlacementEngine.encode(codec.getMapKeyEncoder(), orderIdentifier),
+            encodeStatus(codec, expected.getShelfType()),
+            ShelfPlacementEngine.toBytes(expected.getVersion()),
+            encodeStatus(codec, newStatus)
+        );
+        if (version < 0) {
+            logger.info("Status of order [{}] is not {} at version {} any more, skip the transition to {}.",
+                orderIdentifier, expected.getShelfType(), expected.getVersion(), newStatus);
+            kitchenMetrics.recordStatusTransition(KitchenMetrics.TRANSITION_CONFLICT);
+            return false;
+        }
+        kitchenMetrics.recordStatusTransition(KitchenMetrics.TRANSITION_APPLIED);
+        return true;
+    }
+
+    /**
+     * Set the status of the order unconditionally as part of the batch, and bump its version, for the writers which are the only one of
+     * the order already, e.g. under the shelf lock or on the shelf owner.
+     *
+     * @param status the status, null to remove the status along with its version
+     */
+    public void set(RBatch batch, Long orderIdentifier, ShelfType status) {
+        RMapCacheAsync<Long, String> orderStatus = batch.getMapCache(ORDER_STATUS);
+        if (status == null) {
+            orderStatus.fastRemoveAsync(orderIdentifier);
+            getVersions(batch).fastRemoveAsync(orderIdentifier);
+        } else {
+            orderStatus.fastPutAsync(orderIdentifier, status.toString());
+            getVersions(batch).addAndGetAsync(orderIdentifier, 1L);
+        }
+    }
+
+    /**
+     * See {@link #set(RBatch, Long, ShelfType)}, in one round trip.
+     */
+    public void set(Long orderIdentifier, ShelfType status) {
+        RBatch batch = redissonClient.createBatch();
+        set(batch, orderIdentifier, status);
+        batch.execute();
+    }
+
+    /**
+     * The order is created WAITING, put on a shelf from WAITING, handed over or moved between its target shelf and the overflow shelf,
+     * and its status is removed once it leaves the shelves.
+     */
+    static boolean isLegal(ShelfType from, ShelfType to) {
+        if (to == null) return from != null;
+        if (to == WAITING) return from == null;
+        if (from == null || from == to) return false;
+        // never from one target shelf to another.
+        return from == WAITING || from == OVERFLOW || to == OVERFLOW;
+    }
+
+    private RMapAsync<Long, Long> getVersions(RBatch batch) {
+        // the keys are encoded like the ones of order_status, which the scripts pass for both.
+        return batch.getMap(ORDER_STATUS_VERSION, new CompositeCodec(redissonClient.getConfig().getCodec(), LongCodec.INSTANCE));
+    }
+
+    private static byte[] encodeStatus(Codec codec, ShelfType status) {
+        return status == null ? new byte[0] : ShelfPlacementEngine.encode(codec.getMapValueEncoder(), status.toString());
+    }
+
+    /**
+     * The status of an order at the version it has been read.
+     */
+    public static final class VersionedStatus {
+
+        private final ShelfType shelfType;
+
+        private final long version;
+
+        public VersionedStatus(ShelfType shelfType, long version) {
+            this.shelfType = shelfType;
+            this.version = version;
+        }
+
+        public ShelfType getShelfType() {
+            return shelfType;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
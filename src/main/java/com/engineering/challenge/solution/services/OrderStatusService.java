@@ -0,0 +1,164 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderStatusDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.ExpiringLruCache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The status of the orders, i.e. the shelf, normalized value and time to decay, read through a local cache of the order status and
+ * shelf entries, so the callers polling for their orders don't each read the store.
+ * <p>
+ * The cache holds order-app.order-status-cache-size orders for order-app.order-status-cache-ttl-ms at most, and an order is dropped
+ * from it on the shelf change event moving the order, see {@link ShelfStreamHub}. The normalized value and time to decay are calculated
+ * on each read from the decay date of the cached order, so they don't go stale within the time to live.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderStatusService {
+
+    private final ShelfStore shelfStore;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    @Value("${order-app.order-status-cache-size:10000}")
+    private int cacheSize;
+
+    /**
+     * How long in millis the status of an order is served from the cache, in case a shelf change event is missed.
+     */
+    @Value("${order-app.order-status-cache-ttl-ms:2000}")
+    private long cacheTtl;
+
+    private ExpiringLruCache<Long, CachedStatus> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new ExpiringLruCache<>(cacheSize, cacheTtl);
+        kitchenMetrics.gaugeOrderStatusCache(cache);
+    }
+
+    /**
+     * Get the status of the order, with a null shelf if it's delivered, wasted or unknown.
+     */
+    public Mono<OrderStatusDTO> getStatus(Long orderIdentifier) {
+        return getStatuses(Collections.singletonList(orderIdentifier)).map(statuses -> statuses.get(0));
+    }
+
+    /**
+     * Get the status of the orders in the same order, the cache misses are read from the store together off the subscribing thread.
+     */
+    public Mono<List<OrderStatusDTO>> getStatuses(List<Long> orderIdentifiers) {
+        final long now = System.currentTimeMillis();
+        Map<Long, CachedStatus> found = new LinkedHashMap<>();
+        Set<Long> missed = new LinkedHashSet<>();
+        for (Long orderIdentifier : orderIdentifiers) {
+            if (found.containsKey(orderIdentifier) || missed.contains(orderIdentifier)) continue;
+            CachedStatus status = cache.get(orderIdentifier, now);
+            if (status != null) {
+                found.put(orderIdentifier, status);
+            } else {
+                missed.add(orderIdentifier);
+            }
+        }
+        if (missed.isEmpty()) {
+            return Mono.just(toStatusDTOs(orderIdentifiers, found, now));
+        }
+        return Mono
+            .fromCallable(() -> {
+                found.putAll(load(missed));
+                return toStatusDTOs(orderIdentifiers, found, System.currentTimeMillis());
+            })
+            .subscribeOn(Schedulers.elastic());
+    }
+
+    /**
+     * Drop the order of a shelf change from the cache, a snapshot changes nothing on its own.
+     */
+    public void onShelfEvent(ShelfEventDTO shelfEvent) {
+        if (shelfEvent.getEvent() != ShelfEventType.SNAPSHOT && shelfEvent.getOrder() != null) {
+            cache.invalidate(shelfEvent.getOrder().getIdentifier());
+        }
+    }
+
+    /**
+     * Read the status of the orders, then the orders from their shelves, i.e. a round trip for the status and one per shelf.
+     */
+    private Map<Long, CachedStatus> load(Collection<Long> orderIdentifiers) {
+        Map<Long, Object> reservations = new LinkedHashMap<>();
+        orderIdentifiers.forEach(orderIdentifier -> reservations.put(orderIdentifier, cache.reserve(orderIdentifier)));
+
+        Map<Long, ShelfType> statuses = shelfStore.getStatuses(orderIdentifiers);
+        Map<ShelfType, List<Long>> onShelves = new EnumMap<>(ShelfType.class);
+        statuses.forEach((orderIdentifier, shelfType) -> {
+            if (shelfType != ShelfType.WAITING) onShelves.computeIfAbsent(shelfType, st -> new ArrayList<>()).add(orderIdentifier);
+        });
+        Map<Long, Order> orders = new LinkedHashMap<>();
+        onShelves.forEach((shelfType, onShelf) -> orders.putAll(shelfStore.getOrders(shelfType, onShelf)));
+
+        final long now = System.currentTimeMillis();
+        Map<Long, CachedStatus> loaded = new LinkedHashMap<>();
+        for (Long orderIdentifier : orderIdentifiers) {
+            ShelfType shelfType = statuses.get(orderIdentifier);
+            Order order = orders.get(orderIdentifier);
+            CachedStatus status = new CachedStatus(shelfType, order);
+            loaded.put(orderIdentifier, status);
+            // an order between its status and shelf entry is moving, so it's not cached.
+            if (shelfType == null || shelfType == ShelfType.WAITING || order != null) {
+                cache.putIfReserved(orderIdentifier, reservations.get(orderIdentifier), status, now);
+            }
+        }
+        return loaded;
+    }
+
+    private static List<OrderStatusDTO> toStatusDTOs(List<Long> orderIdentifiers, Map<Long, CachedStatus> statuses, long now) {
+        List<OrderStatusDTO> statusDTOs = new ArrayList<>(orderIdentifiers.size());
+        for (Long orderIdentifier : orderIdentifiers) {
+            CachedStatus status = statuses.get(orderIdentifier);
+            OrderStatusDTO statusDTO = new OrderStatusDTO(orderIdentifier, status.shelfType, null, null);
+            Order order = status.order;
+            if (order != null && order.getDecayDateMillis() != Order.NO_DATE) {
+                statusDTO.setNormalizedValue(Math.max(0, order.getNormalizedValue(now)));
+                statusDTO.setSecondsToDecay(Math.max(0, order.getDecayDateMillis() - now) / 1000d);
+            }
+            statusDTOs.add(statusDTO);
+        }
+        return statusDTOs;
+    }
+
+    /**
+     * The shelf of the order and the order on it, i.e. null both for a delivered, wasted or unknown order, and no order while waiting.
+     */
+    private static final class CachedStatus {
+
+        private final ShelfType shelfType;
+
+        private final Order order;
+
+        CachedStatus(ShelfType shelfType, Order order) {
+            this.shelfType = shelfType;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Move the overflow orders back to their target shelves, i.e. in one pass, as many orders as the hot, cold and frozen shelves have
+ * free slots for, the ones closest to decay first, e.g. according to the {@link ShelfDecayIndex} of the Redis shelf store.
+ * <p>
+ * A pass runs when an order decays from a target shelf and on a fixed cadence, so the slots freed by deliveries are refilled too.
+ */
+@Service
+@RequiredArgsConstructor
+public class OverflowRebalancer {
+
+    private static Logger logger = LoggerFactory.getLogger(OverflowRebalancer.class);
+
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final RedissonClient redissonClient;
+
+    private final ShelfService shelfService;
+
+    private final ShelfStore shelfStore;
+
+    private final ShelfOwnerService shelfOwnerService;
+
+    private final ShelfDecayIndex shelfDecayIndex;
+
+    private final OrderStatusMachine orderStatusMachine;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    @Value("#{${order-app.shelf-capacity}}")
+    private Map<ShelfType, Integer> shelfCapacity;
+
+    @Value("${order-app.placement-mode:script}")
+    private String placementMode;
+
+    @Value("${order-app.overflow-rebalance-interval-ms:1000}")
+    private long rebalanceInterval;
+
+    private ScheduledFuture<?> rebalanceTask;
+
+    @PostConstruct
+    public void init() {
+        rebalanceTask = scheduler.scheduleWithFixedDelay(this::rebalanceOnSchedule, rebalanceInterval);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (rebalanceTask != null) {
+            rebalanceTask.cancel(false);
+        }
+    }
+
+    void rebalanceOnSchedule() {
+        try {
+            if (!shelfOwnerService.isEnabled()) {
+                rebalance();
+            } else if (shelfOwnerService.isOwner(OVERFLOW)) {
+                rebalanceAsOwner();
+            }
+        } catch (Exception ex) {
+            logger.error("Failed to rebalance the overflow shelf", ex);
+        }
+    }
+
+    /**
+     * Move the overflow orders back to the target shelves with one atomic operation of the shelf store, under all the shelf locks in
+     * lock mode.
+     *
+     * @return the number of moved orders
+     */
+    public int rebalance() {
+        RLock shelfLocks = null;
+        long lockedAt = 0;
+        if ("lock".equals(placementMode)) {
+            // the lock based placements check the capacity under the shelf lock, so they must not see a move half way.
+            shelfLocks = redissonClient.getMultiLock(
+                redissonClient.getReadWriteLock(OVERFLOW + "_lock").writeLock(),
+                redissonClient.getReadWriteLock(HOT + "_lock").writeLock(),
+                redissonClient.getReadWriteLock(COLD + "_lock").writeLock(),
+                redissonClient.getReadWriteLock(FROZEN + "_lock").writeLock()
+            );
+            long waitStart = System.nanoTime();
+            shelfLocks.lock();
+            lockedAt = kitchenMetrics.onLockAcquired(KitchenMetrics.SHELVES_LOCK, waitStart);
+        }
+        try {
+            List<Order> candidates = shelfStore.getOverflowCandidates(shelfCapacity);
+            if (candidates.isEmpty()) return 0;
+
+            List<Order> movedOrders = shelfStore.moveFromOverflow(candidates, shelfCapacity);
+            for (Order order : movedOrders) {
+                logger.info("Move order from shelf[{}] to shelf[{}]: {}", OVERFLOW, order.getTemp(), order);
+                shelfService.onOrderRemoved(OVERFLOW, order, RemovalReason.MOVED);
+                shelfService.onOrderAdded(order.getTemp(), order);
+            }
+            return movedOrders.size();
+        } finally {
+            if (shelfLocks != null) {
+                shelfLocks.unlock();
+                kitchenMetrics.onLockReleased(KitchenMetrics.SHELVES_LOCK, lockedAt);
+            }
+        }
+    }
+
+    /**
+     * Single-writer mode, take the overflow orders off the overflow shelf and hand them over to the owners of their target shelves,
+     * which check the capacity again. This runs on the overflow shelf owner only, and the passes never overlap.
+     *
+     * @return the number of orders handed over
+     */
+    public synchronized int rebalanceAsOwner() {
+        List<Order> candidates = shelfStore.getOverflowCandidates(shelfCapacity);
+        if (candidates.isEmpty()) return 0;
+
+        // take the candidates off the overflow shelf and its decay indexes in one batch, i.e. one round trip.
+        RBatch removal = redissonClient.createBatch();
+        List<RFuture<Order>> removedOrders = new ArrayList<>(candidates.size());
+        for (Order candidateOrder : candidates) {
+            removedOrders.add(removal.<Long, Order>getMapCache(OVERFLOW.toString()).removeAsync(candidateOrder.getIdentifier()));
+            removal.<Long>getScoredSortedSet(ShelfDecayIndex.getName(OVERFLOW, candidateOrder.getTemp()), LongCodec.INSTANCE)
+                .removeAsync(candidateOrder.getIdentifier());
+        }
+        removal.execute();
+
+        // then hand the orders over to the target shelves in one batch.
+        RBatch handover = redissonClient.createBatch();
+        List<Order> movedOrders = new ArrayList<>(candidates.size());
+        for (RFuture<Order> removedOrder : removedOrders) {
+            // the order may have been delivered or expired meanwhile.
+            Order order = removedOrder.getNow();
+            if (order == null) continue;
+
+            shelfDecayIndex.untrack(order.getIdentifier());
+            // !Important, need to reset value when situation changes.
+            order.onMove();
+            logger.info("Remove order from shelf[{}]: {}", OVERFLOW, order);
+            orderStatusMachine.set(handover, order.getIdentifier(), order.getTemp());
+            movedOrders.add(order);
+        }
+        if (movedOrders.isEmpty()) return 0;
+        handover.execute();
+
+        for (Order order : movedOrders) {
+            shelfOwnerService.send(OrderCommand.PLACE, order.getTemp(), order);
+            shelfService.onOrderRemoved(OVERFLOW, order, RemovalReason.MOVED);
+        }
+        return movedOrders.size();
+    }
+
+    /**
+     * Pick the overflow orders closest to decay up to the free slots of their target shelf.
+     *
+     * @param atRiskFirst the overflow orders per temperature, the first to decay first
+     * @return the candidates to move
+     */
+    static List<Long> selectCandidates(Map<ShelfType, Collection<Long>> atRiskFirst, Map<ShelfType, Integer> freeSlots) {
+        List<Long> candidates = new ArrayList<>();
+        atRiskFirst.forEach((temp, orderIdentifiers) -> orderIdentifiers.stream()
+            .limit(Math.max(freeSlots.getOrDefault(temp, 0), 0))
+            .forEach(candidates::add));
+        return candidates;
+    }
+}
@@ -0,0 +1,244 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLock;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * The shelves shared by all the nodes in Redis, i.e. one RMapCache per shelf plus the order_status map, written by the atomic scripts
+ * of the {@link ShelfPlacementEngine} and indexed by the {@link ShelfDecayIndex}, whose local deadlines fire at the decay dates.
+ * <p>
+ * The WAITING status put on creation has no version yet, i.e. version 0 of the {@link OrderStatusMachine}, the later writes of the
+ * status bump its version.
+ */
+@Service
+@ConditionalOnProperty(name = "order-app.shelf-store", havingValue = "redis", matchIfMissing = true)
+@RequiredArgsConstructor
+public class RedisShelfStore implements ShelfStore {
+
+    private static final ShelfType[] TARGET_SHELVES = {HOT, COLD, FROZEN};
+
+    private final RedissonClient redissonClient;
+
+    private final RMapCacheManager rMapCacheManager;
+
+    private final ShelfPlacementEngine shelfPlacementEngine;
+
+    private final ShelfDecayIndex shelfDecayIndex;
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public ShelfType place(Order order, int targetCapacity, int overflowCapacity) {
+        ShelfType shelfType = shelfPlacementEngine.place(order, targetCapacity, overflowCapacity);
+        if (shelfType != null) {
+            // the script has indexed the order, arm its local deadline.
+            shelfDecayIndex.track(shelfType, order);
+        }
+        return shelfType;
+    }
+
+    /**
+     * The shelf entry, the decay index entry and the order status are removed by one script, i.e. a single round trip.
+     */
+    @Override
+    public Order remove(ShelfType shelfType, Long orderIdentifier) {
+        Order order = shelfPlacementEngine.remove(shelfType, orderIdentifier);
+        if (order == null) return null;
+
+        // !Important, need to reset value when situation changes.
+        order.onMove();
+        shelfDecayIndex.untrack(orderIdentifier);
+        return order;
+    }
+
+    /**
+     * One script per order in one pipelined batch, i.e. a single round trip for all the orders.
+     */
+    @Override
+    public List<Order> removeAll(ShelfType shelfType, Collection<Long> orderIdentifiers) {
+        List<Order> orders = shelfPlacementEngine.removeAll(shelfType, orderIdentifiers);
+        for (Order order : orders) {
+            order.onMove();
+            shelfDecayIndex.untrack(order.getIdentifier());
+        }
+        return orders;
+    }
+
+    @Override
+    public Order removeDecayed(ShelfType shelfType, ShelfType temp, Long orderIdentifier, long deadline) {
+        return shelfPlacementEngine.removeDecayed(shelfType, temp, orderIdentifier, deadline);
+    }
+
+    @Override
+    public List<Order> removeAllDecayed(ShelfType shelfType, List<Order> orders) {
+        return shelfPlacementEngine.removeAllDecayed(shelfType, orders);
+    }
+
+    /**
+     * Read the free slots of the target shelves and the overflow orders closest to decay per temperature from the decay index in one
+     * batch, then read the orders to move.
+     */
+    @Override
+    public List<Order> getOverflowCandidates(Map<ShelfType, Integer> shelfCapacity) {
+        RBatch batch = redissonClient.createBatch();
+        Map<ShelfType, RFuture<Integer>> shelfSizes = new EnumMap<>(ShelfType.class);
+        Map<ShelfType, RFuture<Collection<Long>>> firstToDecay = new EnumMap<>(ShelfType.class);
+        double now = System.currentTimeMillis();
+        for (ShelfType shelfType : TARGET_SHELVES) {
+            shelfSizes.put(shelfType, batch.getMapCache(shelfType.toString()).sizeAsync());
+            // never more than the capacity of the target shelf, the orders already decayed are left to expire.
+            firstToDecay.put(shelfType, batch.<Long>getScoredSortedSet(ShelfDecayIndex.getName(OVERFLOW, shelfType), LongCodec.INSTANCE)
+                .valueRangeAsync(now, true, Double.POSITIVE_INFINITY, true, 0, shelfCapacity.get(shelfType)));
+        }
+        batch.execute();
+
+        Map<ShelfType, Integer> freeSlots = new EnumMap<>(ShelfType.class);
+        Map<ShelfType, Collection<Long>> atRiskFirst = new EnumMap<>(ShelfType.class);
+        for (ShelfType shelfType : TARGET_SHELVES) {
+            freeSlots.put(shelfType, shelfCapacity.get(shelfType) - shelfSizes.get(shelfType).getNow());
+            atRiskFirst.put(shelfType, firstToDecay.get(shelfType).getNow());
+        }
+        List<Long> candidateIdentifiers = OverflowRebalancer.selectCandidates(atRiskFirst, freeSlots);
+        if (candidateIdentifiers.isEmpty()) return Collections.emptyList();
+
+        RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
+        Map<Long, Order> overflowOrders = overflowShelf.getAll(new HashSet<>(candidateIdentifiers));
+        List<Order> candidates = new ArrayList<>(overflowOrders.size());
+        for (Long candidateIdentifier : candidateIdentifiers) {
+            // the order may have left the overflow shelf meanwhile.
+            Order order = overflowOrders.get(candidateIdentifier);
+            if (order != null) candidates.add(order);
+        }
+        return candidates;
+    }
+
+    @Override
+    public List<Order> moveFromOverflow(List<Order> candidates, Map<ShelfType, Integer> shelfCapacity) {
+        List<Order> movedOrders = shelfPlacementEngine.moveFromOverflow(candidates, shelfCapacity);
+        for (Order order : movedOrders) {
+            // replaces the deadline on the overflow shelf.
+            shelfDecayIndex.track(order.getTemp(), order);
+        }
+        return movedOrders;
+    }
+
+    @Override
+    public List<Order> getOrders(ShelfType shelfType) {
+        // lock the shelf, so a lock based placement is never seen half way.
+        RLock shelfLock = redissonClient.getReadWriteLock(shelfType.toString() + "_lock").readLock();
+        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+        shelfLock.lock();
+        try {
+            // one round trip for all the values, rather than scanning the shelf.
+            return new ArrayList<>(shelf.readAllValues());
+        } finally {
+            shelfLock.unlock();
+        }
+    }
+
+    /**
+     * No shelf lock, the orders are read for their status only, so an order being placed may be missed.
+     */
+    @Override
+    public Map<Long, Order> getOrders(ShelfType shelfType, Collection<Long> orderIdentifiers) {
+        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+        return shelf.getAll(new HashSet<>(orderIdentifiers));
+    }
+
+    @Override
+    public int size(ShelfType shelfType) {
+        return rMapCacheManager.getCache(shelfType.toString()).size();
+    }
+
+    @Override
+    public ShelfType getStatus(Long orderIdentifier) {
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        String status = orderStatus.get(orderIdentifier);
+        return status == null ? null : ShelfType.fromString(status);
+    }
+
+    @Override
+    public Map<Long, ShelfType> getStatuses(Collection<Long> orderIdentifiers) {
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        Map<Long, ShelfType> statuses = new HashMap<>();
+        // one round trip for all the orders.
+        orderStatus.getAll(new HashSet<>(orderIdentifiers)).forEach((id, status) -> statuses.put(id, ShelfType.fromString(status)));
+        return statuses;
+    }
+
+    @Override
+    public void putStatus(Long orderIdentifier, ShelfType shelfType) {
+        rMapCacheManager.getCache("order_status").put(orderIdentifier, shelfType.toString());
+    }
+
+    @Override
+    public Mono<Void> putStatusAsync(Long orderIdentifier, ShelfType shelfType) {
+        return Mono.defer(() -> {
+            RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+            return Mono.fromFuture(orderStatus.fastPutAsync(orderIdentifier, shelfType.toString()).toCompletableFuture());
+        }).then();
+    }
+
+    /**
+     * Put the statuses in one pipelined batch, i.e. one round trip. The replies are not skipped, CLIENT REPLY needs Redis 3.2.
+     */
+    @Override
+    public Mono<Void> putStatusesAsync(Collection<Long> orderIdentifiers, ShelfType shelfType) {
+        return Mono.defer(() -> {
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            RMapCacheAsync<Long, String> orderStatus = batch.getMapCache("order_status");
+            String status = shelfType.toString();
+            for (Long orderIdentifier : orderIdentifiers) {
+                orderStatus.fastPutAsync(orderIdentifier, status);
+            }
+            return Mono.fromFuture(batch.executeAsync().toCompletableFuture());
+        }).then();
+    }
+
+    @Override
+    public long getSequence(ShelfType shelfType) {
+        return redissonClient.getAtomicLong(shelfType.toString() + "_sequence").get();
+    }
+
+    @Override
+    public long incrementSequence(ShelfType shelfType) {
+        return redissonClient.getAtomicLong(shelfType.toString() + "_sequence").incrementAndGet();
+    }
+
+    @Override
+    public void setDeadlineHandler(BiConsumer<ShelfType, Order> deadlineHandler) {
+        shelfDecayIndex.setDeadlineHandler(deadlineHandler);
+    }
+}
@@ -0,0 +1,71 @@
+package com.engineering.challenge.solution.services;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.AcknowledgingConsumerAwareMessageListener;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The listener of a retry topic, which hands each requeued order to the action once it's due without blocking the consumer, i.e. the
+ * partition whose next record is not due yet is sought back to it and paused until its due date, the other partitions go on.
+ * <p>
+ * This runs on the consumer threads of the container only, each thread resumes the paused partitions it's assigned on its next record
+ * or its next idle event, see {@link #resumeDue(Consumer)}. The records are acknowledged one by one once handed to the action if the
+ * container is in the manual ack mode, and the position of a paused partition is its first record not due yet, so neither the manual
+ * acks nor the auto commit skip it.
+ */
+public class RetryTopicListener implements AcknowledgingConsumerAwareMessageListener<String, Object> {
+
+    private final java.util.function.Consumer<ConsumerRecord<String, Object>> action;
+
+    /**
+     * The due date of the paused partitions, whose next record is not due yet.
+     */
+    private final Map<TopicPartition, Long> pausedUntil = new ConcurrentHashMap<>();
+
+    public RetryTopicListener(java.util.function.Consumer<ConsumerRecord<String, Object>> action) {
+        this.action = action;
+    }
+
+    @Override
+    public void onMessage(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        resumeDue(consumer);
+
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        // fetched before the partition has been paused, it's fetched again once resumed.
+        if (consumer.paused().contains(partition)) return;
+
+        // the pause is lost if the partition has been revoked and assigned again meanwhile.
+        pausedUntil.remove(partition);
+        long dueAt = OrderRetryService.getDueAt(record);
+        if (dueAt > System.currentTimeMillis()) {
+            consumer.seek(partition, record.offset());
+            consumer.pause(Collections.singleton(partition));
+            pausedUntil.put(partition, dueAt);
+            return;
+        }
+        action.accept(record);
+        if (acknowledgment != null) acknowledgment.acknowledge();
+    }
+
+    /**
+     * Resume the paused partitions of the consumer whose next record is due, on the consumer thread.
+     */
+    public void resumeDue(Consumer<?, ?> consumer) {
+        if (pausedUntil.isEmpty()) return;
+
+        final long now = System.currentTimeMillis();
+        for (TopicPartition partition : consumer.assignment()) {
+            Long dueAt = pausedUntil.get(partition);
+            if (dueAt == null || dueAt > now) continue;
+
+            consumer.resume(Collections.singleton(partition));
+            pausedUntil.remove(partition);
+        }
+    }
+}
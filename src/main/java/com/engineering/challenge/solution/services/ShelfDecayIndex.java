@@ -0,0 +1,111 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * The orders on each shelf scored by their absolute decay date in epoch millis, so the orders decaying soon or first are found in
+ * O(log n) rather than by scanning the shelf, i.e. the first orders of the index are the ones with the least shelf time left.
+ * <p>
+ * The overflow shelf is indexed per temperature, so the orders to move back to a target shelf are a range of one index. The index is
+ * kept in sync wherever an order is put on or removed from a shelf, including the placement scripts which write the same keys.
+ * <p>
+ * Besides, the orders put on a shelf by this node have a local deadline on the timing wheel at their decay date, which is handed to
+ * the deadline handler, i.e. the {@link DecayEngine}, when it's due.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShelfDecayIndex {
+
+    private final RedissonClient redissonClient;
+
+    private final HashedTimingWheel orderTimingWheel;
+
+    private final Map<Long, HashedTimingWheel.Timeout> deadlines = new ConcurrentHashMap<>();
+
+    private volatile BiConsumer<ShelfType, Order> deadlineHandler;
+
+    /**
+     * The name of the index of the orders of the temperature on the shelf.
+     */
+    public static String getName(ShelfType shelfType, ShelfType temp) {
+        return shelfType == OVERFLOW ? OVERFLOW + "_" + temp + "_decay_index" : shelfType + "_decay_index";
+    }
+
+    public RScoredSortedSet<Long> get(ShelfType shelfType, ShelfType temp) {
+        return redissonClient.getScoredSortedSet(getName(shelfType, temp), LongCodec.INSTANCE);
+    }
+
+    public void remove(ShelfType shelfType, Order order) {
+        get(shelfType, order.getTemp()).remove(order.getIdentifier());
+        untrack(order.getIdentifier());
+    }
+
+    /**
+     * Arm the local deadline of the order put on the shelf, e.g. by a script which has indexed it already, the previous deadline of the
+     * order is cancelled.
+     */
+    public void track(ShelfType shelfType, Order order) {
+        final Long orderIdentifier = order.getIdentifier();
+        HashedTimingWheel.Timeout deadline = orderTimingWheel.scheduleAt(() -> {
+            deadlines.computeIfPresent(orderIdentifier, (k, timeout) -> timeout.isExpired() ? null : timeout);
+            BiConsumer<ShelfType, Order> handler = deadlineHandler;
+            if (handler != null) {
+                handler.accept(shelfType, order);
+            }
+        }, order.getDecayDateMillis());
+
+        HashedTimingWheel.Timeout previous = deadlines.put(orderIdentifier, deadline);
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (deadline.isExpired()) {
+            // it's due already and fired before being put.
+            deadlines.remove(orderIdentifier, deadline);
+        }
+    }
+
+    /**
+     * Cancel the local deadline of the order which has left the shelf.
+     */
+    public void untrack(Long orderIdentifier) {
+        HashedTimingWheel.Timeout deadline = deadlines.remove(orderIdentifier);
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    public void setDeadlineHandler(BiConsumer<ShelfType, Order> deadlineHandler) {
+        this.deadlineHandler = deadlineHandler;
+    }
+
+    /**
+     * The orders of the temperature on the shelf decaying within the duration from now, the first to decay first.
+     */
+    public Collection<Long> getDecayingWithin(ShelfType shelfType, ShelfType temp, long millis) {
+        long now = System.currentTimeMillis();
+        return get(shelfType, temp).valueRange(now, true, now + millis, true);
+    }
+
+    /**
+     * The orders of the temperature on the shelf with the least shelf time left, the ones already decayed are left to expire.
+     */
+    public Collection<Long> getFirstToDecay(ShelfType shelfType, ShelfType temp, int count) {
+        return get(shelfType, temp).valueRange(System.currentTimeMillis(), true, Double.POSITIVE_INFINITY, true, 0, count);
+    }
+}
@@ -0,0 +1,304 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.engineering.challenge.solution.domain.mapper.OrderMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * The replica of the shelves on this node, fed by the shelf change events and reconciled with the shelf store, so the snapshots of
+ * the shelves are served from memory rather than reading all the orders of a shelf from the store.
+ * <p>
+ * A replica is verified when its sequence has caught up with the sequence of the shelf in the store and it holds as many orders as
+ * the shelf, both read every order-app.shelf-near-cache-reconcile-interval-ms, so a replica which has drifted at the same sequence is
+ * not verified any more. A snapshot is served from the replica while it's in sequence and has been verified within
+ * order-app.shelf-near-cache-max-staleness-ms, otherwise it's read from the store and reseeds the replica. The periodic snapshots of
+ * the shelves are read from the store too, see {@link #refresh(ShelfType)}. The normalized values of the orders decay linearly, so
+ * they are extrapolated to the time of the snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShelfNearCache {
+
+    private static Logger logger = LoggerFactory.getLogger(ShelfNearCache.class);
+
+    private static final ShelfType[] SHELVES = {HOT, COLD, FROZEN, OVERFLOW};
+
+    private final ShelfStore shelfStore;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    private final ThreadPoolTaskScheduler scheduler;
+
+    /**
+     * The interval in millis of comparing the sequences of the replicas with the store, 0 to never verify them but on a miss.
+     */
+    @Value("${order-app.shelf-near-cache-reconcile-interval-ms:1000}")
+    private long reconcileInterval;
+
+    /**
+     * How long in millis a replica is served since it has been verified, 0 to always read the snapshots from the store.
+     */
+    @Value("${order-app.shelf-near-cache-max-staleness-ms:5000}")
+    private long maxStaleness;
+
+    private final Map<ShelfType, Replica> replicas = new EnumMap<>(ShelfType.class);
+
+    private ScheduledFuture<?> reconcileTask;
+
+    @PostConstruct
+    public void init() {
+        for (ShelfType shelfType : SHELVES) {
+            Replica replica = new Replica(shelfType);
+            replicas.put(shelfType, replica);
+            kitchenMetrics.gaugeNearCache(shelfType, st -> getStaleness(st, System.currentTimeMillis()), st -> getLag(st));
+        }
+        if (reconcileInterval > 0) {
+            reconcileTask = scheduler.scheduleAtFixedRate(this::reconcile, reconcileInterval);
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (reconcileTask != null) {
+            reconcileTask.cancel(false);
+        }
+    }
+
+    /**
+     * Apply the shelf change event to the replica of its shelf.
+     *
+     * @param timestamp the epoch millis at which the normalized values of the event are calculated, e.g. the record timestamp
+     */
+    public void apply(ShelfEventDTO shelfEvent, long timestamp) {
+        Replica replica = replicas.get(shelfEvent.getType());
+        if (replica != null) replica.apply(shelfEvent, timestamp);
+    }
+
+    /**
+     * Return the snapshot of the shelf with the sequence of the last change it includes, from the replica if it's fresh.
+     */
+    public ShelfEventDTO getSnapshot(ShelfType shelfType) {
+        return getSnapshot(shelfType, System.currentTimeMillis());
+    }
+
+    ShelfEventDTO getSnapshot(ShelfType shelfType, long now) {
+        Replica replica = replicas.get(shelfType);
+        ShelfEventDTO snapshot = replica.getSnapshot(now, maxStaleness);
+        kitchenMetrics.recordNearCacheRead(shelfType, snapshot != null);
+        if (snapshot == null) {
+            snapshot = replica.seed(now);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Read the snapshot of the shelf from the store and reseed the replica with it, e.g. periodically, so the replica never drifts from
+     * the store for long whatever it has missed.
+     */
+    public ShelfEventDTO refresh(ShelfType shelfType) {
+        return replicas.get(shelfType).seed(System.currentTimeMillis());
+    }
+
+    /**
+     * Verify the replicas which have caught up with the sequences of the store and hold as many orders as the shelves.
+     */
+    void reconcile() {
+        final long now = System.currentTimeMillis();
+        for (ShelfType shelfType : SHELVES) {
+            try {
+                // the sequence first, it's increased after the shelf is changed, so the size may be ahead of it but never behind.
+                long storeSequence = shelfStore.getSequence(shelfType);
+                replicas.get(shelfType).verify(storeSequence, shelfStore.size(shelfType), now);
+            } catch (Exception ex) {
+                logger.warn("Failed to reconcile the replica of shelf[{}]", shelfType, ex);
+            }
+        }
+    }
+
+    /**
+     * The millis since the replica of the shelf has been verified, i.e. how stale a snapshot served from it may be.
+     */
+    public long getStaleness(ShelfType shelfType, long now) {
+        return replicas.get(shelfType).getStaleness(now);
+    }
+
+    /**
+     * The number of changes the replica of the shelf was behind the store when it has been reconciled last.
+     */
+    public long getLag(ShelfType shelfType) {
+        return replicas.get(shelfType).getLag();
+    }
+
+    /**
+     * The normalized value decays linearly at (1 + actual decay rate) / shelf life per second, doubled on the overflow shelf.
+     */
+    static double extrapolate(OrderDTO order, ShelfType shelfType, long valuedAt, long now) {
+        double decayRate = shelfType == OVERFLOW ? 2 * order.getDecayRate() : order.getDecayRate();
+        return order.getNormalizedValue() - (now - valuedAt) * (1d + decayRate) / (order.getShelfLife() * 1000);
+    }
+
+    private class Replica {
+
+        private final ShelfType shelfType;
+
+        private final Map<Long, Entry> orders = new LinkedHashMap<>();
+
+        private boolean seeded;
+
+        /**
+         * Whether all the changes up to the sequence have been applied, i.e. no delta is missed since the replica has been seeded.
+         */
+        private boolean inSequence;
+
+        private long sequence;
+
+        private long verifiedAt;
+
+        private long lag;
+
+        Replica(ShelfType shelfType) {
+            this.shelfType = shelfType;
+        }
+
+        synchronized void apply(ShelfEventDTO shelfEvent, long timestamp) {
+            if (shelfEvent.getEvent() == ShelfEventType.SNAPSHOT) {
+                // a snapshot published by any node includes all the changes up to its sequence, it's verified on the next reconcile.
+                if (seeded && shelfEvent.getSequence() < sequence) return;
+                reset(shelfEvent, timestamp);
+                return;
+            }
+            // the deltas before the first snapshot are included in it or found missing by the next delta.
+            if (!seeded) return;
+
+            long deltaSequence = shelfEvent.getSequence();
+            if (deltaSequence <= sequence && inSequence) return;
+            OrderDTO order = shelfEvent.getOrder();
+            if (shelfEvent.getEvent() == ShelfEventType.ADDED) {
+                orders.put(order.getIdentifier(), new Entry(order, timestamp));
+            } else {
+                orders.remove(order.getIdentifier());
+            }
+            inSequence &= deltaSequence == sequence + 1;
+            sequence = Math.max(sequence, deltaSequence);
+        }
+
+        synchronized ShelfEventDTO getSnapshot(long now, long maxStaleness) {
+            if (!seeded || !inSequence || now - verifiedAt > maxStaleness) return null;
+
+            List<OrderDTO> snapshotOrders = new ArrayList<>(orders.size());
+            for (Entry entry : orders.values()) {
+                OrderDTO order = copy(entry.order);
+                if (order.getNormalizedValue() != null && order.getShelfLife() != null && order.getDecayRate() != null) {
+                    order.setNormalizedValue(extrapolate(entry.order, shelfType, entry.valuedAt, now));
+                }
+                snapshotOrders.add(order);
+            }
+            return toSnapshot(sequence, snapshotOrders);
+        }
+
+        /**
+         * Read the snapshot from the store and reset the replica to it, the deltas wait meanwhile, so none is applied in between.
+         */
+        synchronized ShelfEventDTO seed(long now) {
+            // read the sequence before the orders, the sequence is increased after the shelf is changed, so the snapshot includes all
+            // the changes up to the sequence, and maybe some later ones which are idempotent to apply again.
+            long storeSequence = shelfStore.getSequence(shelfType);
+            ShelfEventDTO snapshot = toSnapshot(storeSequence, OrderMapper.toOrderDTOs(shelfStore.getOrders(shelfType)));
+            reset(snapshot, now);
+            verifiedAt = now;
+            lag = 0;
+            return snapshot;
+        }
+
+        /**
+         * A size not matching at the same sequence is either a change made between the two reads, verified on the next reconcile, or a
+         * drift of the replica, which isn't verified any more and is reseeded once stale.
+         */
+        synchronized void verify(long storeSequence, int storeSize, long now) {
+            lag = Math.max(0, storeSequence - sequence);
+            if (!seeded || !inSequence || lag > 0) return;
+
+            if (orders.size() != storeSize) {
+                logger.debug("Replica of shelf[{}] has {} orders at sequence {}, the store has {}.", shelfType, orders.size(), sequence, storeSize);
+                return;
+            }
+            verifiedAt = now;
+        }
+
+        synchronized long getStaleness(long now) {
+            return seeded ? now - verifiedAt : 0;
+        }
+
+        synchronized long getLag() {
+            return lag;
+        }
+
+        private void reset(ShelfEventDTO snapshot, long timestamp) {
+            orders.clear();
+            snapshot.getOrders().forEach(o -> orders.put(o.getIdentifier(), new Entry(o, timestamp)));
+            sequence = snapshot.getSequence();
+            seeded = true;
+            inSequence = true;
+        }
+
+        private ShelfEventDTO toSnapshot(long snapshotSequence, List<OrderDTO> snapshotOrders) {
+            ShelfEventDTO snapshot = new ShelfEventDTO();
+            snapshot.setType(shelfType);
+            snapshot.setEvent(ShelfEventType.SNAPSHOT);
+            snapshot.setSequence(snapshotSequence);
+            snapshot.setOrders(snapshotOrders);
+            return snapshot;
+        }
+    }
+
+    private static OrderDTO copy(OrderDTO order) {
+        OrderDTO copy = new OrderDTO();
+        copy.setIdentifier(order.getIdentifier());
+        copy.setName(order.getName());
+        copy.setDecayRate(order.getDecayRate());
+        copy.setTemp(order.getTemp());
+        copy.setShelfLife(order.getShelfLife());
+        copy.setNormalizedValue(order.getNormalizedValue());
+        return copy;
+    }
+
+    /**
+     * The order with the epoch millis at which its normalized value has been calculated.
+     */
+    private static final class Entry {
+
+        private final OrderDTO order;
+
+        private final long valuedAt;
+
+        Entry(OrderDTO order, long valuedAt) {
+            this.order = order;
+            this.valuedAt = valuedAt;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Single-writer mode, i.e. order-app.placement-mode=single-writer.
+ * <p>
+ * Each shelf has its own partition of the order event topic, so the consumer assigned to the partition owns the shelf and is
+ * the only one to put orders on or remove orders from it. All the changes of a shelf, including placement, delivery, expiry
+ * and rescue, are sent as commands to the partition of the shelf and run one by one on the owner's consumer thread, so no
+ * distributed lock is needed. Ownership hands off when the consumer group rebalances.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShelfOwnerService implements ConsumerRebalanceListener {
+
+    private static Logger logger = LoggerFactory.getLogger(ShelfOwnerService.class);
+
+    static final String COMMAND_HEADER = "order-command";
+
+    /**
+     * The shelves in the order of their partitions.
+     */
+    private static final ShelfType[] SHELVES = {HOT, COLD, FROZEN, OVERFLOW};
+
+    private final KafkaTemplate<Long, Object> kafkaTemplate;
+
+    @Value("${order-app.order-event-topic-name}")
+    private String topicName;
+
+    @Value("${order-app.topic-partitions}")
+    private Integer topicPartitions;
+
+    @Value("${order-app.placement-mode:script}")
+    private String placementMode;
+
+    private final Set<ShelfType> ownedShelves = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        if (isEnabled() && topicPartitions < SHELVES.length) {
+            throw new IllegalStateException("single-writer mode needs at least " + SHELVES.length + " partitions, one per shelf");
+        }
+    }
+
+    public boolean isEnabled() {
+        return "single-writer".equals(placementMode);
+    }
+
+    /**
+     * Send the command about the order to the owner of the shelf.
+     */
+    public void send(OrderCommand command, ShelfType shelfType, Order order) {
+        Header header = new RecordHeader(COMMAND_HEADER, command.name().getBytes(StandardCharsets.UTF_8));
+        kafkaTemplate.send(new ProducerRecord<Long, Object>(
+            topicName, partitionOf(shelfType), order.getIdentifier(), order, Collections.singletonList(header)
+        ));
+    }
+
+    /**
+     * Whether the shelf is owned by this node, i.e. its partition is assigned to the consumer of this node.
+     */
+    public boolean isOwner(ShelfType shelfType) {
+        return ownedShelves.contains(shelfType);
+    }
+
+    public Set<ShelfType> getOwnedShelves() {
+        return Collections.unmodifiableSet(ownedShelves);
+    }
+
+    public static int partitionOf(ShelfType shelfType) {
+        for (int i = 0; i < SHELVES.length; i++) {
+            if (SHELVES[i] == shelfType) return i;
+        }
+        throw new IllegalArgumentException("No partition for shelf " + shelfType);
+    }
+
+    public static ShelfType shelfOf(int partition) {
+        return partition < SHELVES.length ? SHELVES[partition] : null;
+    }
+
+    /**
+     * Get the command of the order event, the order events without command are new orders to place.
+     */
+    public static OrderCommand getCommand(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(COMMAND_HEADER);
+        return header == null ? null : OrderCommand.valueOf(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+            ShelfType shelfType = getShelf(tp);
+            if (shelfType != null && ownedShelves.remove(shelfType)) {
+                logger.info("Hand off the ownership of shelf[{}]", shelfType);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+            ShelfType shelfType = getShelf(tp);
+            if (shelfType != null && ownedShelves.add(shelfType)) {
+                logger.info("Take over the ownership of shelf[{}]", shelfType);
+            }
+        }
+    }
+
+    private ShelfType getShelf(TopicPartition tp) {
+        // the listener is shared by all the containers, e.g. the retry topics.
+        return topicName.equals(tp.topic()) ? shelfOf(tp.partition()) : null;
+    }
+}
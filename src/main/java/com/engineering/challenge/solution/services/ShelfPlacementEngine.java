@@ -0,0 +1,376 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.LuaScript;
+
+import org.redisson.RedissonObject;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.protocol.Encoder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.RequiredArgsConstructor;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Put orders on shelves with one atomic server-side script per order, i.e. capacity check, put on the target or overflow shelf,
+ * order status update and decay index update happen in a single round trip without any distributed lock. Likewise the removal of an
+ * order on delivery or decay, and the removal of a batch of orders is one pipelined batch of scripts, i.e. still a single round trip.
+ * The scripts bump the version of the order status they write, see {@link OrderStatusMachine}.
+ * <p>
+ * Note, the script touches several keys, so it only works against a single Redis server or keys in the same cluster slot.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShelfPlacementEngine {
+
+    private static final String PLACE_ORDER_SCRIPT = "scripts/place-order.lua";
+
+    private static final String MOVE_FROM_OVERFLOW_SCRIPT = "scripts/move-from-overflow.lua";
+
+    private static final String EXPIRE_ORDER_SCRIPT = "scripts/expire-order.lua";
+
+    private static final String REMOVE_ORDER_SCRIPT = "scripts/remove-order.lua";
+
+    /**
+     * The expire date of an entry and the decay date of its order are taken a few millis apart, so a deadline covers the entry put
+     * up to a second after it.
+     */
+    private static final long DEADLINE_SLACK = 1000;
+
+    private static final ShelfType[] TARGET_SHELVES = {HOT, COLD, FROZEN};
+
+    private final RedissonClient redissonClient;
+
+    private final RMapCacheManager rMapCacheManager;
+
+    private LuaScript placeOrderScript;
+
+    private LuaScript moveFromOverflowScript;
+
+    private LuaScript expireOrderScript;
+
+    private LuaScript removeOrderScript;
+
+    @PostConstruct
+    public void init() {
+        placeOrderScript = LuaScript.load(PLACE_ORDER_SCRIPT);
+        moveFromOverflowScript = LuaScript.load(MOVE_FROM_OVERFLOW_SCRIPT);
+        expireOrderScript = LuaScript.load(EXPIRE_ORDER_SCRIPT);
+        removeOrderScript = LuaScript.load(REMOVE_ORDER_SCRIPT);
+    }
+
+    /**
+     * Put the order on its target shelf, or on the overflow shelf if the target shelf is full.
+     *
+     * @param targetCapacity   the capacity of the target shelf
+     * @param overflowCapacity the capacity of the overflow shelf, 0 to never use the overflow shelf
+     * @return the shelf on which the order has been put, null if there's no space and the order status has been removed
+     */
+    public ShelfType place(Order order, int targetCapacity, int overflowCapacity) {
+        final ShelfType targetShelfType = order.getTemp();
+        final Codec codec = redissonClient.getConfig().getCodec();
+
+        // prepare the order for the overflow shelf firstly, and the target shelf lastly which is the common case.
+        final long now = System.currentTimeMillis();
+        order.setOnShelfMillis(now);
+        order.setIsOnOverflowShelf(true);
+        order.onMove(now);
+        final long overflowDecayDate = order.getDecayDateMillis();
+        final byte[] overflowOrder = encode(codec.getMapValueEncoder(), order);
+
+        order.setIsOnOverflowShelf(false);
+        order.onMove(now);
+        final byte[] targetOrder = encode(codec.getMapValueEncoder(), order);
+
+        RMapCache<Long, Order> targetShelf = rMapCacheManager.getCache(targetShelfType.toString());
+        RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        List<Object> keys = Arrays.asList(
+            targetShelf.getName(),
+            RedissonObject.prefixName("redisson__timeout__set", targetShelf.getName()),
+            RedissonObject.prefixName("redisson_map_cache_created", targetShelf.getName()),
+            overflowShelf.getName(),
+            RedissonObject.prefixName("redisson__timeout__set", overflowShelf.getName()),
+            RedissonObject.prefixName("redisson_map_cache_created", overflowShelf.getName()),
+            orderStatus.getName(),
+            ShelfDecayIndex.getName(targetShelfType, targetShelfType),
+            ShelfDecayIndex.getName(OVERFLOW, targetShelfType),
+            OrderStatusMachine.ORDER_STATUS_VERSION
+        );
+        Object[] args = new Object[]{
+            encode(codec.getMapKeyEncoder(), order.getIdentifier()),
+            toBytes(order.getIdentifier()),
+            toBytes(targetCapacity),
+            toBytes(order.getDecayDateMillis()),
+            targetOrder,
+            encode(codec.getMapValueEncoder(), targetShelfType.toString()),
+            toBytes(overflowCapacity),
+            toBytes(overflowDecayDate),
+            overflowOrder,
+            encode(codec.getMapValueEncoder(), OVERFLOW.toString())
+        };
+
+        Long result = placeOrderScript.eval(redissonClient.getScript(ByteArrayCodec.INSTANCE), RScript.ReturnType.INTEGER, keys, args);
+        if (result == 1L) {
+            return targetShelfType;
+        } else if (result == 2L) {
+            // as prepared for the overflow shelf at the same time, i.e. the decay date the script has stored.
+            order.setIsOnOverflowShelf(true);
+            order.onMove(now);
+            return OVERFLOW;
+        }
+        return null;
+    }
+
+    /**
+     * Move the overflow orders back to their target shelves in one atomic script, as many as the target shelves have free slots for.
+     *
+     * @param candidates    the overflow orders in the order of preference
+     * @param shelfCapacity the capacity of the shelves
+     * @return the moved orders, i.e. their value is reset and they are on the target shelves now
+     */
+    public List<Order> moveFromOverflow(List<Order> candidates, Map<ShelfType, Integer> shelfCapacity) {
+        if (candidates.isEmpty()) return Collections.emptyList();
+
+        final Codec codec = redissonClient.getConfig().getCodec();
+
+        RMapCache<Long, Order> overflowShelf = rMapCacheManager.getCache(OVERFLOW.toString());
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        List<Object> keys = new ArrayList<>(Arrays.asList(
+            overflowShelf.getName(),
+            RedissonObject.prefixName("redisson__timeout__set", overflowShelf.getName()),
+            orderStatus.getName()
+        ));
+        List<Object> args = new ArrayList<>(1 + TARGET_SHELVES.length + 6 * candidates.size());
+        args.add(toBytes(TARGET_SHELVES.length));
+        for (ShelfType targetShelfType : TARGET_SHELVES) {
+            RMapCache<Long, Order> targetShelf = rMapCacheManager.getCache(targetShelfType.toString());
+            keys.add(targetShelf.getName());
+            keys.add(RedissonObject.prefixName("redisson__timeout__set", targetShelf.getName()));
+            keys.add(RedissonObject.prefixName("redisson_map_cache_created", targetShelf.getName()));
+            keys.add(ShelfDecayIndex.getName(targetShelfType, targetShelfType));
+            keys.add(ShelfDecayIndex.getName(OVERFLOW, targetShelfType));
+            args.add(toBytes(shelfCapacity.get(targetShelfType)));
+        }
+        keys.add(OrderStatusMachine.ORDER_STATUS_VERSION);
+
+        for (Order order : candidates) {
+            // !Important, take the time on the overflow shelf into account, then reset the order for the target shelf.
+            final long now = System.currentTimeMillis();
+            order.onMove(now);
+            order.setOnShelfMillis(now);
+            order.setIsOnOverflowShelf(false);
+            order.onMove(now);
+
+            args.add(toBytes(Arrays.asList(TARGET_SHELVES).indexOf(order.getTemp()) + 1));
+            args.add(encode(codec.getMapKeyEncoder(), order.getIdentifier()));
+            args.add(toBytes(order.getIdentifier()));
+            args.add(toBytes(order.getDecayDateMillis()));
+            args.add(encode(codec.getMapValueEncoder(), order));
+            args.add(encode(codec.getMapValueEncoder(), order.getTemp().toString()));
+        }
+
+        List<Long> movedIndexes = moveFromOverflowScript.eval(
+            redissonClient.getScript(ByteArrayCodec.INSTANCE), RScript.ReturnType.MULTI, keys, args.toArray()
+        );
+        List<Order> moved = new ArrayList<>(movedIndexes.size());
+        for (Long index : movedIndexes) {
+            moved.add(candidates.get(index.intValue() - 1));
+        }
+        return moved;
+    }
+
+    /**
+     * Remove the order from the shelf with one atomic script, along with its decay index entry and its status if it still names the
+     * shelf, i.e. a single round trip.
+     *
+     * @return the removed order, null if it's not on the shelf
+     */
+    public Order remove(ShelfType shelfType, Long orderIdentifier) {
+        final Codec codec = redissonClient.getConfig().getCodec();
+        byte[] removed = removeOrderScript.eval(
+            redissonClient.getScript(ByteArrayCodec.INSTANCE), RScript.ReturnType.VALUE,
+            removeKeys(shelfType), removeArgs(codec, shelfType, orderIdentifier)
+        );
+        return decode(codec, removed);
+    }
+
+    /**
+     * Remove the orders from the shelf with one atomic script per order in one pipelined batch, see {@link #remove(ShelfType, Long)},
+     * i.e. a single round trip for all the orders.
+     *
+     * @return the removed orders, the ones not on the shelf are left out
+     */
+    public List<Order> removeAll(ShelfType shelfType, Collection<Long> orderIdentifiers) {
+        if (orderIdentifiers.isEmpty()) return Collections.emptyList();
+
+        final Codec codec = redissonClient.getConfig().getCodec();
+        final List<Object> keys = removeKeys(shelfType);
+        List<List<Object>> batchKeys = new ArrayList<>(orderIdentifiers.size());
+        List<Object[]> batchArgs = new ArrayList<>(orderIdentifiers.size());
+        for (Long orderIdentifier : orderIdentifiers) {
+            batchKeys.add(keys);
+            batchArgs.add(removeArgs(codec, shelfType, orderIdentifier));
+        }
+
+        List<byte[]> removed = removeOrderScript.evalBatch(
+            redissonClient, ByteArrayCodec.INSTANCE, RScript.ReturnType.VALUE, batchKeys, batchArgs
+        );
+        return decodeAll(codec, removed);
+    }
+
+    /**
+     * Remove the decayed order from the shelf with one atomic script, along with its decay index entry and its status if it still names
+     * the shelf.
+     *
+     * @param temp     the temperature of the order
+     * @param deadline the decay date the order is expired for, an order put back on the shelf with a later decay date is kept
+     * @return the removed order, null if it has left the shelf meanwhile
+     */
+    public Order removeDecayed(ShelfType shelfType, ShelfType temp, Long orderIdentifier, long deadline) {
+        final Codec codec = redissonClient.getConfig().getCodec();
+        byte[] removed = expireOrderScript.eval(
+            redissonClient.getScript(ByteArrayCodec.INSTANCE), RScript.ReturnType.VALUE,
+            expireKeys(shelfType, temp), expireArgs(codec, shelfType, orderIdentifier, deadline)
+        );
+        return decode(codec, removed);
+    }
+
+    /**
+     * Remove the decayed orders from the shelf with one atomic script per order in one pipelined batch, see {@link #removeDecayed},
+     * i.e. a single round trip for all the orders.
+     *
+     * @param orders the orders with their temperature and the decay date they are expired for
+     * @return the removed orders, the ones which have left the shelf meanwhile are left out
+     */
+    public List<Order> removeAllDecayed(ShelfType shelfType, List<Order> orders) {
+        if (orders.isEmpty()) return Collections.emptyList();
+
+        final Codec codec = redissonClient.getConfig().getCodec();
+        List<List<Object>> batchKeys = new ArrayList<>(orders.size());
+        List<Object[]> batchArgs = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            batchKeys.add(expireKeys(shelfType, order.getTemp()));
+            batchArgs.add(expireArgs(codec, shelfType, order.getIdentifier(), order.getDecayDateMillis()));
+        }
+
+        List<byte[]> removed = expireOrderScript.evalBatch(
+            redissonClient, ByteArrayCodec.INSTANCE, RScript.ReturnType.VALUE, batchKeys, batchArgs
+        );
+        return decodeAll(codec, removed);
+    }
+
+    /**
+     * The shelf, its timeout set, the order status with its versions and the decay indexes an order on the shelf may be in.
+     */
+    private List<Object> removeKeys(ShelfType shelfType) {
+        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        List<Object> keys = new ArrayList<>(Arrays.asList(
+            shelf.getName(),
+            RedissonObject.prefixName("redisson__timeout__set", shelf.getName()),
+            orderStatus.getName(),
+            OrderStatusMachine.ORDER_STATUS_VERSION
+        ));
+        if (shelfType == OVERFLOW) {
+            for (ShelfType temp : TARGET_SHELVES) {
+                keys.add(ShelfDecayIndex.getName(OVERFLOW, temp));
+            }
+        } else {
+            keys.add(ShelfDecayIndex.getName(shelfType, shelfType));
+        }
+        return keys;
+    }
+
+    private static Object[] removeArgs(Codec codec, ShelfType shelfType, Long orderIdentifier) {
+        return new Object[]{
+            encode(codec.getMapKeyEncoder(), orderIdentifier),
+            toBytes(orderIdentifier),
+            encode(codec.getMapValueEncoder(), shelfType.toString())
+        };
+    }
+
+    private List<Object> expireKeys(ShelfType shelfType, ShelfType temp) {
+        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
+        RMapCache<Long, String> orderStatus = rMapCacheManager.getCache("order_status");
+        return Arrays.asList(
+            shelf.getName(),
+            RedissonObject.prefixName("redisson__timeout__set", shelf.getName()),
+            orderStatus.getName(),
+            ShelfDecayIndex.getName(shelfType, temp),
+            OrderStatusMachine.ORDER_STATUS_VERSION
+        );
+    }
+
+    private static Object[] expireArgs(Codec codec, ShelfType shelfType, Long orderIdentifier, long deadline) {
+        return new Object[]{
+            encode(codec.getMapKeyEncoder(), orderIdentifier),
+            toBytes(orderIdentifier),
+            toBytes(deadline + DEADLINE_SLACK),
+            encode(codec.getMapValueEncoder(), shelfType.toString())
+        };
+    }
+
+    private static List<Order> decodeAll(Codec codec, List<byte[]> encodedOrders) {
+        List<Order> orders = new ArrayList<>(encodedOrders.size());
+        for (byte[] encodedOrder : encodedOrders) {
+            if (encodedOrder != null) orders.add(decode(codec, encodedOrder));
+        }
+        return orders;
+    }
+
+    private static Order decode(Codec codec, byte[] encodedOrder) {
+        if (encodedOrder == null) return null;
+
+        ByteBuf buf = Unpooled.wrappedBuffer(encodedOrder);
+        try {
+            return (Order) codec.getMapValueDecoder().decode(buf, null);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            buf.release();
+        }
+    }
+
+    static byte[] toBytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] encode(Encoder encoder, Object value) {
+        ByteBuf buf;
+        try {
+            buf = encoder.encode(value);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+        try {
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+}
@@ -1,28 +1,35 @@
 package com.engineering.challenge.solution.services;
 
 
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfEventType;
 import com.engineering.challenge.solution.domain.ShelfType;
-import com.engineering.challenge.solution.domain.dto.OrderDTO;
-import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
 import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.domain.mapper.OrderMapper;
+import com.engineering.challenge.solution.utils.Coalescer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.modelmapper.ModelMapper;
-import org.redisson.api.RLock;
-import org.redisson.api.RMapCache;
-import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.codec.ServerSentEvent;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.ConnectableFlux;
@@ -31,6 +38,19 @@ import reactor.kafka.receiver.KafkaReceiver;
 import reactor.kafka.sender.KafkaSender;
 import reactor.kafka.sender.SenderRecord;
 
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Publish the shelf changes, i.e. a delta with the added or removed order and the next sequence of the shelf on each change,
+ * and a full snapshot of each shelf periodically or on request.
+ * <p>
+ * The deltas of a shelf are published one by one by its own publisher thread in the order the changes are reported, so the sequence
+ * order is the order of the changes, e.g. an order added and then removed never gets its REMOVED delta sequenced before its ADDED one.
+ * The changes are reported right after they are made, e.g. by the thread which made them.
+ */
 @Service
 @RequiredArgsConstructor
 public class ShelfService {
@@ -39,82 +59,201 @@ public class ShelfService {
 
     private final KafkaReceiver<String, String> kafkaReceiver;
 
-    private final RedissonClient redissonClient;
-
-    private final RMapCacheManager rMapCacheManager;
+    private final ShelfStore shelfStore;
 
     @Value("${order-app.shelf-change-event-topic-name}")
     private String topicName;
 
-    private ConnectableFlux<ServerSentEvent<String>> eventPublisher;
+    private ConnectableFlux<ConsumerRecord<String, String>> eventPublisher;
 
     private final KafkaSender<String, String> kafkaSender;
 
     private final ObjectMapper objectMapper;
 
-    private final ModelMapper modelMapper = new ModelMapper();
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final KitchenMetrics kitchenMetrics;
+
+    private final ShelfNearCache shelfNearCache;
+
+    /**
+     * The interval in millis of publishing the snapshot of each shelf, 0 to only publish on request.
+     */
+    @Value("${order-app.shelf-snapshot-interval-ms:10000}")
+    private long snapshotInterval;
+
+    /**
+     * The window in millis in which the snapshot requests of a shelf are coalesced into one snapshot.
+     */
+    @Value("${order-app.shelf-snapshot-window-ms:200}")
+    private long snapshotWindow;
+
+    private ScheduledFuture<?> snapshotTask;
+
+    private Coalescer<ShelfType> snapshotCoalescer;
+
+    /**
+     * The single publisher thread of each shelf, which sequences and sends its deltas in the order they are reported.
+     */
+    private final Map<ShelfType, ExecutorService> deltaPublishers = new EnumMap<>(ShelfType.class);
+
+    /**
+     * The shelves whose next snapshot is a periodic one, i.e. read from the store rather than the near cache, which it reseeds.
+     */
+    private final Set<ShelfType> periodicSnapshots = ConcurrentHashMap.newKeySet();
+
+    private static final ShelfType[] SHELVES = {HOT, COLD, FROZEN, OVERFLOW};
 
     @PostConstruct
     public void init() {
+        for (ShelfType shelfType : SHELVES) {
+            deltaPublishers.put(shelfType, Executors.newSingleThreadExecutor(new CustomizableThreadFactory(shelfType + "-delta-publisher-")));
+        }
+
         eventPublisher = kafkaReceiver.receive()
-            .map(consumerRecord -> ServerSentEvent.builder(consumerRecord.value()).build())
+            .map(receiverRecord -> (ConsumerRecord<String, String>) receiverRecord)
+            .doOnNext(record -> kitchenMetrics.recordConsumeLag(record.topic(), record.timestamp()))
             .publish();
 
         // subscribes to the KafkaReceiver -> starts consumption (without observers attached)
         eventPublisher.connect();
+
+        // a burst of requests, e.g. all the subscribers found the same gap, reads and sends one snapshot.
+        snapshotCoalescer = new Coalescer<>(scheduler, snapshotWindow, this::publishSnapshot);
+
+        for (ShelfType shelfType : SHELVES) {
+            kitchenMetrics.gaugeShelfSize(shelfType, shelfStore::size);
+            kitchenMetrics.countSnapshotRequests(shelfType, snapshotCoalescer::getRequestCount, snapshotCoalescer::getAbsorbedCount);
+        }
+
+        if (snapshotInterval > 0) {
+            // resync the subscribers which missed some deltas, refresh the normalized values of the orders and the near cache.
+            snapshotTask = scheduler.scheduleAtFixedRate(() -> {
+                for (ShelfType shelfType : SHELVES) {
+                    periodicSnapshots.add(shelfType);
+                    snapshotCoalescer.request(shelfType);
+                }
+            }, snapshotInterval);
+        }
     }
 
-    public ConnectableFlux<ServerSentEvent<String>> getEventPublisher() {
-        return eventPublisher;
+    @PreDestroy
+    public void cleanup() {
+        if (snapshotTask != null) {
+            snapshotTask.cancel(false);
+        }
+        deltaPublishers.values().forEach(ExecutorService::shutdown);
     }
 
     /**
-     * Send a message to reactor kafka when there's order change and the latter one will involve SSE
+     * The shelf change events, keyed by the shelf type.
      */
-    @Async
-    public void onShelfChange(ShelfType shelfType) {
-        ShelfDTO shelfSnapshot = getShelfSnapshot(shelfType);
-        kafkaSender.send(
-            Mono.just(
-                toSenderRecord(shelfSnapshot)
-            ))
-            .next()
-            .log()
-            .map(longSenderResult -> longSenderResult.exception() == null);
+    public ConnectableFlux<ConsumerRecord<String, String>> getEventPublisher() {
+        return eventPublisher;
     }
 
-    public ShelfDTO getShelfSnapshot(ShelfType shelfType) {
-        ShelfDTO shelf = new ShelfDTO();
-        shelf.setType(shelfType);
-        shelf.setOrders(peekOrdersOnShelf(shelfType));
-        return shelf;
+    /**
+     * Send a message to reactor kafka when an order has been put on the shelf and the latter one will involve SSE, without waiting for
+     * it, i.e. it's queued behind the changes of the shelf reported before.
+     */
+    public void onOrderAdded(ShelfType shelfType, Order order) {
+        publishDelta(shelfType, ShelfEventType.ADDED, order, null);
     }
 
     /**
-     * Return the snapshot of the shelf
-     *
-     * @return list of orders on the shelf
+     * Send a message to reactor kafka when an order has been removed from the shelf and the latter one will involve SSE, without
+     * waiting for it, i.e. it's queued behind the changes of the shelf reported before.
      */
-    private List<OrderDTO> peekOrdersOnShelf(ShelfType shelfType) {
-        // lock the target shelf.
-        RLock shelfLock = redissonClient.getReadWriteLock(shelfType.toString() + "_lock").readLock();
-        RMapCache<Long, Order> shelf = rMapCacheManager.getCache(shelfType.toString());
-        shelfLock.lock();
-        try {
-            return shelf.values().stream().map(o -> modelMapper.map(o, OrderDTO.class)).collect(Collectors.toList());
-        } finally {
-            shelfLock.unlock();
+    public void onOrderRemoved(ShelfType shelfType, Order order, RemovalReason reason) {
+        if (reason == RemovalReason.DECAYED) {
+            kitchenMetrics.onDecayed(shelfType);
         }
+        publishDelta(shelfType, ShelfEventType.REMOVED, order, reason);
+    }
+
+    /**
+     * Publish the snapshot of the shelf, e.g. a subscriber missed some deltas, the requests within the window share one snapshot.
+     */
+    public void requestSnapshot(ShelfType shelfType) {
+        snapshotCoalescer.request(shelfType);
+    }
+
+    /**
+     * Get the number of snapshot requests per shelf, including the periodic ones.
+     */
+    public Map<ShelfType, Long> getSnapshotRequestCounts() {
+        Map<ShelfType, Long> counts = new EnumMap<>(ShelfType.class);
+        Arrays.stream(SHELVES).forEach(st -> counts.put(st, snapshotCoalescer.getRequestCount(st)));
+        return counts;
+    }
+
+    /**
+     * Get the number of snapshot requests per shelf absorbed by a pending snapshot, i.e. the snapshot reads and records saved.
+     */
+    public Map<ShelfType, Long> getAbsorbedSnapshotRequestCounts() {
+        Map<ShelfType, Long> counts = new EnumMap<>(ShelfType.class);
+        Arrays.stream(SHELVES).forEach(st -> counts.put(st, snapshotCoalescer.getAbsorbedCount(st)));
+        return counts;
+    }
+
+    /**
+     * Return the snapshot of the shelf with the sequence of the last change it includes, served by the near cache while it's fresh.
+     */
+    public ShelfEventDTO getShelfSnapshot(ShelfType shelfType) {
+        return shelfNearCache.getSnapshot(shelfType);
+    }
+
+    private void publishDelta(ShelfType shelfType, ShelfEventType eventType, Order order, RemovalReason reason) {
+        final long start = System.nanoTime();
+        ShelfEventDTO delta = new ShelfEventDTO();
+        delta.setType(shelfType);
+        delta.setEvent(eventType);
+        // mapped now, the order may change once the caller moves on.
+        delta.setOrder(OrderMapper.toOrderDTO(order));
+        delta.setReason(reason);
+        deltaPublishers.get(shelfType).execute(() -> {
+            try {
+                delta.setSequence(shelfStore.incrementSequence(shelfType));
+                send(delta);
+                kitchenMetrics.recordPublish(eventType, shelfType, start);
+            } catch (Exception ex) {
+                // the subscribers find the gap and request a snapshot.
+                logger.error("Failed to publish the shelf event {}", delta, ex);
+            }
+        });
+    }
+
+    private void publishSnapshot(ShelfType shelfType) {
+        final long start = System.nanoTime();
+        send(periodicSnapshots.remove(shelfType) ? shelfNearCache.refresh(shelfType) : getShelfSnapshot(shelfType));
+        kitchenMetrics.recordPublish(ShelfEventType.SNAPSHOT, shelfType, start);
+    }
+
+    private void send(ShelfEventDTO shelfEvent) {
+        kafkaSender.send(
+            Mono.just(
+                toSenderRecord(shelfEvent)
+            ))
+            .subscribe(
+                senderResult -> {
+                    if (senderResult.exception() != null) {
+                        logger.error("Failed to send the shelf event {}", senderResult.correlationMetadata(), senderResult.exception());
+                    }
+                },
+                ex -> logger.error("Failed to send the shelf event", ex)
+            );
     }
 
-    private SenderRecord<String, String, String> toSenderRecord(ShelfDTO shelf) {
+    private SenderRecord<String, String, String> toSenderRecord(ShelfEventDTO shelfEvent) {
         final String matchJsonStr;
         try {
-            matchJsonStr = objectMapper.writeValueAsString(shelf);
+            matchJsonStr = objectMapper.writeValueAsString(shelfEvent);
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
-        return SenderRecord.create(new ProducerRecord<String, String>(topicName, matchJsonStr), shelf.getType().toString());
+        // key by the shelf, so the events of a shelf stay in order on the same partition.
+        String key = shelfEvent.getType().toString();
+        return SenderRecord.create(new ProducerRecord<>(topicName, key, matchJsonStr), key + "#" + shelfEvent.getSequence());
     }
 
 }
@@ -0,0 +1,137 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The storage engine of the shelves and the order status, selected by order-app.shelf-store, i.e. 'redis' for the shelves shared by
+ * all the nodes, see {@link RedisShelfStore}, or 'memory' for a single node kitchen, see {@link InMemoryShelfStore}.
+ * <p>
+ * Every operation is atomic on its own, so the placement, delivery, expiry and rebalance of the orders need no lock around them. The
+ * lock and single-writer placement modes coordinate the nodes through Redis, so they work with the Redis store only.
+ */
+public interface ShelfStore {
+
+    /**
+     * Whether the shelves are shared by all the nodes, i.e. an order may be put on a shelf by another node.
+     */
+    boolean isShared();
+
+    /**
+     * Put the order on its target shelf, or on the overflow shelf if the target shelf is full, with a deadline at its decay date.
+     *
+     * @param targetCapacity   the capacity of the target shelf
+     * @param overflowCapacity the capacity of the overflow shelf, 0 to never use the overflow shelf
+     * @return the shelf on which the order has been put, null if there's no space and the order status has been removed
+     */
+    ShelfType place(Order order, int targetCapacity, int overflowCapacity);
+
+    /**
+     * Remove the order from the shelf along with its deadline and its status if it still names the shelf, e.g. on delivery.
+     *
+     * @return the removed order with its value reset, null if it's not on the shelf
+     */
+    Order remove(ShelfType shelfType, Long orderIdentifier);
+
+    /**
+     * Remove the orders from the shelf at once, see {@link #remove(ShelfType, Long)}, e.g. a batch of deliveries.
+     *
+     * @return the removed orders with their value reset, the ones not on the shelf are left out
+     */
+    List<Order> removeAll(ShelfType shelfType, Collection<Long> orderIdentifiers);
+
+    /**
+     * Remove the decayed order from the shelf along with its status, unless it has been put back on the shelf with a later decay date.
+     *
+     * @param temp     the temperature of the order
+     * @param deadline the decay date in epoch millis the order is expired for
+     * @return the removed order, null if it has left the shelf meanwhile
+     */
+    Order removeDecayed(ShelfType shelfType, ShelfType temp, Long orderIdentifier, long deadline);
+
+    /**
+     * Remove the decayed orders from the shelf at once, see {@link #removeDecayed(ShelfType, ShelfType, Long, long)}.
+     *
+     * @param orders the orders with their temperature and the decay date in epoch millis they are expired for
+     * @return the removed orders, the ones which have left the shelf meanwhile are left out
+     */
+    List<Order> removeAllDecayed(ShelfType shelfType, List<Order> orders);
+
+    /**
+     * The overflow orders closest to decay for the free slots of their target shelves, see {@link OverflowRebalancer}.
+     *
+     * @return the candidates, the first to decay first per temperature
+     */
+    List<Order> getOverflowCandidates(Map<ShelfType, Integer> shelfCapacity);
+
+    /**
+     * Move the overflow orders back to their target shelves, as many as the target shelves have free slots for.
+     *
+     * @param candidates the overflow orders in the order of preference
+     * @return the moved orders, i.e. their value is reset and they are on the target shelves now
+     */
+    List<Order> moveFromOverflow(List<Order> candidates, Map<ShelfType, Integer> shelfCapacity);
+
+    /**
+     * The orders on the shelf.
+     */
+    List<Order> getOrders(ShelfType shelfType);
+
+    /**
+     * The given orders which are on the shelf, at once, the ones not on the shelf are left out.
+     */
+    Map<Long, Order> getOrders(ShelfType shelfType, Collection<Long> orderIdentifiers);
+
+    /**
+     * The number of orders on the shelf.
+     */
+    int size(ShelfType shelfType);
+
+    /**
+     * The shelf on which the order is, {@link ShelfType#WAITING} before it's put on a shelf, null once it's delivered or wasted.
+     */
+    ShelfType getStatus(Long orderIdentifier);
+
+    /**
+     * The status of the given orders at once, see {@link #getStatus(Long)}, the delivered, wasted and unknown orders are left out.
+     */
+    Map<Long, ShelfType> getStatuses(Collection<Long> orderIdentifiers);
+
+    void putStatus(Long orderIdentifier, ShelfType shelfType);
+
+    /**
+     * Put the status without blocking the subscribing thread, e.g. the event loop serving a new order.
+     */
+    Mono<Void> putStatusAsync(Long orderIdentifier, ShelfType shelfType);
+
+    /**
+     * Put the same status of all the orders at once without blocking the subscribing thread, e.g. {@link ShelfType#WAITING} for a
+     * batch of new orders.
+     */
+    Mono<Void> putStatusesAsync(Collection<Long> orderIdentifiers, ShelfType shelfType);
+
+    /**
+     * The sequence of the last change of the shelf.
+     */
+    long getSequence(ShelfType shelfType);
+
+    /**
+     * Increase the sequence of the shelf on a change.
+     *
+     * @return the sequence of the change
+     */
+    long incrementSequence(ShelfType shelfType);
+
+    /**
+     * Set the handler called back with the order and its shelf at the decay date of each order put on a shelf by this node, the handler
+     * expires the order with {@link #removeDecayed}.
+     */
+    void setDeadlineHandler(BiConsumer<ShelfType, Order> deadlineHandler);
+}
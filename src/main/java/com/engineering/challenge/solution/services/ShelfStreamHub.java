@@ -0,0 +1,187 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.ReplayProcessor;
+import reactor.core.scheduler.Schedulers;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.FROZEN;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+
+/**
+ * Fan out the shelf changes to the SSE subscribers of this node.
+ * <p>
+ * The shelf change events are routed to one channel per shelf by the record key, so a subscriber never sees the events of the other
+ * shelves. Each channel decodes an event once, applies it to the shared view of the shelf, and serializes the shelf once, then the same
+ * serialized shelf is forwarded to all the subscribers as-is. A channel nobody subscribes to only keeps its view, the shelf is
+ * serialized when the next subscriber comes. A new subscriber starts with the latest shelf, and a slow one skips to the latest shelf
+ * rather than buffering the ones in between. A bad record is logged and dropped, it never stops the streams. The decoded events feed the {@link ShelfNearCache} and
+ * invalidate the {@link OrderStatusService} cache of the node as well.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShelfStreamHub {
+
+    private static Logger logger = LoggerFactory.getLogger(ShelfStreamHub.class);
+
+    private static final ShelfType[] SHELVES = {HOT, COLD, FROZEN, OVERFLOW};
+
+    private final ShelfService shelfService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ShelfNearCache shelfNearCache;
+
+    private final OrderStatusService orderStatusService;
+
+    private final Map<ShelfType, ShelfChannel> channels = new EnumMap<>(ShelfType.class);
+
+    private Disposable subscription;
+
+    @PostConstruct
+    public void init() {
+        for (ShelfType shelfType : SHELVES) {
+            ShelfChannel channel = new ShelfChannel(shelfType);
+            channels.put(shelfType, channel);
+            // start with the snapshot on request, the deltas received meanwhile are buffered by the view.
+            Mono.fromCallable(() -> shelfService.getShelfSnapshot(shelfType))
+                .subscribeOn(Schedulers.elastic())
+                .subscribe(channel::apply, ex -> {
+                    logger.warn("Failed to read the snapshot of shelf[{}], wait for the periodic one.", shelfType, ex);
+                });
+        }
+        subscription = shelfService.getEventPublisher().subscribe(this::route, ex -> logger.error("Shelf change events failed", ex));
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Get the stream of the shelf, i.e. the serialized shelf on each change.
+     */
+    public Flux<ServerSentEvent<String>> stream(ShelfType shelfType) {
+        ShelfChannel channel = channels.get(shelfType);
+        if (channel == null) {
+            return Flux.error(new IllegalArgumentException("No stream for shelf " + shelfType));
+        }
+        return channel.subscribe().onBackpressureLatest();
+    }
+
+    /**
+     * Route the event to the channel of its shelf. This consumes the only subscription of the node to the shelf change events, so an
+     * exception must not escape, otherwise all the streams, the near cache and the status cache of the node stop.
+     */
+    void route(ConsumerRecord<String, String> record) {
+        // route by the record key, the events without a shelf key are skipped rather than parsed.
+        ShelfChannel channel = channels.get(toShelfType(record.key()));
+        if (channel == null) return;
+
+        try {
+            ShelfEventDTO shelfEvent = objectMapper.readValue(record.value(), ShelfEventDTO.class);
+            // the normalized values of the event are calculated when it's sent, i.e. at the record timestamp if it has one.
+            shelfNearCache.apply(shelfEvent, record.timestamp() >= 0 ? record.timestamp() : System.currentTimeMillis());
+            orderStatusService.onShelfEvent(shelfEvent);
+            channel.apply(shelfEvent);
+        } catch (Exception ex) {
+            logger.error("Failed to route the shelf[{}] event at offset {}, drop it.", record.key(), record.offset(), ex);
+        }
+    }
+
+    private static ShelfType toShelfType(String key) {
+        if (key == null) return null;
+        for (ShelfType shelfType : SHELVES) {
+            if (shelfType.toString().equalsIgnoreCase(key)) return shelfType;
+        }
+        return null;
+    }
+
+    private class ShelfChannel {
+
+        private final ShelfType shelfType;
+
+        private final ShelfView shelfView;
+
+        private final ReplayProcessor<ServerSentEvent<String>> shelves = ReplayProcessor.cacheLast();
+
+        private final FluxSink<ServerSentEvent<String>> sink = shelves.sink();
+
+        private int subscribers;
+
+        /**
+         * Whether the view has changed since the shelf was serialized last, i.e. while nobody subscribed.
+         */
+        private boolean stale;
+
+        ShelfChannel(ShelfType shelfType) {
+            this.shelfType = shelfType;
+            this.shelfView = new ShelfView(shelfType);
+        }
+
+        Flux<ServerSentEvent<String>> subscribe() {
+            return Flux.defer(() -> {
+                synchronized (this) {
+                    subscribers++;
+                    if (stale) publish();
+                }
+                return shelves;
+            }).doFinally(signal -> {
+                synchronized (this) {
+                    subscribers--;
+                }
+            });
+        }
+
+        synchronized void apply(ShelfEventDTO shelfEvent) {
+            if (!shelfView.apply(shelfEvent)) {
+                logger.info("Shelf[{}] event {} out of sequence {}, request a snapshot.", shelfType, shelfEvent.getSequence(), shelfView.getSequence());
+                shelfService.requestSnapshot(shelfType);
+            }
+            if (!shelfView.isSynced()) return;
+
+            if (subscribers == 0) {
+                stale = true;
+                return;
+            }
+            publish();
+        }
+
+        private void publish() {
+            if (!shelfView.isSynced()) return;
+
+            final String shelfJson;
+            try {
+                shelfJson = objectMapper.writeValueAsString(shelfView.toShelfDTO());
+            } catch (Exception ex) {
+                logger.error("Failed to serialize shelf[{}]", shelfType, ex);
+                return;
+            }
+            sink.next(ServerSentEvent.builder(shelfJson).build());
+            stale = false;
+        }
+    }
+}
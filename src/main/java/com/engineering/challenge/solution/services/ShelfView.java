@@ -0,0 +1,116 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The shelf as seen by the SSE subscribers of a node, i.e. the latest snapshot with the later deltas applied in order of their sequences.
+ * <p>
+ * The deltas received before the first snapshot are buffered and replayed on it. Applying an added or removed order is idempotent,
+ * so the deltas which are already included in a snapshot are harmless. A delta out of sequence means some deltas are missed or
+ * delayed, the view still applies it but reports it's out of sync, so the subscriber asks for a fresh snapshot.
+ */
+public class ShelfView {
+
+    private final ShelfType type;
+
+    private final Map<Long, OrderDTO> orders = new LinkedHashMap<>();
+
+    private final List<ShelfEventDTO> pendingDeltas = new ArrayList<>();
+
+    private boolean synced;
+
+    /**
+     * The sequence of the last snapshot, the deltas up to it are included in the snapshot.
+     */
+    private long snapshotSequence;
+
+    /**
+     * The highest sequence applied.
+     */
+    private long sequence;
+
+    public ShelfView(ShelfType type) {
+        this.type = type;
+    }
+
+    /**
+     * Apply the shelf event to the view.
+     *
+     * @return false if the event is out of sequence and a fresh snapshot is needed
+     */
+    public synchronized boolean apply(ShelfEventDTO shelfEvent) {
+        if (shelfEvent.getEvent() == ShelfEventType.SNAPSHOT) {
+            return applySnapshot(shelfEvent);
+        }
+        if (!synced) {
+            pendingDeltas.add(shelfEvent);
+            return true;
+        }
+        return applyDelta(shelfEvent);
+    }
+
+    /**
+     * Whether the view has got a snapshot to start with.
+     */
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized ShelfDTO toShelfDTO() {
+        ShelfDTO shelf = new ShelfDTO();
+        shelf.setType(type);
+        shelf.setOrders(new ArrayList<>(orders.values()));
+        return shelf;
+    }
+
+    private boolean applySnapshot(ShelfEventDTO snapshot) {
+        // the snapshot misses some deltas already applied, e.g. published before them.
+        if (synced && snapshot.getSequence() < sequence) return true;
+
+        orders.clear();
+        snapshot.getOrders().forEach(o -> orders.put(o.getIdentifier(), o));
+        snapshotSequence = snapshot.getSequence();
+        sequence = snapshotSequence;
+        synced = true;
+
+        // replay the deltas received before the first snapshot, the ones included in the snapshot are skipped.
+        boolean inSequence = true;
+        pendingDeltas.sort(Comparator.comparingLong(ShelfEventDTO::getSequence));
+        for (ShelfEventDTO delta : pendingDeltas) {
+            inSequence &= applyDelta(delta);
+        }
+        pendingDeltas.clear();
+        return inSequence;
+    }
+
+    private boolean applyDelta(ShelfEventDTO delta) {
+        long deltaSequence = delta.getSequence();
+        if (deltaSequence <= snapshotSequence) return true;
+
+        OrderDTO order = delta.getOrder();
+        if (delta.getEvent() == ShelfEventType.ADDED) {
+            orders.put(order.getIdentifier(), order);
+        } else {
+            orders.remove(order.getIdentifier());
+        }
+
+        // a delta behind the applied ones is delayed, and a delta ahead of the next one means some are missed.
+        boolean inSequence = deltaSequence == sequence + 1;
+        sequence = Math.max(sequence, deltaSequence);
+        return inSequence;
+    }
+}
@@ -0,0 +1,84 @@
+package com.engineering.challenge.solution.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Batch the items, i.e. the first item schedules the action after the window, and the items added until the action starts are handed
+ * to it together, at most max batch size per call.
+ * <p>
+ * Like the {@link Coalescer}, the pending flag is cleared right before the action runs, so an item added during the action schedules
+ * another run rather than waiting for the next item.
+ */
+public class Batcher<T> {
+
+    private static Logger logger = LoggerFactory.getLogger(Batcher.class);
+
+    private final TaskScheduler scheduler;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final Consumer<List<T>> action;
+
+    private final Queue<T> items = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    public Batcher(TaskScheduler scheduler, long windowMillis, int maxBatchSize, Consumer<List<T>> action) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("max batch size must be positive");
+        }
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.action = action;
+    }
+
+    /**
+     * Add the item to the next batch.
+     */
+    public void add(T item) {
+        items.add(item);
+        if (pending.compareAndSet(false, true)) {
+            scheduler.schedule(this::run, new Date(System.currentTimeMillis() + windowMillis));
+        }
+    }
+
+    private void run() {
+        pending.set(false);
+        List<T> batch = new ArrayList<>();
+        T item;
+        while ((item = items.poll()) != null) {
+            batch.add(item);
+            if (batch.size() == maxBatchSize) {
+                accept(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            accept(batch);
+        }
+    }
+
+    private void accept(List<T> batch) {
+        try {
+            action.accept(batch);
+        } catch (Exception ex) {
+            logger.error("Failed to run the batched action for {} items", batch.size(), ex);
+        }
+    }
+}
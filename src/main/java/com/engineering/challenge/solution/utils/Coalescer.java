@@ -0,0 +1,88 @@
+package com.engineering.challenge.solution.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Coalesce the requests per key, i.e. the first request of a key schedules the action after the window, and the requests of the key
+ * until the action starts are absorbed by it.
+ * <p>
+ * The pending flag is cleared right before the action runs, so a request during the action schedules another run and never sees a
+ * result older than itself.
+ */
+public class Coalescer<K> {
+
+    private static Logger logger = LoggerFactory.getLogger(Coalescer.class);
+
+    private final TaskScheduler scheduler;
+
+    private final long windowMillis;
+
+    private final Consumer<K> action;
+
+    private final Map<K, State> states = new ConcurrentHashMap<>();
+
+    public Coalescer(TaskScheduler scheduler, long windowMillis, Consumer<K> action) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.action = action;
+    }
+
+    /**
+     * Request the action for the key.
+     *
+     * @return true if the action has been scheduled, false if the request is absorbed by the pending one
+     */
+    public boolean request(K key) {
+        State state = states.computeIfAbsent(key, k -> new State());
+        state.requests.incrementAndGet();
+        if (!state.pending.compareAndSet(false, true)) {
+            state.absorbed.incrementAndGet();
+            return false;
+        }
+        scheduler.schedule(() -> run(key, state), new Date(System.currentTimeMillis() + windowMillis));
+        return true;
+    }
+
+    public long getRequestCount(K key) {
+        State state = states.get(key);
+        return state == null ? 0 : state.requests.get();
+    }
+
+    /**
+     * Get the number of the requests absorbed by a pending one, i.e. the runs saved.
+     */
+    public long getAbsorbedCount(K key) {
+        State state = states.get(key);
+        return state == null ? 0 : state.absorbed.get();
+    }
+
+    private void run(K key, State state) {
+        state.pending.set(false);
+        try {
+            action.accept(key);
+        } catch (Exception ex) {
+            logger.error("Failed to run the coalesced action for {}", key, ex);
+        }
+    }
+
+    private static class State {
+
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        private final AtomicLong requests = new AtomicLong();
+
+        private final AtomicLong absorbed = new AtomicLong();
+    }
+}
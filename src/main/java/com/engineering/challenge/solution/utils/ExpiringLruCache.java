@@ -0,0 +1,120 @@
+package com.engineering.challenge.solution.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache which evicts the least recently used entry when full, and drops the entries older than the time to live.
+ * <p>
+ * A value is loaded in two steps, the key is reserved with {@link #reserve(Object)} before the value is read, and the value is put with
+ * {@link #putIfReserved} only if the key hasn't been invalidated meanwhile, so a value read before an invalidation is never cached.
+ * The reservations are entries of the cache too, so they are bound by its size.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int capacity;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public ExpiringLruCache(int capacity, long ttlMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringLruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the value of the key unless it has expired, and count the hit or miss.
+     *
+     * @return the value, null on a miss
+     */
+    public synchronized V get(K key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.loaded && now >= entry.expiresAt) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null || !entry.loaded) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Reserve the key before its value is read, a later reservation replaces an earlier one.
+     *
+     * @return the token to pass to {@link #putIfReserved}
+     */
+    public synchronized Object reserve(K key) {
+        Entry<V> reservation = new Entry<>();
+        entries.put(key, reservation);
+        return reservation;
+    }
+
+    /**
+     * Put the value read for the key if the reservation still holds, i.e. the key has been neither invalidated nor reserved again.
+     *
+     * @return whether the value has been put
+     */
+    public synchronized boolean putIfReserved(K key, Object token, V value, long now) {
+        Entry<V> reservation = entries.get(key);
+        if (reservation != token) return false;
+        reservation.value = value;
+        reservation.expiresAt = now + ttlMillis;
+        reservation.loaded = true;
+        return true;
+    }
+
+    /**
+     * Drop the value of the key along with a pending reservation.
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The share of the reads served by the cache since it's created, 0 before the first read.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private static final class Entry<V> {
+
+        private V value;
+
+        private long expiresAt;
+
+        private boolean loaded;
+    }
+}
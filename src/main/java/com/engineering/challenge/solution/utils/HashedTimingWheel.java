@@ -0,0 +1,293 @@
+package com.engineering.challenge.solution.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel, i.e. the timers are hashed by their deadline tick into a ring of buckets, and one worker thread advances the
+ * ring a bucket per tick and fires the timers of the bucket which are due in the current round.
+ * <p>
+ * Scheduling and cancelling are O(1) whatever the number of pending timers: a new timer is queued for the worker, and a cancelled one is
+ * only marked and then unlinked by the worker when it next passes the bucket, i.e. within a round. A timer fires at most one tick late,
+ * and the due tasks run on the given executor so a slow task doesn't hold the wheel.
+ */
+public class HashedTimingWheel {
+
+    private static Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    /**
+     * The most new timers bucketed per tick, the rest wait for the next tick so a burst doesn't hold the firing.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Executor executor;
+
+    private final Queue<Timer> newTimers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong pendingTimers = new AtomicLong();
+
+    private final Thread worker;
+
+    private final long startTime;
+
+    private volatile boolean running = true;
+
+    private long tick;
+
+    /**
+     * @param tickDuration the resolution of the timers
+     * @param wheelSize    the number of buckets, rounded up to a power of two, i.e. a round lasts tickDuration * wheelSize
+     * @param executor     runs the due tasks
+     */
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Executor executor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tick duration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("wheel size must be in (0, 2^30]");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Run the task after the delay.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("timing wheel stopped");
+        }
+        Timer timer = new Timer(task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime);
+        pendingTimers.incrementAndGet();
+        newTimers.add(timer);
+        return timer;
+    }
+
+    /**
+     * Run the task at the epoch millis.
+     */
+    public Timeout scheduleAt(Runnable task, long epochMillis) {
+        return schedule(task, epochMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The number of timers neither fired nor cancelled yet.
+     */
+    public long getPendingTimers() {
+        return pendingTimers.get();
+    }
+
+    public int getWheelSize() {
+        return wheel.length;
+    }
+
+    /**
+     * Stop the worker, the pending timers never fire.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            waitForNextTick();
+            if (!running) break;
+
+            transferNewTimers();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Sleep until the end of the current tick.
+     */
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        for (; ; ) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0 || !running) return;
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferNewTimers() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timer timer = newTimers.poll();
+            if (timer == null) return;
+            if (timer.state.get() == Timer.CANCELLED) continue;
+
+            long deadlineTick = timer.deadline / tickNanos;
+            timer.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // the timers already due go to the current bucket.
+            wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timer);
+        }
+    }
+
+    public interface Timeout {
+
+        /**
+         * Cancel the timer.
+         *
+         * @return false if the timer has already fired or been cancelled
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private final class Timer implements Timeout {
+
+        private static final int INIT = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+
+        /**
+         * Relative to the start time of the wheel.
+         */
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // owned by the worker.
+        private long remainingRounds;
+
+        private Bucket bucket;
+
+        private Timer next;
+
+        private Timer prev;
+
+        Timer(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) return false;
+            pendingTimers.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) return;
+            pendingTimers.decrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (Exception ex) {
+                logger.warn("Failed to run the timer task", ex);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timers, only touched by the worker.
+     */
+    private final class Bucket {
+
+        private Timer head;
+
+        private Timer tail;
+
+        void add(Timer timer) {
+            timer.bucket = this;
+            if (head == null) {
+                head = tail = timer;
+            } else {
+                tail.next = timer;
+                timer.prev = tail;
+                tail = timer;
+            }
+        }
+
+        void expire() {
+            Timer timer = head;
+            while (timer != null) {
+                Timer next = timer.next;
+                if (timer.isCancelled()) {
+                    remove(timer);
+                } else if (timer.remainingRounds <= 0) {
+                    // the timer is in the bucket of its deadline tick, i.e. deadline <= the end of the tick.
+                    remove(timer);
+                    timer.expire();
+                } else {
+                    timer.remainingRounds--;
+                }
+                timer = next;
+            }
+        }
+
+        void remove(Timer timer) {
+            if (timer.bucket != this) return;
+            Timer next = timer.next;
+            if (timer.prev != null) {
+                timer.prev.next = next;
+            }
+            if (timer.next != null) {
+                timer.next.prev = timer.prev;
+            }
+            if (timer == head) {
+                if (timer == tail) {
+                    head = tail = null;
+                } else {
+                    head = next;
+                }
+            } else if (timer == tail) {
+                tail = timer.prev;
+            }
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+        }
+    }
+}
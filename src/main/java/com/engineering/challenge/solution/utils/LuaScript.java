@@ -0,0 +1,131 @@
+package com.engineering.challenge.solution.utils;
+
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A server-side Lua script loaded from the classpath, evaluated by its SHA and loaded again if the script cache has been flushed.
+ */
+public class LuaScript {
+
+    private final String script;
+
+    private volatile String scriptSha;
+
+    private LuaScript(String script) {
+        this.script = script;
+    }
+
+    public static LuaScript load(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new LuaScript(StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to load " + path, ex);
+        }
+    }
+
+    public <R> R eval(RScript rScript, RScript.ReturnType returnType, List<Object> keys, Object... args) {
+        if (scriptSha == null) {
+            scriptSha = rScript.scriptLoad(script);
+        }
+        try {
+            return rScript.evalSha(RScript.Mode.READ_WRITE, scriptSha, returnType, keys, args);
+        } catch (RedisException ex) {
+            if (!isNoScript(ex)) {
+                throw ex;
+            }
+            // the script cache has been flushed, e.g. Redis restarted.
+            scriptSha = rScript.scriptLoad(script);
+            return rScript.evalSha(RScript.Mode.READ_WRITE, scriptSha, returnType, keys, args);
+        }
+    }
+
+    /**
+     * Evaluate the script once per keys and args in one pipelined batch, i.e. a single round trip for all the evaluations, each one
+     * atomic on its own. If the script cache has been flushed, only the evaluations which failed on it are done again.
+     *
+     * @return the result of each evaluation, in the order of the keys
+     */
+    public <R> List<R> evalBatch(RedissonClient redissonClient, Codec codec, RScript.ReturnType returnType, List<List<Object>> keys,
+                                 List<Object[]> args) {
+        if (scriptSha == null) {
+            scriptSha = redissonClient.getScript(codec).scriptLoad(script);
+        }
+        List<R> results = new ArrayList<>(keys.size());
+        List<Integer> pending = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(null);
+            pending.add(i);
+        }
+
+        List<Integer> notLoaded = executeBatch(redissonClient, codec, returnType, keys, args, pending, results);
+        if (!notLoaded.isEmpty()) {
+            scriptSha = redissonClient.getScript(codec).scriptLoad(script);
+            notLoaded = executeBatch(redissonClient, codec, returnType, keys, args, notLoaded, results);
+            if (!notLoaded.isEmpty()) {
+                throw new RedisException("NOSCRIPT the script is not loaded after loading it again");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Evaluate the pending evaluations in one batch and set their results.
+     *
+     * @return the evaluations which failed because the script is not loaded
+     */
+    private <R> List<Integer> executeBatch(RedissonClient redissonClient, Codec codec, RScript.ReturnType returnType,
+                                           List<List<Object>> keys, List<Object[]> args, List<Integer> pending, List<R> results) {
+        RBatch batch = redissonClient.createBatch();
+        RScriptAsync rScript = batch.getScript(codec);
+        List<RFuture<R>> futures = new ArrayList<>(pending.size());
+        for (Integer i : pending) {
+            futures.add(rScript.evalShaAsync(RScript.Mode.READ_WRITE, scriptSha, returnType, keys.get(i), args.get(i)));
+        }
+        try {
+            batch.execute();
+        } catch (RedisException ex) {
+            // the failed evaluations are told apart by their own future below.
+            if (futures.stream().noneMatch(future -> future.isDone() && !future.isSuccess())) {
+                throw ex;
+            }
+        }
+
+        List<Integer> notLoaded = new ArrayList<>();
+        for (int j = 0; j < pending.size(); j++) {
+            RFuture<R> future = futures.get(j);
+            if (future.isSuccess()) {
+                results.set(pending.get(j), future.getNow());
+            } else if (isNoScript(future.cause())) {
+                notLoaded.add(pending.get(j));
+            } else if (future.cause() instanceof RedisException) {
+                throw (RedisException) future.cause();
+            } else {
+                throw new RedisException("Failed to evaluate the script", future.cause());
+            }
+        }
+        return notLoaded;
+    }
+
+    private static boolean isNoScript(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
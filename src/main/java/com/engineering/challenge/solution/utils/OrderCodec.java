@@ -0,0 +1,206 @@
+package com.engineering.challenge.solution.utils;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.SerializationCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Compact binary Redisson codec, i.e. orders, order identifiers and order status are written field by field instead of being
+ * serialized with class descriptors, and anything else falls back to the Java serialization by default, which unlike the FST codec
+ * needs no reflective access to the JDK internals, i.e. works on JDK 9+ too.
+ * <p>
+ * Each entry starts with a type byte, and an order continues with a schema version byte, a bit set of its non-null fields and then the
+ * fields as primitives, e.g. the dates as epoch millis and the temperature as the enum ordinal. The orders of the schema version 1,
+ * whose dates are the epoch millis of the local date-time as if it's in UTC, are still read.
+ * <p>
+ * Note, the entries written by another codec can't be read, flush the shelves when switching the codec.
+ */
+public class OrderCodec extends BaseCodec {
+
+    static final byte TYPE_FALLBACK = 0;
+
+    static final byte TYPE_ORDER = 1;
+
+    static final byte TYPE_STRING = 2;
+
+    static final byte TYPE_LONG = 3;
+
+    static final byte ORDER_SCHEMA_VERSION = 2;
+
+    private static final byte ORDER_SCHEMA_VERSION_LOCAL_DATES = 1;
+
+    private static final int IDENTIFIER = 1;
+
+    private static final int NAME = 1 << 1;
+
+    private static final int DECAY_RATE = 1 << 2;
+
+    private static final int TEMP = 1 << 3;
+
+    private static final int SHELF_LIFE = 1 << 4;
+
+    private static final int VALUE = 1 << 5;
+
+    private static final int ON_SHELF_DATE = 1 << 6;
+
+    private static final int DECAY_DATE = 1 << 7;
+
+    private static final ShelfType[] SHELF_TYPES = ShelfType.values();
+
+    private final Codec fallbackCodec;
+
+    private final Encoder encoder = this::encode;
+
+    private final Decoder<Object> decoder = (buf, state) -> decode(buf, state);
+
+    public OrderCodec() {
+        this(new SerializationCodec());
+    }
+
+    public OrderCodec(Codec fallbackCodec) {
+        this.fallbackCodec = fallbackCodec;
+    }
+
+    /**
+     * Used by Redisson to copy the codec for another class loader.
+     */
+    public OrderCodec(ClassLoader classLoader, OrderCodec codec) throws ReflectiveOperationException {
+        this(copy(classLoader, codec.fallbackCodec));
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return fallbackCodec.getClassLoader();
+    }
+
+    private ByteBuf encode(Object in) throws IOException {
+        if (in instanceof Order) {
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(96);
+            out.writeByte(TYPE_ORDER);
+            writeOrder((Order) in, out);
+            return out;
+        } else if (in instanceof String) {
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(1 + ((String) in).length());
+            out.writeByte(TYPE_STRING);
+            out.writeCharSequence((String) in, StandardCharsets.UTF_8);
+            return out;
+        } else if (in instanceof Long) {
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(9);
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) in);
+            return out;
+        }
+
+        ByteBuf encoded = fallbackCodec.getValueEncoder().encode(in);
+        try {
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(1 + encoded.readableBytes());
+            out.writeByte(TYPE_FALLBACK);
+            out.writeBytes(encoded);
+            return out;
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private Object decode(ByteBuf buf, State state) throws IOException {
+        byte type = buf.readByte();
+        switch (type) {
+            case TYPE_ORDER:
+                return readOrder(buf);
+            case TYPE_STRING:
+                return buf.readCharSequence(buf.readableBytes(), StandardCharsets.UTF_8).toString();
+            case TYPE_LONG:
+                return buf.readLong();
+            case TYPE_FALLBACK:
+                return fallbackCodec.getValueDecoder().decode(buf, state);
+            default:
+                throw new IOException("Unknown entry type " + type);
+        }
+    }
+
+    private static void writeOrder(Order order, ByteBuf out) {
+        out.writeByte(ORDER_SCHEMA_VERSION);
+
+        int fields = 0;
+        fields |= order.getIdentifier() != null ? IDENTIFIER : 0;
+        fields |= order.getName() != null ? NAME : 0;
+        fields |= DECAY_RATE;
+        fields |= order.getTemp() != null ? TEMP : 0;
+        fields |= SHELF_LIFE;
+        fields |= order.hasValue() ? VALUE : 0;
+        fields |= order.getOnShelfMillis() != Order.NO_DATE ? ON_SHELF_DATE : 0;
+        fields |= order.getDecayDateMillis() != Order.NO_DATE ? DECAY_DATE : 0;
+        out.writeByte(fields);
+
+        if ((fields & IDENTIFIER) != 0) out.writeLong(order.getIdentifier());
+        if ((fields & NAME) != 0) {
+            // length prefixed utf-8.
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            out.setInt(lengthIndex, out.writeCharSequence(order.getName(), StandardCharsets.UTF_8));
+        }
+        if ((fields & DECAY_RATE) != 0) out.writeDouble(order.getDecayRate());
+        if ((fields & TEMP) != 0) out.writeByte(order.getTemp().ordinal());
+        if ((fields & SHELF_LIFE) != 0) out.writeDouble(order.getShelfLife());
+        if ((fields & VALUE) != 0) out.writeDouble(order.getValue());
+        if ((fields & ON_SHELF_DATE) != 0) out.writeLong(order.getOnShelfMillis());
+        if ((fields & DECAY_DATE) != 0) out.writeLong(order.getDecayDateMillis());
+        out.writeBoolean(Boolean.TRUE.equals(order.getIsOnOverflowShelf()));
+    }
+
+    private static Order readOrder(ByteBuf in) throws IOException {
+        byte version = in.readByte();
+        if (version != ORDER_SCHEMA_VERSION && version != ORDER_SCHEMA_VERSION_LOCAL_DATES) {
+            throw new IOException("Unsupported order schema version " + version);
+        }
+
+        int fields = in.readUnsignedByte();
+        Order order = new Order();
+        if ((fields & IDENTIFIER) != 0) order.setIdentifier(in.readLong());
+        if ((fields & NAME) != 0) order.setName(in.readCharSequence(in.readInt(), StandardCharsets.UTF_8).toString());
+        if ((fields & DECAY_RATE) != 0) order.setDecayRate(in.readDouble());
+        if ((fields & TEMP) != 0) order.setTemp(SHELF_TYPES[in.readUnsignedByte()]);
+        if ((fields & SHELF_LIFE) != 0) order.setShelfLife(in.readDouble());
+        if ((fields & VALUE) != 0) order.setValue(in.readDouble());
+        if (version == ORDER_SCHEMA_VERSION) {
+            if ((fields & ON_SHELF_DATE) != 0) order.setOnShelfMillis(in.readLong());
+            if ((fields & DECAY_DATE) != 0) order.setDecayDateMillis(in.readLong());
+        } else {
+            if ((fields & ON_SHELF_DATE) != 0) order.setOnShelfDate(fromLocalEpochMillis(in.readLong()));
+            if ((fields & DECAY_DATE) != 0) order.setDecayDate(fromLocalEpochMillis(in.readLong()));
+        }
+        order.setIsOnOverflowShelf(in.readBoolean());
+        return order;
+    }
+
+    /**
+     * The local date-time written by the schema version 1 as if it's in UTC.
+     */
+    private static LocalDateTime fromLocalEpochMillis(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L), (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,72 @@
+package com.engineering.challenge.solution.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, time-ordered 64 bit id generator with a node component, i.e. the layout is
+ * 1 bit sign (always 0) | 41 bits millis since {@link #EPOCH} | 10 bits node id | 12 bits sequence.
+ * <p>
+ * When the sequence of a millisecond is exhausted or the clock moves backwards, the generator borrows the next millisecond
+ * instead of blocking, so ids are always unique and increasing on a node.
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 2020-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1577836800000L;
+
+    private static final int NODE_ID_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    /**
+     * The last handed out (timestamp << SEQUENCE_BITS | sequence).
+     */
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public long nextId() {
+        while (true) {
+            final long last = lastState.get();
+            final long timestamp = System.currentTimeMillis() - EPOCH;
+            // a new millisecond resets the sequence, otherwise increase it and let the overflow carry into the timestamp.
+            final long next = timestamp > (last >>> SEQUENCE_BITS) ? timestamp << SEQUENCE_BITS : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_ID_BITS + SEQUENCE_BITS)
+                    | nodeId << SEQUENCE_BITS
+                    | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Get the node id of the given id.
+     */
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    /**
+     * Get the creation time in epoch millis of the given id.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_ID_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+}
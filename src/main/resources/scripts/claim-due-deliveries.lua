@@ -0,0 +1,16 @@
+-- Atomically claim a batch of the deliveries due soon, so each delivery is claimed by one node at a time.
+--
+-- A claimed delivery stays in the schedule with its due date pushed back by the lease, and it's removed once delivered, so the
+-- deliveries claimed by a node which stops before delivering them are due again after the lease, i.e. at-least-once.
+--
+-- KEYS[1]: delivery_schedule, the order identifiers scored by the due date in millis.
+-- ARGV[1]: claim the deliveries due until, in millis, ARGV[2]: the batch size, ARGV[3]: the lease in millis.
+--
+-- Returns the claimed order identifiers and their due dates, i.e. id1, dueDate1, id2, dueDate2...
+
+local claimed = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'withscores', 'limit', 0, ARGV[2]);
+local leaseExpireDate = tonumber(ARGV[1]) + tonumber(ARGV[3]);
+for i = 1, #claimed, 2 do
+    redis.call('zadd', KEYS[1], leaseExpireDate, claimed[i]);
+end
+return claimed;
@@ -0,0 +1,37 @@
+-- Atomically remove a decayed order from its shelf, i.e. only if it's still on the shelf with an expire date not after the deadline,
+-- so a stale deadline never removes an order which has been put back on the shelf with a later decay date.
+--
+-- The shelves are written with the same layout as Redisson's RMapCache, see place-order.lua.
+--
+-- KEYS[1], KEYS[2]: the shelf and its timeout set, KEYS[3]: order_status, KEYS[4]: the decay index of the order on the shelf,
+-- KEYS[5]: order_status_version, removed along with the status.
+--
+-- ARGV[1]: the encoded order identifier as map key, ARGV[2]: the order identifier as decay index member, ARGV[3]: the deadline in millis,
+-- ARGV[4]: the encoded shelf status, the order status is only removed if it still names the shelf.
+--
+-- Returns the encoded order if it's removed, nil otherwise.
+
+local expireDate = redis.call('zscore', KEYS[2], ARGV[1]);
+if expireDate == false or tonumber(expireDate) > tonumber(ARGV[3]) then
+    return nil;
+end;
+
+local value = redis.call('hget', KEYS[1], ARGV[1]);
+redis.call('hdel', KEYS[1], ARGV[1]);
+redis.call('zrem', KEYS[2], ARGV[1]);
+redis.call('zrem', KEYS[4], ARGV[2]);
+
+local status = redis.call('hget', KEYS[3], ARGV[1]);
+if status ~= false then
+    local t, shelfStatus = struct.unpack('dLc0', status);
+    if shelfStatus == ARGV[4] then
+        redis.call('hdel', KEYS[3], ARGV[1]);
+        redis.call('hdel', KEYS[5], ARGV[1]);
+    end;
+end;
+
+if value == false then
+    return nil;
+end;
+local t, order = struct.unpack('dLc0', value);
+return order;
@@ -0,0 +1,51 @@
+-- Atomically move a batch of orders from the overflow shelf back to their target shelves, as many as the target shelves have free
+-- slots for, in the given order of the candidates.
+--
+-- The shelves are written with the same layout as Redisson's RMapCache, see place-order.lua.
+--
+-- KEYS[1], KEYS[2]: overflow shelf and its timeout set, KEYS[3]: order_status.
+-- KEYS[4..]: 5 keys per target shelf, i.e. the shelf, its timeout set, its created channel, its decay index and the decay index of
+-- its temperature on the overflow shelf, then the last key: order_status_version, bumped along with the status, see
+-- transition-order-status.lua.
+--
+-- ARGV[1]: the number of target shelves, ARGV[2..]: their capacities.
+-- then 6 args per candidate: the target shelf index from 1, the encoded order identifier as map key, the order identifier as decay
+-- index member, the target expire date in millis, i.e. the decay date, the encoded order and the encoded shelf status.
+--
+-- Returns the indexes from 1 of the moved candidates, the ones which left the overflow shelf meanwhile or whose target shelf is full
+-- are skipped.
+
+local versions = KEYS[#KEYS];
+local targets = tonumber(ARGV[1]);
+local freeSlots = {};
+for t = 1, targets do
+    freeSlots[t] = tonumber(ARGV[1 + t]) - redis.call('hlen', KEYS[5 * t - 1]);
+end;
+
+local moved = {};
+local candidate = 0;
+for i = 2 + targets, #ARGV, 6 do
+    candidate = candidate + 1;
+    local t = tonumber(ARGV[i]);
+    local key = ARGV[i + 1];
+    local member = ARGV[i + 2];
+    local expireDate = ARGV[i + 3];
+    if freeSlots[t] > 0 and redis.call('hexists', KEYS[1], key) == 1 then
+        redis.call('hdel', KEYS[1], key);
+        redis.call('zrem', KEYS[2], key);
+        redis.call('zrem', KEYS[5 * t + 3], member);
+
+        local order = ARGV[i + 4];
+        local status = ARGV[i + 5];
+        redis.call('hset', KEYS[5 * t - 1], key, struct.pack('dLc0', 0, string.len(order), order));
+        redis.call('zadd', KEYS[5 * t], expireDate, key);
+        redis.call('publish', KEYS[5 * t + 1], struct.pack('Lc0Lc0', string.len(key), key, string.len(order), order));
+        redis.call('zadd', KEYS[5 * t + 2], expireDate, member);
+        redis.call('hset', KEYS[3], key, struct.pack('dLc0', 0, string.len(status), status));
+        redis.call('hincrby', versions, key, 1);
+
+        freeSlots[t] = freeSlots[t] - 1;
+        table.insert(moved, candidate);
+    end;
+end;
+return moved;
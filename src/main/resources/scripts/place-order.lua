@@ -0,0 +1,42 @@
+-- Atomically put an order on its target shelf, or on the overflow shelf if the target shelf is full, and index it by its decay date.
+--
+-- The shelves are written with the same layout as Redisson's RMapCache, i.e. the hash entry is packed as
+-- 'dLc0' (max idle, length, value) and the expire date is tracked in the timeout sorted set, so the
+-- EvictionScheduler and the EntryExpiredListener keep working for orders placed by this script.
+--
+-- KEYS[1], KEYS[2], KEYS[3]: target shelf, its timeout set and its created channel.
+-- KEYS[4], KEYS[5], KEYS[6]: overflow shelf, its timeout set and its created channel.
+-- KEYS[7]: order_status, KEYS[8], KEYS[9]: the decay index of the target shelf and of the order temperature on the overflow shelf.
+-- KEYS[10]: order_status_version, bumped along with the status, see transition-order-status.lua.
+--
+-- ARGV[1]: the encoded order identifier as map key, ARGV[2]: the order identifier as decay index member.
+-- ARGV[3..6]: target capacity, target expire date in millis, encoded order, encoded shelf status.
+-- ARGV[7..10]: overflow capacity, overflow expire date in millis, encoded order, encoded shelf status.
+--
+-- The expire date is the decay date, i.e. the decay index score.
+--
+-- Returns 1 if the order is put on the target shelf, 2 if it is put on the overflow shelf, 0 if there's no space.
+
+local function putOnShelf(shelf, timeoutSet, createdChannel, decayIndex, expireDate, order, status)
+    redis.call('hset', shelf, ARGV[1], struct.pack('dLc0', 0, string.len(order), order));
+    redis.call('zadd', timeoutSet, expireDate, ARGV[1]);
+    redis.call('zadd', decayIndex, expireDate, ARGV[2]);
+    redis.call('publish', createdChannel, struct.pack('Lc0Lc0', string.len(ARGV[1]), ARGV[1], string.len(order), order));
+    redis.call('hset', KEYS[7], ARGV[1], struct.pack('dLc0', 0, string.len(status), status));
+    redis.call('hincrby', KEYS[10], ARGV[1], 1);
+end;
+
+if redis.call('hlen', KEYS[1]) < tonumber(ARGV[3]) then
+    putOnShelf(KEYS[1], KEYS[2], KEYS[3], KEYS[8], ARGV[4], ARGV[5], ARGV[6]);
+    return 1;
+end;
+
+if redis.call('hlen', KEYS[4]) < tonumber(ARGV[7]) then
+    putOnShelf(KEYS[4], KEYS[5], KEYS[6], KEYS[9], ARGV[8], ARGV[9], ARGV[10]);
+    return 2;
+end;
+
+-- both the target shelf and the overflow shelf are full, the order will be wasted.
+redis.call('hdel', KEYS[7], ARGV[1]);
+redis.call('hdel', KEYS[10], ARGV[1]);
+return 0;
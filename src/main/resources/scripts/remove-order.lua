@@ -0,0 +1,36 @@
+-- Atomically remove an order from its shelf along with its decay index entry and its status if it still names the shelf, e.g. on
+-- delivery, so the shelf, the index and the status never disagree and the removal costs a single round trip.
+--
+-- The shelves are written with the same layout as Redisson's RMapCache, see place-order.lua.
+--
+-- KEYS[1], KEYS[2]: the shelf and its timeout set, KEYS[3]: order_status, KEYS[4]: order_status_version, removed along with the
+-- status, KEYS[5..n]: the decay indexes the order may be in, i.e. the one of a target shelf, or the one per temperature of the overflow
+-- shelf.
+--
+-- ARGV[1]: the encoded order identifier as map key, ARGV[2]: the order identifier as decay index member, ARGV[3]: the encoded shelf
+-- status, the order status is only removed if it still names the shelf.
+--
+-- Returns the encoded order if it's removed, nil if it's not on the shelf.
+
+local value = redis.call('hget', KEYS[1], ARGV[1]);
+if value == false then
+    return nil;
+end;
+
+redis.call('hdel', KEYS[1], ARGV[1]);
+redis.call('zrem', KEYS[2], ARGV[1]);
+for i = 5, #KEYS do
+    redis.call('zrem', KEYS[i], ARGV[2]);
+end;
+
+local status = redis.call('hget', KEYS[3], ARGV[1]);
+if status ~= false then
+    local t, shelfStatus = struct.unpack('dLc0', status);
+    if shelfStatus == ARGV[3] then
+        redis.call('hdel', KEYS[3], ARGV[1]);
+        redis.call('hdel', KEYS[4], ARGV[1]);
+    end;
+end;
+
+local t, order = struct.unpack('dLc0', value);
+return order;
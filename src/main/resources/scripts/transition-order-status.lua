@@ -0,0 +1,31 @@
+-- Atomically compare and set the status of an order, i.e. only if it's still the expected status at the expected version, so the
+-- concurrent transitions of an order are ordered without any lock, the one which read a stale status fails and reads again.
+--
+-- The status is written with the same layout as Redisson's RMapCache, see place-order.lua. The version counts the writes of the
+-- status since it left WAITING, an order without a version is at version 0.
+--
+-- KEYS[1]: order_status, KEYS[2]: order_status_version.
+--
+-- ARGV[1]: the encoded order identifier as map key, ARGV[2]: the expected encoded status, empty if the order has no status,
+-- ARGV[3]: the expected version, ARGV[4]: the new encoded status, empty to remove the status along with its version.
+--
+-- Returns the new version, 0 if the status is removed, -1 if the status or the version is not the expected one.
+
+local current = '';
+local status = redis.call('hget', KEYS[1], ARGV[1]);
+if status ~= false then
+    local t, shelfStatus = struct.unpack('dLc0', status);
+    current = shelfStatus;
+end;
+local version = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0');
+if current ~= ARGV[2] or version ~= tonumber(ARGV[3]) then
+    return -1;
+end;
+
+if ARGV[4] == '' then
+    redis.call('hdel', KEYS[1], ARGV[1]);
+    redis.call('hdel', KEYS[2], ARGV[1]);
+    return 0;
+end;
+redis.call('hset', KEYS[1], ARGV[1], struct.pack('dLc0', 0, string.len(ARGV[4]), ARGV[4]));
+return redis.call('hincrby', KEYS[2], ARGV[1], 1);
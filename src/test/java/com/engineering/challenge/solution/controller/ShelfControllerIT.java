@@ -0,0 +1,81 @@
+package com.engineering.challenge.solution.controller;
+
+import com.engineering.challenge.solution.RedisKafkaSolutionApplication;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = RedisKafkaSolutionApplication.class,
+    properties = {"management.port=0"}
+)
+@DirtiesContext
+@TestPropertySource(locations = "/application-test.properties")
+public class ShelfControllerIT {
+
+    Logger logger = LoggerFactory.getLogger(ShelfControllerIT.class);
+
+    private static final int SUBSCRIBERS = 2000;
+
+    @LocalServerPort
+    private Integer serverPort;
+
+    @Test
+    public void testThousandsOfSubscribersSeeTheNewOrder() {
+        WebClient webClient = WebClient.create(String.format("http://localhost:%d", serverPort));
+
+        // every subscriber waits for the shelf with the new order.
+        OrderDTO newOrder = new OrderDTO();
+        newOrder.setName("Banana Split");
+        newOrder.setTemp(ShelfType.FROZEN);
+        newOrder.setShelfLife(200d);
+        newOrder.setDecayRate(0.63d);
+        Mono<List<Long>> placedOrder = Mono.delay(Duration.ofSeconds(5))
+            .then(webClient.post().uri("/orders").contentType(MediaType.APPLICATION_JSON).syncBody(newOrder)
+                .retrieve().bodyToMono(OrderDTO.class))
+            .map(order -> Collections.singletonList(order.getIdentifier()))
+            .cache();
+
+        List<ShelfDTO> shelves = Flux.range(0, SUBSCRIBERS)
+            .flatMap(i -> webClient.get().uri("/shelves/frozen/stream").accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<ShelfDTO>>() {
+                })
+                .map(ServerSentEvent::data)
+                .filterWhen(shelf -> placedOrder.map(identifiers ->
+                    shelf.getOrders().stream().anyMatch(o -> identifiers.contains(o.getIdentifier()))))
+                .next(), SUBSCRIBERS)
+            .mergeWith(placedOrder.then(Mono.empty()))
+            .collectList()
+            .block(Duration.ofSeconds(60));
+
+        logger.info("{} subscribers got the new order.", shelves.size());
+        assertThat(shelves).hasSize(SUBSCRIBERS);
+        assertThat(shelves).allMatch(shelf -> shelf.getType() == ShelfType.FROZEN);
+    }
+}
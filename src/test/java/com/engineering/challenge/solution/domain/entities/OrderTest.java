@@ -1,7 +1,14 @@
 package com.engineering.challenge.solution.domain.entities;
 
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -112,4 +119,40 @@ public class OrderTest {
         Thread.sleep(1000);
         assertThat(Math.ceil(order.getNormalizedValue() * 1000)).isEqualTo(980);
     }
+
+    @Test
+    void testOrderEventKeepsItsJsonShape() throws IOException {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        order.setName("Banana Split");
+        order.setTemp(ShelfType.FROZEN);
+        order.setShelfLife(20d);
+        order.setDecayRate(0.63d);
+        order.setOnShelfDate(LocalDateTime.now());
+        order.setIsOnOverflowShelf(true);
+        order.onMove();
+
+        // the order events are sent with the json serializer of the kafka template.
+        byte[] json = new JsonSerializer<Order>().serialize("orders", order);
+        JsonNode tree = new ObjectMapper().readTree(json);
+        assertThat(tree.has("value")).isTrue();
+        assertThat(tree.has("onShelfDate")).isTrue();
+        assertThat(tree.has("decayDate")).isTrue();
+        assertThat(tree.get("isOnOverflowShelf").asBoolean()).isTrue();
+        assertThat(tree.has("onShelfMillis")).isFalse();
+        assertThat(tree.has("decayDateMillis")).isFalse();
+
+        // a new order has neither value nor dates yet.
+        Order newOrder = new Order();
+        newOrder.setIdentifier(8L);
+        newOrder.setName("Yogurt");
+        newOrder.setTemp(ShelfType.COLD);
+        newOrder.setShelfLife(263d);
+        newOrder.setDecayRate(0.37d);
+        JsonDeserializer<Order> deserializer = new JsonDeserializer<>(Order.class, false);
+        Order decoded = deserializer.deserialize("orders", new JsonSerializer<Order>().serialize("orders", newOrder));
+        assertThat(decoded).isEqualTo(newOrder);
+        assertThat(decoded.getValue()).isNull();
+        assertThat(decoded.getOnShelfDate()).isNull();
+    }
 }
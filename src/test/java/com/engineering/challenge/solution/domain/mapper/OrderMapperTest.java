@@ -0,0 +1,55 @@
+package com.engineering.challenge.solution.domain.mapper;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderMapperTest {
+
+    @Test
+    void testNewOrderIgnoresClientIdentifierAndValue() {
+        OrderDTO newOrder = new OrderDTO();
+        newOrder.setIdentifier(42L);
+        newOrder.setName("Banana Split");
+        newOrder.setTemp(ShelfType.FROZEN);
+        newOrder.setShelfLife(20d);
+        newOrder.setDecayRate(0.63d);
+        newOrder.setNormalizedValue(0.5d);
+
+        Order order = OrderMapper.toOrder(newOrder);
+        assertThat(order.getIdentifier()).isNull();
+        assertThat(order.getValue()).isNull();
+        assertThat(order.getName()).isEqualTo("Banana Split");
+        assertThat(order.getTemp()).isEqualTo(ShelfType.FROZEN);
+        assertThat(order.getShelfLife()).isEqualTo(20d);
+        assertThat(order.getDecayRate()).isEqualTo(0.63d);
+    }
+
+    @Test
+    void testShelfSnapshot() {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        order.setName("Yogurt");
+        order.setTemp(ShelfType.COLD);
+        order.setShelfLife(263d);
+        order.setDecayRate(0.37d);
+        order.setOnShelfDate(LocalDateTime.now());
+        order.onMove();
+
+        ShelfDTO shelf = OrderMapper.toShelfDTO(ShelfType.COLD, Collections.singletonList(order));
+        assertThat(shelf.getType()).isEqualTo(ShelfType.COLD);
+        assertThat(shelf.getOrders()).hasSize(1);
+        OrderDTO orderDTO = shelf.getOrders().get(0);
+        assertThat(orderDTO.getIdentifier()).isEqualTo(7L);
+        assertThat(orderDTO.getName()).isEqualTo("Yogurt");
+        assertThat(orderDTO.getNormalizedValue()).isBetween(0.99d, 1d);
+    }
+}
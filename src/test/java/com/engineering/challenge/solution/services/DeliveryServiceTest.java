@@ -0,0 +1,166 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+import static com.engineering.challenge.solution.domain.ShelfType.WAITING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeliveryServiceTest {
+
+    private static final long DELIVERED = 1L;
+
+    private static final long NOT_ON_SHELF_YET = 2L;
+
+    private static final long DECAYED = 3L;
+
+    private static final long MOVED = 4L;
+
+    private RedissonClient redissonClient;
+
+    private HashedTimingWheel orderTimingWheel;
+
+    private ShelfStore shelfStore;
+
+    private OrderStatusMachine orderStatusMachine;
+
+    private MeterRegistry meterRegistry;
+
+    private DeliveryService deliveryService;
+
+    @BeforeEach
+    void setup() {
+        redissonClient = mock(RedissonClient.class);
+        orderTimingWheel = mock(HashedTimingWheel.class);
+        shelfStore = mock(ShelfStore.class);
+        orderStatusMachine = mock(OrderStatusMachine.class);
+        meterRegistry = new SimpleMeterRegistry();
+        deliveryService = new DeliveryService(
+            null, redissonClient, null, null, mock(ShelfOwnerService.class), orderTimingWheel, shelfStore, mock(ShelfService.class),
+            orderStatusMachine, new KitchenMetrics(meterRegistry)
+        );
+
+        // the moved order is read on the overflow shelf, but it's been moved to its target shelf before the removal.
+        Map<Long, ShelfType> statuses = new HashMap<>();
+        statuses.put(DELIVERED, HOT);
+        statuses.put(NOT_ON_SHELF_YET, WAITING);
+        statuses.put(MOVED, OVERFLOW);
+        when(shelfStore.getStatuses(anyCollection())).thenReturn(statuses, Collections.singletonMap(MOVED, HOT));
+        when(shelfStore.removeAll(eq(HOT), anyCollection())).thenReturn(
+            Collections.singletonList(order(DELIVERED)), Collections.singletonList(order(MOVED))
+        );
+        when(shelfStore.removeAll(eq(OVERFLOW), anyCollection())).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnlyTheDeliveredAndDecayedOrdersLeaveTheSchedule() {
+        when(shelfStore.isShared()).thenReturn(true);
+        RScoredSortedSet<Long> deliverySchedule = mock(RScoredSortedSet.class);
+        when(redissonClient.<Long>getScoredSortedSet(DeliveryService.DELIVERY_SCHEDULE, LongCodec.INSTANCE)).thenReturn(deliverySchedule);
+
+        final long now = System.currentTimeMillis();
+        deliveryService.deliverFromStore(dueDeliveries(now));
+
+        ArgumentCaptor<Collection<Long>> done = ArgumentCaptor.forClass(Collection.class);
+        verify(deliverySchedule).removeAll(done.capture());
+        assertThat(done.getValue()).containsExactlyInAnyOrder(DELIVERED, MOVED, DECAYED);
+
+        ArgumentCaptor<Map<Long, Double>> postponed = ArgumentCaptor.forClass(Map.class);
+        verify(deliverySchedule).addAll(postponed.capture());
+        assertThat(postponed.getValue()).containsOnlyKeys(NOT_ON_SHELF_YET);
+        assertThat(postponed.getValue().get(NOT_ON_SHELF_YET)).isGreaterThanOrEqualTo(now + 1000d);
+
+        assertThat(meterRegistry.timer("kitchen.order.delivery").count()).isEqualTo(2);
+    }
+
+    @Test
+    void testOrderNotOnShelfYetIsDueAgainOnTheLocalTimingWheel() {
+        final long now = System.currentTimeMillis();
+        deliveryService.deliverFromStore(dueDeliveries(now));
+
+        ArgumentCaptor<Long> retryAt = ArgumentCaptor.forClass(Long.class);
+        verify(orderTimingWheel).scheduleAt(any(), retryAt.capture());
+        assertThat(retryAt.getValue()).isGreaterThanOrEqualTo(now + 1000);
+        verify(redissonClient, never()).getScoredSortedSet(any(), any());
+        assertThat(meterRegistry.timer("kitchen.order.delivery").count()).isEqualTo(2);
+    }
+
+    @Test
+    void testOrderStillMovingAfterAllAttemptsIsDueAgain() {
+        when(shelfStore.getStatuses(anyCollection())).thenReturn(Collections.singletonMap(MOVED, OVERFLOW));
+
+        deliveryService.deliverFromStore(Collections.singletonList(new DeliveryService.DueDelivery(MOVED, 0L)));
+
+        verify(shelfStore, times(3)).removeAll(eq(OVERFLOW), anyCollection());
+        verify(orderTimingWheel).scheduleAt(any(), anyLong());
+        assertThat(meterRegistry.timer("kitchen.order.delivery").count()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOrderNotOnShelfYetKeepsItsScheduleEntryInLockMode() {
+        ReflectionTestUtils.setField(deliveryService, "placementMode", "lock");
+        when(shelfStore.isShared()).thenReturn(true);
+        RScoredSortedSet<Long> deliverySchedule = mock(RScoredSortedSet.class);
+        when(redissonClient.<Long>getScoredSortedSet(DeliveryService.DELIVERY_SCHEDULE, LongCodec.INSTANCE)).thenReturn(deliverySchedule);
+        when(orderStatusMachine.get(NOT_ON_SHELF_YET)).thenReturn(new OrderStatusMachine.VersionedStatus(WAITING, 0));
+
+        final long now = System.currentTimeMillis();
+        deliveryService.onDue(NOT_ON_SHELF_YET, now);
+
+        verify(deliverySchedule, never()).remove(any());
+        ArgumentCaptor<Map<Long, Double>> postponed = ArgumentCaptor.forClass(Map.class);
+        verify(deliverySchedule).addAll(postponed.capture());
+        assertThat(postponed.getValue()).containsOnlyKeys(NOT_ON_SHELF_YET);
+        assertThat(postponed.getValue().get(NOT_ON_SHELF_YET)).isGreaterThanOrEqualTo(now + 1000d);
+        verify(redissonClient, never()).getReadWriteLock(any());
+        assertThat(meterRegistry.timer("kitchen.order.delivery").count()).isZero();
+    }
+
+    private static List<DeliveryService.DueDelivery> dueDeliveries(long dueDate) {
+        return Arrays.asList(
+            new DeliveryService.DueDelivery(DELIVERED, dueDate),
+            new DeliveryService.DueDelivery(NOT_ON_SHELF_YET, dueDate),
+            new DeliveryService.DueDelivery(DECAYED, dueDate),
+            new DeliveryService.DueDelivery(MOVED, dueDate)
+        );
+    }
+
+    private static Order order(Long orderIdentifier) {
+        Order order = new Order();
+        order.setIdentifier(orderIdentifier);
+        order.setName("Banana Split");
+        return order;
+    }
+}
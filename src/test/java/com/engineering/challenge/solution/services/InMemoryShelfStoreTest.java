@@ -0,0 +1,123 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryShelfStoreTest {
+
+    private HashedTimingWheel timingWheel;
+
+    private InMemoryShelfStore shelfStore;
+
+    private final Map<ShelfType, Integer> shelfCapacity = new EnumMap<>(ShelfType.class);
+
+    @BeforeEach
+    void setup() {
+        timingWheel = new HashedTimingWheel("TestTimingWheel", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+        shelfStore = new InMemoryShelfStore(timingWheel);
+        shelfCapacity.put(ShelfType.HOT, 1);
+        shelfCapacity.put(ShelfType.COLD, 1);
+        shelfCapacity.put(ShelfType.FROZEN, 1);
+        shelfCapacity.put(ShelfType.OVERFLOW, 1);
+    }
+
+    @AfterEach
+    void cleanup() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void testPlaceFallsBackToOverflowThenWastes() {
+        assertThat(place(1L, 100d)).isEqualTo(ShelfType.HOT);
+        assertThat(place(2L, 100d)).isEqualTo(ShelfType.OVERFLOW);
+        assertThat(place(3L, 100d)).isNull();
+
+        assertThat(shelfStore.getStatus(1L)).isEqualTo(ShelfType.HOT);
+        assertThat(shelfStore.getStatus(2L)).isEqualTo(ShelfType.OVERFLOW);
+        assertThat(shelfStore.getStatus(3L)).isNull();
+        assertThat(shelfStore.getOrders(ShelfType.OVERFLOW)).extracting(Order::getIsOnOverflowShelf).containsExactly(true);
+    }
+
+    @Test
+    void testDeliveredOrderFreesTheSlotForTheOverflowOrder() {
+        place(1L, 100d);
+        place(2L, 100d);
+
+        Order delivered = shelfStore.remove(ShelfType.HOT, 1L);
+        assertThat(delivered.getIdentifier()).isEqualTo(1L);
+        assertThat(shelfStore.getStatus(1L)).isNull();
+        assertThat(shelfStore.remove(ShelfType.HOT, 1L)).isNull();
+
+        List<Order> candidates = shelfStore.getOverflowCandidates(shelfCapacity);
+        assertThat(candidates).extracting(Order::getIdentifier).containsExactly(2L);
+        List<Order> moved = shelfStore.moveFromOverflow(candidates, shelfCapacity);
+        assertThat(moved).extracting(Order::getIsOnOverflowShelf).containsExactly(false);
+        assertThat(shelfStore.getStatus(2L)).isEqualTo(ShelfType.HOT);
+        assertThat(shelfStore.getOrders(ShelfType.OVERFLOW)).isEmpty();
+    }
+
+    @Test
+    void testDeadlineExpiresTheOrderOnlyOnce() throws InterruptedException {
+        List<Order> expired = new CopyOnWriteArrayList<>();
+        shelfStore.setDeadlineHandler((shelfType, order) -> {
+            Order decayed = shelfStore.removeDecayed(
+                shelfType, order.getTemp(), order.getIdentifier(), order.getDecayDateMillis()
+            );
+            if (decayed != null) expired.add(decayed);
+        });
+        // decays within 100ms.
+        place(1L, 0.1d);
+
+        Thread.sleep(400);
+        assertThat(expired).extracting(Order::getIdentifier).containsExactly(1L);
+        assertThat(shelfStore.getOrders(ShelfType.HOT)).isEmpty();
+        assertThat(shelfStore.getStatus(1L)).isNull();
+    }
+
+    @Test
+    void testBatchRemovalLeavesOutTheOrdersNotOnTheShelf() {
+        place(1L, 100d);
+        place(2L, 100d);
+
+        List<Order> delivered = shelfStore.removeAll(ShelfType.HOT, Arrays.asList(1L, 2L, 3L));
+        assertThat(delivered).extracting(Order::getIdentifier).containsExactly(1L);
+        assertThat(shelfStore.getStatus(1L)).isNull();
+        assertThat(shelfStore.getStatus(2L)).isEqualTo(ShelfType.OVERFLOW);
+
+        // the deadline on the overflow shelf is not due for an order put back later.
+        Order overflowOrder = shelfStore.getOrders(ShelfType.OVERFLOW).get(0);
+        Order staleDeadline = new Order();
+        staleDeadline.setIdentifier(2L);
+        staleDeadline.setTemp(ShelfType.HOT);
+        staleDeadline.setDecayDateMillis(overflowOrder.getDecayDateMillis() - 60_000);
+        assertThat(shelfStore.removeAllDecayed(ShelfType.OVERFLOW, Arrays.asList(staleDeadline, overflowOrder)))
+            .extracting(Order::getIdentifier)
+            .containsExactly(2L);
+        assertThat(shelfStore.getStatus(2L)).isNull();
+    }
+
+    private ShelfType place(Long identifier, double shelfLife) {
+        Order order = new Order();
+        order.setIdentifier(identifier);
+        order.setName("order-" + identifier);
+        order.setTemp(ShelfType.HOT);
+        order.setShelfLife(shelfLife);
+        order.setDecayRate(0d);
+        shelfStore.putStatus(identifier, ShelfType.WAITING);
+        return shelfStore.place(order, shelfCapacity.get(ShelfType.HOT), shelfCapacity.get(ShelfType.OVERFLOW));
+    }
+}
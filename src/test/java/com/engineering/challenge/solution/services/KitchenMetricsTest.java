@@ -0,0 +1,59 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KitchenMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private KitchenMetrics kitchenMetrics;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        kitchenMetrics = new KitchenMetrics(meterRegistry);
+    }
+
+    @Test
+    void testLockWaitHoldAndFailures() {
+        long waitStart = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        long lockedAt = kitchenMetrics.onLockAcquired("hot_lock", waitStart);
+        kitchenMetrics.onLockReleased("hot_lock", lockedAt);
+        kitchenMetrics.onLockFailed("hot_lock", System.nanoTime());
+
+        assertThat(meterRegistry.get("kitchen.lock.wait").tag("lock", "hot_lock").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("kitchen.lock.wait").tag("lock", "hot_lock").timer().max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+        assertThat(meterRegistry.get("kitchen.lock.hold").tag("lock", "hot_lock").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("kitchen.lock.failures").tag("lock", "hot_lock").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testWastedOnArrivalAndDecayedAreCountedApart() {
+        kitchenMetrics.recordPlacement(KitchenMetrics.PLACED_ON_TARGET, ShelfType.HOT, System.nanoTime());
+        kitchenMetrics.recordPlacement(KitchenMetrics.WASTED, ShelfType.HOT, System.nanoTime());
+        kitchenMetrics.onDecayed(ShelfType.OVERFLOW);
+        kitchenMetrics.onDecayed(ShelfType.OVERFLOW);
+
+        assertThat(meterRegistry.get("kitchen.order.placement").timers()).hasSize(2);
+        assertThat(meterRegistry.get("kitchen.orders.wasted").tag("cause", "no-space").tag("shelf", "hot").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("kitchen.orders.wasted").tag("cause", "decayed").tag("shelf", "overflow").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testShelfGaugesReadOnScrape() {
+        int[] size = {3};
+        kitchenMetrics.gaugeShelfSize(ShelfType.COLD, shelfType -> size[0]);
+        size[0] = 7;
+
+        assertThat(meterRegistry.get("kitchen.shelf.orders").tag("shelf", "cold").gauge().value()).isEqualTo(7);
+    }
+}
@@ -0,0 +1,197 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.OrderResultDTO;
+import com.engineering.challenge.solution.utils.SnowflakeIdGenerator;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.NonBlocking;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderEventServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The calls to the stores and senders which don't return a publisher, made on a non-blocking thread, e.g. the event loop.
+     */
+    private final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+
+    private KafkaSender<Long, Object> orderSender;
+
+    private ShelfStore shelfStore;
+
+    private OrderEventService orderEventService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        orderSender = detectBlockingCalls(KafkaSender.class);
+        shelfStore = detectBlockingCalls(ShelfStore.class);
+        orderEventService = new OrderEventService(
+            null, null, null, null, orderSender, new SnowflakeIdGenerator(1), null, null, mock(ShelfOwnerService.class), null, null,
+            null, shelfStore, null, null
+        );
+        ReflectionTestUtils.setField(orderEventService, "topicName", "orders");
+        when(shelfStore.putStatusAsync(anyLong(), any())).thenReturn(Mono.empty());
+        when(shelfStore.putStatusesAsync(any(), any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void testBlockingCallsOnNonBlockingThreadsAreDetected() {
+        Mono.fromRunnable(() -> shelfStore.putStatus(1L, ShelfType.WAITING)).subscribeOn(Schedulers.parallel()).block(TIMEOUT);
+
+        assertThat(blockingCalls).containsExactly("ShelfStore.putStatus");
+    }
+
+    @Test
+    void testPlaceNewOrderWithoutBlocking() {
+        acknowledge(null);
+
+        // the parallel threads are non-blocking like the event loop.
+        OrderDTO placed = orderEventService.placeNewOrder(newOrder("Banana Split", ShelfType.FROZEN))
+            .subscribeOn(Schedulers.parallel())
+            .block(TIMEOUT);
+
+        assertThat(placed.getIdentifier()).isNotNull();
+        verify(shelfStore).putStatusAsync(placed.getIdentifier(), ShelfType.WAITING);
+        verify(shelfStore, never()).putStatus(anyLong(), any());
+        assertThat(blockingCalls).isEmpty();
+    }
+
+    @Test
+    void testPlaceNewOrderFailsWhenTheRecordIsNotSent() {
+        acknowledge(0);
+
+        Mono<OrderDTO> placed = orderEventService.placeNewOrder(newOrder("Banana Split", ShelfType.FROZEN));
+
+        assertThatThrownBy(() -> placed.block(TIMEOUT)).hasMessage("broker down");
+    }
+
+    @Test
+    void testPlaceNewOrderRejectsTheOrdersRejectedInBatch() {
+        OrderDTO withoutShelfLife = newOrder("Banana Split", ShelfType.FROZEN);
+        withoutShelfLife.setShelfLife(0d);
+
+        assertThatThrownBy(() -> orderEventService.placeNewOrder(withoutShelfLife).block(TIMEOUT))
+            .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+                assertThat(e.getReason()).isEqualTo("shelfLife must be positive");
+            });
+        assertThatThrownBy(() -> orderEventService.placeNewOrder(newOrder("Pad Thai", ShelfType.OVERFLOW)).block(TIMEOUT))
+            .isInstanceOf(ResponseStatusException.class)
+            .hasMessageContaining("temp must be hot, cold or frozen");
+        verify(shelfStore, never()).putStatusAsync(anyLong(), any());
+        verify(orderSender, never()).send(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPlaceNewOrdersInOneStatusBatchWithResultsInOrder() {
+        // the second valid order fails to be sent.
+        acknowledge(2);
+
+        List<OrderDTO> newOrders = Arrays.asList(newOrder("Banana Split", ShelfType.FROZEN), newOrder("Pad Thai", null),
+            newOrder("Cobb Salad", ShelfType.COLD));
+        List<OrderResultDTO> placed = orderEventService.placeNewOrders(newOrders).subscribeOn(Schedulers.parallel()).block(TIMEOUT);
+
+        // the statuses of the valid orders are written at once.
+        ArgumentCaptor<Collection<Long>> orderIdentifiers = ArgumentCaptor.forClass(Collection.class);
+        verify(shelfStore).putStatusesAsync(orderIdentifiers.capture(), eq(ShelfType.WAITING));
+        assertThat(orderIdentifiers.getValue()).hasSize(2);
+        assertThat(blockingCalls).isEmpty();
+
+        assertThat(placed).extracting(result -> result.getOrder().getName()).containsExactly("Banana Split", "Pad Thai", "Cobb Salad");
+        assertThat(placed.get(0).getError()).isNull();
+        assertThat(placed.get(0).getOrder().getIdentifier()).isIn(orderIdentifiers.getValue());
+        assertThat(placed.get(1).getError()).isEqualTo("temp must be hot, cold or frozen");
+        assertThat(placed.get(1).getOrder().getIdentifier()).isNull();
+        assertThat(placed.get(2).getError()).isEqualTo("Failed to send the order");
+    }
+
+    /**
+     * Acknowledge the sent records on another thread like the producer does, but the one with the correlation metadata given.
+     */
+    @SuppressWarnings("unchecked")
+    private void acknowledge(Object failedCorrelationMetadata) {
+        when(orderSender.send(any())).thenAnswer(invocation -> {
+            Publisher<SenderRecord<Long, Object, Object>> records = invocation.getArgument(0);
+            return Flux.from(records)
+                .publishOn(Schedulers.elastic())
+                .map(record -> senderResult(record, record.correlationMetadata().equals(failedCorrelationMetadata)
+                    ? new IllegalStateException("broker down") : null));
+        });
+    }
+
+    private static <T> SenderResult<T> senderResult(SenderRecord<Long, Object, T> record, Exception exception) {
+        return new SenderResult<T>() {
+            @Override
+            public RecordMetadata recordMetadata() {
+                return null;
+            }
+
+            @Override
+            public Exception exception() {
+                return exception;
+            }
+
+            @Override
+            public T correlationMetadata() {
+                return record.correlationMetadata();
+            }
+        };
+    }
+
+    /**
+     * A mock which records its calls made on a non-blocking thread, unless the call returns a publisher, i.e. a lightweight
+     * BlockHound for the boundaries of the placement.
+     */
+    private <T> T detectBlockingCalls(Class<T> type) {
+        return mock(type, invocation -> {
+            if (Thread.currentThread() instanceof NonBlocking && !Publisher.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
+                blockingCalls.add(type.getSimpleName() + "." + invocation.getMethod().getName());
+            }
+            return Mockito.RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
+    private static OrderDTO newOrder(String name, ShelfType temp) {
+        OrderDTO order = new OrderDTO();
+        order.setName(name);
+        order.setTemp(temp);
+        order.setShelfLife(300d);
+        order.setDecayRate(0.5d);
+        return order;
+    }
+}
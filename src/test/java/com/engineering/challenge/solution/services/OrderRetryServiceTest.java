@@ -0,0 +1,67 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OrderRetryServiceTest {
+
+    private KafkaTemplate<Long, Object> kafkaTemplate;
+
+    private OrderRetryService orderRetryService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        orderRetryService = new OrderRetryService(kafkaTemplate, new KitchenMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(orderRetryService, "topicName", "orders");
+        ReflectionTestUtils.setField(orderRetryService, "retryDelays", new long[]{1000, 5000, 500});
+        orderRetryService.init();
+    }
+
+    @Test
+    void testRetryTopicNames() {
+        assertThat(orderRetryService.getRetryTopics()).containsExactly("orders-retry-1s", "orders-retry-5s", "orders-retry-500ms");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRequeueKeepsTheKeyAndDeadLettersAfterAllDelays() {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        for (int attempts = 0; attempts <= 3; attempts++) {
+            orderRetryService.requeue(order, ShelfType.HOT, attempts);
+        }
+
+        ArgumentCaptor<ProducerRecord<Long, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(4)).send(captor.capture());
+        assertThat(captor.getAllValues()).extracting(ProducerRecord::topic)
+            .containsExactly("orders-retry-1s", "orders-retry-5s", "orders-retry-500ms", "orders-dlt");
+        assertThat(captor.getAllValues()).extracting(ProducerRecord::key).containsOnly(7L);
+
+        // the consumer reads back the attempts from the headers.
+        ProducerRecord<Long, Object> second = captor.getAllValues().get(1);
+        ConsumerRecord<Long, Object> consumed = new ConsumerRecord<>(second.topic(), 0, 0, second.key(), second.value());
+        second.headers().forEach(h -> consumed.headers().add(h));
+        assertThat(OrderRetryService.getAttempts(consumed)).isEqualTo(2);
+        assertThat(OrderRetryService.getDueAt(consumed)).isGreaterThan(System.currentTimeMillis());
+
+        assertThat(orderRetryService.getRequeueCounts().get(ShelfType.HOT)).isEqualTo(4);
+        assertThat(orderRetryService.getDeadLetterCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static com.engineering.challenge.solution.domain.ShelfType.COLD;
+import static com.engineering.challenge.solution.domain.ShelfType.HOT;
+import static com.engineering.challenge.solution.domain.ShelfType.OVERFLOW;
+import static com.engineering.challenge.solution.domain.ShelfType.WAITING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class OrderStatusMachineTest {
+
+    @Test
+    void testOrderMovesOnlyBetweenItsTargetShelfAndTheOverflowShelf() {
+        assertThat(OrderStatusMachine.isLegal(null, WAITING)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(WAITING, HOT)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(WAITING, OVERFLOW)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(HOT, OVERFLOW)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(OVERFLOW, HOT)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(OVERFLOW, null)).isTrue();
+        assertThat(OrderStatusMachine.isLegal(WAITING, null)).isTrue();
+
+        assertThat(OrderStatusMachine.isLegal(HOT, COLD)).isFalse();
+        assertThat(OrderStatusMachine.isLegal(HOT, HOT)).isFalse();
+        assertThat(OrderStatusMachine.isLegal(HOT, WAITING)).isFalse();
+        assertThat(OrderStatusMachine.isLegal(null, HOT)).isFalse();
+        assertThat(OrderStatusMachine.isLegal(null, null)).isFalse();
+    }
+
+    @Test
+    void testIllegalTransitionIsRejectedWithoutRoundTrip() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderStatusMachine orderStatusMachine = new OrderStatusMachine(redissonClient, new KitchenMetrics(meterRegistry));
+
+        boolean applied = orderStatusMachine.transition(1L, new OrderStatusMachine.VersionedStatus(HOT, 2), ShelfType.FROZEN);
+
+        assertThat(applied).isFalse();
+        verifyZeroInteractions(redissonClient);
+        assertThat(meterRegistry.counter("kitchen.order.status.transitions", "result", "illegal").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,102 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.OrderStatusDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderStatusServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ShelfStore shelfStore;
+
+    private OrderStatusService orderStatusService;
+
+    private long decayDate;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        shelfStore = mock(ShelfStore.class);
+        decayDate = System.currentTimeMillis() + 60_000;
+
+        Map<Long, ShelfType> statuses = new HashMap<>();
+        statuses.put(1L, ShelfType.HOT);
+        statuses.put(2L, ShelfType.WAITING);
+        when(shelfStore.getStatuses(anyCollection())).thenReturn(statuses);
+        when(shelfStore.getOrders(eq(ShelfType.HOT), any())).thenReturn(Collections.singletonMap(1L, order(1L)));
+
+        orderStatusService = new OrderStatusService(shelfStore, new KitchenMetrics(meterRegistry));
+        ReflectionTestUtils.setField(orderStatusService, "cacheSize", 100);
+        ReflectionTestUtils.setField(orderStatusService, "cacheTtl", 60_000L);
+        orderStatusService.init();
+    }
+
+    @Test
+    void testStatusesAreReadTogetherThenServedFromTheCache() {
+        List<OrderStatusDTO> statuses = orderStatusService.getStatuses(Arrays.asList(1L, 2L, 3L)).block();
+
+        assertThat(statuses).extracting(OrderStatusDTO::getShelf).containsExactly(ShelfType.HOT, ShelfType.WAITING, null);
+        // 1 + 0.5 per 100s of shelf life, i.e. 0.9 at 60s to decay.
+        assertThat(statuses.get(0).getNormalizedValue()).isCloseTo(0.9, within(0.01));
+        assertThat(statuses.get(0).getSecondsToDecay()).isCloseTo(60, within(1d));
+        assertThat(statuses.get(1).getNormalizedValue()).isNull();
+
+        assertThat(orderStatusService.getStatus(3L).block().getShelf()).isNull();
+        assertThat(orderStatusService.getStatus(1L).block().getShelf()).isEqualTo(ShelfType.HOT);
+        verify(shelfStore, times(1)).getStatuses(anyCollection());
+        assertThat(meterRegistry.get("kitchen.order.status.cache.hit.ratio").gauge().value()).isEqualTo(0.4);
+    }
+
+    @Test
+    void testShelfChangeInvalidatesTheOrder() {
+        orderStatusService.getStatus(1L).block();
+        when(shelfStore.getStatuses(anyCollection())).thenReturn(Collections.singletonMap(1L, ShelfType.OVERFLOW));
+        when(shelfStore.getOrders(eq(ShelfType.OVERFLOW), any())).thenReturn(Collections.singletonMap(1L, order(1L)));
+
+        ShelfEventDTO moved = new ShelfEventDTO();
+        moved.setType(ShelfType.HOT);
+        moved.setEvent(ShelfEventType.REMOVED);
+        moved.setOrder(new OrderDTO());
+        moved.getOrder().setIdentifier(1L);
+        orderStatusService.onShelfEvent(moved);
+
+        assertThat(orderStatusService.getStatus(1L).block().getShelf()).isEqualTo(ShelfType.OVERFLOW);
+        verify(shelfStore, times(2)).getStatuses(anyCollection());
+    }
+
+    private Order order(Long identifier) {
+        Order order = new Order();
+        order.setIdentifier(identifier);
+        order.setTemp(ShelfType.HOT);
+        order.setShelfLife(100);
+        order.setDecayRate(0.5);
+        order.setDecayDateMillis(decayDate);
+        return order;
+    }
+}
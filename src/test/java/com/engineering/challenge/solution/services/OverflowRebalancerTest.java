@@ -0,0 +1,45 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OverflowRebalancerTest {
+
+    @Test
+    void testMostAtRiskOrdersFillTheFreeSlotsOfEveryTemperature() {
+        Map<ShelfType, Collection<Long>> atRiskFirst = new EnumMap<>(ShelfType.class);
+        atRiskFirst.put(ShelfType.HOT, Arrays.asList(3L, 2L, 1L));
+        atRiskFirst.put(ShelfType.COLD, Collections.singletonList(4L));
+        atRiskFirst.put(ShelfType.FROZEN, Collections.singletonList(5L));
+
+        Map<ShelfType, Integer> freeSlots = new EnumMap<>(ShelfType.class);
+        freeSlots.put(ShelfType.HOT, 2);
+        freeSlots.put(ShelfType.COLD, 3);
+        freeSlots.put(ShelfType.FROZEN, 0);
+
+        List<Long> candidates = OverflowRebalancer.selectCandidates(atRiskFirst, freeSlots);
+
+        // the frozen shelf is full, which doesn't stop the other temperatures.
+        assertThat(candidates).containsExactly(3L, 2L, 4L);
+    }
+
+    @Test
+    void testOverfullShelfTakesNoOrder() {
+        Map<ShelfType, Integer> freeSlots = new EnumMap<>(ShelfType.class);
+        freeSlots.put(ShelfType.HOT, -1);
+
+        assertThat(OverflowRebalancer.selectCandidates(
+            Collections.singletonMap(ShelfType.HOT, Collections.singletonList(1L)), freeSlots
+        )).isEmpty();
+    }
+}
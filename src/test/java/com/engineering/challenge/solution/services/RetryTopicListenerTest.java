@@ -0,0 +1,98 @@
+package com.engineering.challenge.solution.services;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class RetryTopicListenerTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("orders-retry-1s", 0);
+
+    private static final TopicPartition PARTITION_1 = new TopicPartition("orders-retry-1s", 1);
+
+    private MockConsumer<String, Object> consumer;
+
+    private List<ConsumerRecord<String, Object>> retried;
+
+    private RetryTopicListener listener;
+
+    @BeforeEach
+    void setup() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Arrays.asList(PARTITION_0, PARTITION_1));
+        retried = new ArrayList<>();
+        listener = new RetryTopicListener(retried::add);
+    }
+
+    @Test
+    void testRecordNotDueYetPausesItsPartitionOnly() {
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        final long now = System.currentTimeMillis();
+
+        listener.onMessage(record(PARTITION_0, 5, now + 60_000), acknowledgment, consumer);
+        // fetched along with the paused one, handed again once the partition is resumed.
+        listener.onMessage(record(PARTITION_0, 6, now), acknowledgment, consumer);
+
+        assertThat(retried).isEmpty();
+        verify(acknowledgment, never()).acknowledge();
+        assertThat(consumer.paused()).containsExactly(PARTITION_0);
+        assertThat(consumer.position(PARTITION_0)).isEqualTo(5);
+
+        listener.onMessage(record(PARTITION_1, 3, now), acknowledgment, consumer);
+
+        assertThat(retried).extracting(ConsumerRecord::offset).containsExactly(3L);
+        verify(acknowledgment).acknowledge();
+        assertThat(consumer.paused()).containsExactly(PARTITION_0);
+    }
+
+    @Test
+    void testDuePartitionIsResumedByItsConsumerOnly() {
+        final long now = System.currentTimeMillis();
+        listener.onMessage(record(PARTITION_0, 5, now + 50), mock(Acknowledgment.class), consumer);
+
+        MockConsumer<String, Object> other = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        other.assign(Collections.singleton(PARTITION_1));
+        listener.resumeDue(consumer);
+        assertThat(consumer.paused()).containsExactly(PARTITION_0);
+
+        waitUntil(now + 50);
+        listener.resumeDue(other);
+        assertThat(consumer.paused()).containsExactly(PARTITION_0);
+
+        listener.resumeDue(consumer);
+        assertThat(consumer.paused()).isEmpty();
+    }
+
+    private static ConsumerRecord<String, Object> record(TopicPartition partition, long offset, long dueAt) {
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(partition.topic(), partition.partition(), offset, "7", "order");
+        record.headers().add(new RecordHeader(OrderRetryService.DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8)));
+        return record;
+    }
+
+    private static void waitUntil(long time) {
+        while (System.currentTimeMillis() <= time) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
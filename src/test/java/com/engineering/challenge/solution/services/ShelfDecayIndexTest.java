@@ -0,0 +1,75 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.engineering.challenge.solution.utils.HashedTimingWheel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RedissonClient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShelfDecayIndexTest {
+
+    private HashedTimingWheel timingWheel;
+
+    private ShelfDecayIndex shelfDecayIndex;
+
+    private final List<ShelfType> expired = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        timingWheel = new HashedTimingWheel("TestTimingWheel", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+        shelfDecayIndex = new ShelfDecayIndex(Mockito.mock(RedissonClient.class), timingWheel);
+        shelfDecayIndex.setDeadlineHandler((shelfType, order) -> expired.add(shelfType));
+    }
+
+    @AfterEach
+    void cleanup() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void testDeadlineFiresAtTheDecayDate() throws InterruptedException {
+        shelfDecayIndex.track(ShelfType.HOT, order(1L, 50));
+
+        Thread.sleep(300);
+        assertThat(expired).containsExactly(ShelfType.HOT);
+        assertThat(timingWheel.getPendingTimers()).isZero();
+    }
+
+    @Test
+    void testMovedOrderOnlyKeepsTheLatestDeadline() throws InterruptedException {
+        shelfDecayIndex.track(ShelfType.OVERFLOW, order(1L, 50));
+        // moved back to its target shelf, where it decays later.
+        shelfDecayIndex.track(ShelfType.HOT, order(1L, 150));
+
+        Thread.sleep(400);
+        assertThat(expired).containsExactly(ShelfType.HOT);
+    }
+
+    @Test
+    void testUntrackedOrderNeverExpires() throws InterruptedException {
+        shelfDecayIndex.track(ShelfType.COLD, order(1L, 50));
+        shelfDecayIndex.untrack(1L);
+
+        Thread.sleep(300);
+        assertThat(expired).isEmpty();
+    }
+
+    private static Order order(Long identifier, long decayInMillis) {
+        Order order = new Order();
+        order.setIdentifier(identifier);
+        order.setTemp(ShelfType.COLD);
+        order.setDecayDate(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(decayInMillis)));
+        return order;
+    }
+}
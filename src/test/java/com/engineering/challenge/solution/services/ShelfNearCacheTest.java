@@ -0,0 +1,167 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShelfNearCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ShelfStore shelfStore;
+
+    private ShelfNearCache shelfNearCache;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        shelfStore = mock(ShelfStore.class);
+        when(shelfStore.getSequence(ShelfType.HOT)).thenReturn(10L);
+        when(shelfStore.getOrders(ShelfType.HOT)).thenReturn(Collections.singletonList(order(1L)));
+
+        shelfNearCache = new ShelfNearCache(shelfStore, new KitchenMetrics(meterRegistry), null);
+        ReflectionTestUtils.setField(shelfNearCache, "maxStaleness", 5000L);
+        shelfNearCache.init();
+    }
+
+    @Test
+    void testSnapshotIsReadOnceThenServedFromTheDeltas() {
+        assertThat(identifiers(shelfNearCache.getSnapshot(ShelfType.HOT, 1000))).containsExactly(1L);
+
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 11, 2L), 1000);
+        shelfNearCache.apply(delta(ShelfEventType.REMOVED, 12, 1L), 1000);
+        ShelfEventDTO snapshot = shelfNearCache.getSnapshot(ShelfType.HOT, 2000);
+
+        assertThat(identifiers(snapshot)).containsExactly(2L);
+        assertThat(snapshot.getSequence()).isEqualTo(12);
+        verify(shelfStore, times(1)).getOrders(ShelfType.HOT);
+        assertThat(reads("hit")).isEqualTo(1);
+        assertThat(reads("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void testNormalizedValuesAreExtrapolated() {
+        shelfNearCache.getSnapshot(ShelfType.HOT, 1000);
+        // 1 + 0.5 per 100s of shelf life, i.e. 0.015 per second.
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 11, 2L), 1000);
+
+        OrderDTO order = shelfNearCache.getSnapshot(ShelfType.HOT, 3000).getOrders().get(1);
+
+        assertThat(order.getNormalizedValue()).isCloseTo(1d - 0.03, within(1e-9));
+        assertThat(ShelfNearCache.extrapolate(order(2L, 1d), ShelfType.OVERFLOW, 0, 1000)).isCloseTo(1d - 0.02, within(1e-9));
+    }
+
+    @Test
+    void testMissedDeltaReadsTheStoreAgain() {
+        shelfNearCache.getSnapshot(ShelfType.HOT, 1000);
+        // 11 is missed.
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 12, 2L), 1000);
+        when(shelfStore.getSequence(ShelfType.HOT)).thenReturn(12L);
+
+        assertThat(shelfNearCache.getSnapshot(ShelfType.HOT, 1000).getSequence()).isEqualTo(12);
+        assertThat(reads("miss")).isEqualTo(2);
+        // in sequence again.
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 13, 3L), 1000);
+        assertThat(shelfNearCache.getSnapshot(ShelfType.HOT, 1000).getSequence()).isEqualTo(13);
+        assertThat(reads("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void testReplicaIsServedWithinTheStalenessBound() {
+        shelfNearCache.getSnapshot(ShelfType.HOT, 0);
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 11, 2L), 0);
+        when(shelfStore.getSequence(ShelfType.HOT)).thenReturn(12L);
+
+        // behind the store, so not verified.
+        shelfNearCache.reconcile();
+        assertThat(shelfNearCache.getLag(ShelfType.HOT)).isEqualTo(1);
+        assertThat(shelfNearCache.getSnapshot(ShelfType.HOT, 5000).getSequence()).isEqualTo(11);
+        assertThat(shelfNearCache.getStaleness(ShelfType.HOT, 6000)).isEqualTo(6000);
+        assertThat(shelfNearCache.getSnapshot(ShelfType.HOT, 6000).getSequence()).isEqualTo(12);
+        assertThat(reads("miss")).isEqualTo(2);
+
+        // caught up.
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 13, 3L), 6000);
+        when(shelfStore.getSequence(ShelfType.HOT)).thenReturn(13L);
+        when(shelfStore.size(ShelfType.HOT)).thenReturn(2);
+        shelfNearCache.reconcile();
+        assertThat(shelfNearCache.getLag(ShelfType.HOT)).isEqualTo(0);
+        assertThat(shelfNearCache.getStaleness(ShelfType.HOT, System.currentTimeMillis())).isLessThan(1000);
+    }
+
+    @Test
+    void testDriftedReplicaIsNotVerifiedAndRefreshedFromTheStore() {
+        shelfNearCache.getSnapshot(ShelfType.HOT, 0);
+        // the removal of order 1 is sequenced but lost, e.g. the replica applied a stale delta instead.
+        shelfNearCache.apply(delta(ShelfEventType.ADDED, 11, 2L), 0);
+        when(shelfStore.getSequence(ShelfType.HOT)).thenReturn(11L);
+        when(shelfStore.size(ShelfType.HOT)).thenReturn(1);
+
+        shelfNearCache.reconcile();
+        assertThat(shelfNearCache.getLag(ShelfType.HOT)).isEqualTo(0);
+        assertThat(shelfNearCache.getStaleness(ShelfType.HOT, System.currentTimeMillis())).isGreaterThan(1000);
+
+        when(shelfStore.getOrders(ShelfType.HOT)).thenReturn(Collections.singletonList(order(2L)));
+        assertThat(identifiers(shelfNearCache.refresh(ShelfType.HOT))).containsExactly(2L);
+        shelfNearCache.reconcile();
+        assertThat(identifiers(shelfNearCache.getSnapshot(ShelfType.HOT, System.currentTimeMillis()))).containsExactly(2L);
+        assertThat(reads("hit")).isEqualTo(1);
+    }
+
+    private double reads(String result) {
+        return meterRegistry.get("kitchen.shelf.cache.reads").tag("shelf", "hot").tag("result", result).counter().count();
+    }
+
+    private static ShelfEventDTO delta(ShelfEventType eventType, long sequence, Long identifier) {
+        ShelfEventDTO delta = new ShelfEventDTO();
+        delta.setType(ShelfType.HOT);
+        delta.setEvent(eventType);
+        delta.setSequence(sequence);
+        delta.setOrder(order(identifier, 1d));
+        return delta;
+    }
+
+    private static Order order(Long identifier) {
+        Order order = new Order();
+        order.setIdentifier(identifier);
+        order.setName("Order " + identifier);
+        order.setTemp(ShelfType.HOT);
+        order.setShelfLife(100);
+        order.setDecayRate(0.5);
+        return order;
+    }
+
+    private static OrderDTO order(Long identifier, double normalizedValue) {
+        OrderDTO order = new OrderDTO();
+        order.setIdentifier(identifier);
+        order.setName("Order " + identifier);
+        order.setTemp(ShelfType.HOT);
+        order.setShelfLife(100d);
+        order.setDecayRate(0.5);
+        order.setNormalizedValue(normalizedValue);
+        return order;
+    }
+
+    private static List<Long> identifiers(ShelfEventDTO snapshot) {
+        return snapshot.getOrders().stream().map(OrderDTO::getIdentifier).collect(Collectors.toList());
+    }
+}
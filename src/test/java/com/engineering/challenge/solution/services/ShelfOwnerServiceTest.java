@@ -0,0 +1,71 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.OrderCommand;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ShelfOwnerServiceTest {
+
+    private KafkaTemplate<Long, Object> kafkaTemplate;
+
+    private ShelfOwnerService shelfOwnerService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        shelfOwnerService = new ShelfOwnerService(kafkaTemplate);
+        ReflectionTestUtils.setField(shelfOwnerService, "topicName", "orders");
+        ReflectionTestUtils.setField(shelfOwnerService, "topicPartitions", 4);
+        ReflectionTestUtils.setField(shelfOwnerService, "placementMode", "single-writer");
+        shelfOwnerService.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSendCommandToThePartitionOfTheShelf() {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        shelfOwnerService.send(OrderCommand.OVERFLOW, ShelfType.OVERFLOW, order);
+
+        ArgumentCaptor<ProducerRecord<Long, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        ProducerRecord<Long, Object> sent = captor.getValue();
+        assertThat(sent.partition()).isEqualTo(ShelfOwnerService.partitionOf(ShelfType.OVERFLOW));
+        assertThat(sent.key()).isEqualTo(7L);
+
+        // the owner reads back the command and the shelf from the record.
+        ConsumerRecord<Long, Object> consumed = new ConsumerRecord<>(sent.topic(), sent.partition(), 0, sent.key(), sent.value());
+        sent.headers().forEach(h -> consumed.headers().add(h));
+        assertThat(ShelfOwnerService.getCommand(consumed)).isEqualTo(OrderCommand.OVERFLOW);
+        assertThat(ShelfOwnerService.shelfOf(consumed.partition())).isEqualTo(ShelfType.OVERFLOW);
+    }
+
+    @Test
+    void testOwnershipFollowsPartitionAssignment() {
+        shelfOwnerService.onPartitionsAssigned(Arrays.asList(
+            new TopicPartition("orders", 0), new TopicPartition("orders", 3), new TopicPartition("orders-retry-1s", 1)
+        ));
+        assertThat(shelfOwnerService.getOwnedShelves()).containsExactlyInAnyOrder(ShelfType.HOT, ShelfType.OVERFLOW);
+
+        shelfOwnerService.onPartitionsRevoked(Collections.singletonList(new TopicPartition("orders", 3)));
+        assertThat(shelfOwnerService.isOwner(ShelfType.OVERFLOW)).isFalse();
+        assertThat(shelfOwnerService.isOwner(ShelfType.HOT)).isTrue();
+    }
+}
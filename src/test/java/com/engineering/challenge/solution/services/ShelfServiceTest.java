@@ -0,0 +1,102 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.RemovalReason;
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.engineering.challenge.solution.domain.entities.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ShelfServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<ShelfEventDTO> sent = new CopyOnWriteArrayList<>();
+
+    private ShelfService shelfService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        KafkaReceiver<String, String> kafkaReceiver = mock(KafkaReceiver.class);
+        when(kafkaReceiver.receive()).thenReturn(Flux.never());
+        KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        when(kafkaSender.send(any())).thenAnswer(invocation -> {
+            Publisher<SenderRecord<String, String, String>> records = invocation.getArgument(0);
+            return Flux.from(records)
+                .doOnNext(record -> sent.add(readEvent(record.value())))
+                .thenMany(Flux.empty());
+        });
+
+        // the first sequence is slow to come, the later changes must not overtake it.
+        AtomicLong sequence = new AtomicLong();
+        ShelfStore shelfStore = mock(ShelfStore.class);
+        when(shelfStore.incrementSequence(ShelfType.HOT)).thenAnswer(invocation -> {
+            if (sequence.get() == 0) Thread.sleep(100);
+            return sequence.incrementAndGet();
+        });
+
+        shelfService = new ShelfService(
+            kafkaReceiver, shelfStore, kafkaSender, objectMapper, mock(ThreadPoolTaskScheduler.class),
+            new KitchenMetrics(new SimpleMeterRegistry()), null
+        );
+        ReflectionTestUtils.setField(shelfService, "topicName", "shelf-events");
+        shelfService.init();
+    }
+
+    @AfterEach
+    void cleanup() {
+        shelfService.cleanup();
+    }
+
+    @Test
+    void testDeltasOfShelfAreSequencedInTheOrderOfTheChanges() throws InterruptedException {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        order.setName("Hot Dog");
+        order.setTemp(ShelfType.HOT);
+
+        shelfService.onOrderAdded(ShelfType.HOT, order);
+        shelfService.onOrderRemoved(ShelfType.HOT, order, RemovalReason.DELIVERED);
+        shelfService.onOrderAdded(ShelfType.HOT, order);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (sent.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sent).extracting(ShelfEventDTO::getEvent)
+            .containsExactly(ShelfEventType.ADDED, ShelfEventType.REMOVED, ShelfEventType.ADDED);
+        assertThat(sent).extracting(ShelfEventDTO::getSequence).containsExactly(1L, 2L, 3L);
+    }
+
+    private ShelfEventDTO readEvent(String json) {
+        try {
+            return objectMapper.readValue(json, ShelfEventDTO.class);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.DirectProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShelfStreamHubTest {
+
+    private static final int HOT_SUBSCRIBERS = 5000;
+
+    private final ObjectMapper objectMapper = spy(new ObjectMapper());
+
+    private final DirectProcessor<ConsumerRecord<String, String>> shelfEvents = DirectProcessor.create();
+
+    private final List<Disposable> subscribers = new ArrayList<>();
+
+    private final ShelfNearCache shelfNearCache = mock(ShelfNearCache.class);
+
+    private ShelfStreamHub shelfStreamHub;
+
+    @BeforeEach
+    void setup() {
+        ShelfService shelfService = mock(ShelfService.class);
+        ConnectableFlux<ConsumerRecord<String, String>> eventPublisher = shelfEvents.publish();
+        when(shelfService.getEventPublisher()).thenReturn(eventPublisher);
+        when(shelfService.getShelfSnapshot(any())).thenAnswer(invocation -> snapshot(invocation.getArgument(0)));
+
+        shelfStreamHub = new ShelfStreamHub(shelfService, objectMapper, shelfNearCache, mock(OrderStatusService.class));
+        shelfStreamHub.init();
+        eventPublisher.connect();
+    }
+
+    @AfterEach
+    void cleanup() {
+        subscribers.forEach(Disposable::dispose);
+        shelfStreamHub.cleanup();
+    }
+
+    @Test
+    void testEventIsDecodedAndSerializedOnceForAllSubscribers() throws Exception {
+        // wait for the initial snapshots.
+        shelfStreamHub.stream(ShelfType.HOT).blockFirst(Duration.ofSeconds(5));
+        shelfStreamHub.stream(ShelfType.COLD).blockFirst(Duration.ofSeconds(5));
+
+        List<List<ServerSentEvent<String>>> hotStreams = new ArrayList<>();
+        for (int i = 0; i < HOT_SUBSCRIBERS; i++) {
+            hotStreams.add(subscribe(ShelfType.HOT));
+        }
+        List<ServerSentEvent<String>> coldStream = subscribe(ShelfType.COLD);
+
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, sequence, "hot", delta(sequence)));
+        }
+
+        // the latest shelf on subscribe plus one per event.
+        assertThat(hotStreams).allSatisfy(stream -> assertThat(stream).hasSize(4));
+        String latestShelf = hotStreams.get(0).get(3).data();
+        assertThat(hotStreams).allSatisfy(stream -> assertThat(stream.get(3).data()).isSameAs(latestShelf));
+        assertThat(latestShelf).contains("\"identifier\":3");
+        assertThat(coldStream).hasSize(1);
+
+        verify(objectMapper, times(3)).readValue(anyString(), eq(ShelfEventDTO.class));
+    }
+
+    @Test
+    void testRecordsWithoutShelfKeyAreNotParsed() throws Exception {
+        shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, 0, null, delta(1)));
+        verify(objectMapper, times(0)).readValue(anyString(), eq(ShelfEventDTO.class));
+    }
+
+    @Test
+    void testShelfIsSerializedOnlyWhenSubscribed() throws Exception {
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, sequence, "hot", delta(sequence)));
+        }
+        verify(objectMapper, never()).writeValueAsString(any());
+
+        // the subscriber starts with the latest shelf, serialized once for it.
+        String latestShelf = shelfStreamHub.stream(ShelfType.HOT).blockFirst(Duration.ofSeconds(5)).data();
+        assertThat(latestShelf).contains("\"identifier\":1", "\"identifier\":2", "\"identifier\":3");
+        verify(objectMapper, times(1)).writeValueAsString(any());
+    }
+
+    @Test
+    void testBadRecordsAreDroppedWithoutStoppingTheStreams() throws Exception {
+        shelfStreamHub.stream(ShelfType.HOT).blockFirst(Duration.ofSeconds(5));
+        List<ServerSentEvent<String>> hotStream = subscribe(ShelfType.HOT);
+        doThrow(new NullPointerException()).when(shelfNearCache).apply(argThat(event -> event.getOrder() == null), anyLong());
+
+        ShelfEventDTO deltaWithoutOrder = new ShelfEventDTO();
+        deltaWithoutOrder.setType(ShelfType.HOT);
+        deltaWithoutOrder.setEvent(ShelfEventType.ADDED);
+        deltaWithoutOrder.setSequence(1L);
+        shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, 0, "unknown", delta(1)));
+        shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, 1, "hot", "not a shelf event"));
+        shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, 2, "hot", new ObjectMapper().writeValueAsString(deltaWithoutOrder)));
+        shelfEvents.onNext(new ConsumerRecord<>("shelf-change-events", 0, 3, "hot", delta(1)));
+
+        assertThat(hotStream).hasSize(2);
+        assertThat(hotStream.get(1).data()).contains("\"identifier\":1");
+    }
+
+    private List<ServerSentEvent<String>> subscribe(ShelfType shelfType) {
+        List<ServerSentEvent<String>> stream = new CopyOnWriteArrayList<>();
+        subscribers.add(shelfStreamHub.stream(shelfType).subscribe(stream::add));
+        return stream;
+    }
+
+    private String delta(long sequence) throws Exception {
+        OrderDTO order = new OrderDTO();
+        order.setIdentifier(sequence);
+        ShelfEventDTO delta = new ShelfEventDTO();
+        delta.setType(ShelfType.HOT);
+        delta.setEvent(ShelfEventType.ADDED);
+        delta.setSequence(sequence);
+        delta.setOrder(order);
+        return new ObjectMapper().writeValueAsString(delta);
+    }
+
+    private static ShelfEventDTO snapshot(ShelfType shelfType) {
+        ShelfEventDTO snapshot = new ShelfEventDTO();
+        snapshot.setType(shelfType);
+        snapshot.setEvent(ShelfEventType.SNAPSHOT);
+        snapshot.setSequence(0L);
+        snapshot.setOrders(Collections.emptyList());
+        return snapshot;
+    }
+}
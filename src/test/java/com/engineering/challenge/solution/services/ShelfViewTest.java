@@ -0,0 +1,83 @@
+package com.engineering.challenge.solution.services;
+
+import com.engineering.challenge.solution.domain.ShelfEventType;
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.dto.OrderDTO;
+import com.engineering.challenge.solution.domain.dto.ShelfEventDTO;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShelfViewTest {
+
+    @Test
+    void testDeltasBeforeTheFirstSnapshotAreReplayed() {
+        ShelfView view = new ShelfView(ShelfType.HOT);
+        // included in the snapshot.
+        assertThat(view.apply(delta(ShelfEventType.ADDED, 3, 1L))).isTrue();
+        // after the snapshot.
+        assertThat(view.apply(delta(ShelfEventType.REMOVED, 5, 1L))).isTrue();
+        assertThat(view.apply(delta(ShelfEventType.ADDED, 4, 2L))).isTrue();
+        assertThat(view.isSynced()).isFalse();
+
+        assertThat(view.apply(snapshot(3, 1L))).isTrue();
+        assertThat(view.isSynced()).isTrue();
+        assertThat(identifiers(view)).containsExactly(2L);
+        assertThat(view.getSequence()).isEqualTo(5);
+    }
+
+    @Test
+    void testGapRequestsSnapshotAndOlderSnapshotIsSkipped() {
+        ShelfView view = new ShelfView(ShelfType.HOT);
+        view.apply(snapshot(10, 1L));
+
+        assertThat(view.apply(delta(ShelfEventType.ADDED, 11, 2L))).isTrue();
+        // 12 is missed.
+        assertThat(view.apply(delta(ShelfEventType.ADDED, 13, 3L))).isFalse();
+        assertThat(identifiers(view)).containsExactly(1L, 2L, 3L);
+
+        // published before the deltas applied.
+        assertThat(view.apply(snapshot(11, 1L, 2L))).isTrue();
+        assertThat(identifiers(view)).containsExactly(1L, 2L, 3L);
+
+        // the requested one.
+        assertThat(view.apply(snapshot(13, 1L, 3L, 4L))).isTrue();
+        assertThat(identifiers(view)).containsExactly(1L, 3L, 4L);
+        // already included in the snapshot.
+        assertThat(view.apply(delta(ShelfEventType.ADDED, 12, 4L))).isTrue();
+        assertThat(view.apply(delta(ShelfEventType.REMOVED, 14, 4L))).isTrue();
+        assertThat(identifiers(view)).containsExactly(1L, 3L);
+    }
+
+    private static ShelfEventDTO delta(ShelfEventType eventType, long sequence, Long identifier) {
+        ShelfEventDTO delta = new ShelfEventDTO();
+        delta.setType(ShelfType.HOT);
+        delta.setEvent(eventType);
+        delta.setSequence(sequence);
+        delta.setOrder(order(identifier));
+        return delta;
+    }
+
+    private static ShelfEventDTO snapshot(long sequence, Long... identifiers) {
+        ShelfEventDTO snapshot = new ShelfEventDTO();
+        snapshot.setType(ShelfType.HOT);
+        snapshot.setEvent(ShelfEventType.SNAPSHOT);
+        snapshot.setSequence(sequence);
+        snapshot.setOrders(Arrays.stream(identifiers).map(ShelfViewTest::order).collect(Collectors.toList()));
+        return snapshot;
+    }
+
+    private static OrderDTO order(Long identifier) {
+        OrderDTO order = new OrderDTO();
+        order.setIdentifier(identifier);
+        return order;
+    }
+
+    private static Object[] identifiers(ShelfView view) {
+        return view.toShelfDTO().getOrders().stream().map(OrderDTO::getIdentifier).toArray();
+    }
+}
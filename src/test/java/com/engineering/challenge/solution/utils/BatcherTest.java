@@ -0,0 +1,49 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatcherTest {
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void cleanup() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testItemsWithinTheWindowRunTogetherUpToTheMaxBatchSize() throws InterruptedException {
+        Batcher<Integer> batcher = new Batcher<>(scheduler, 200, 4, batches::add);
+        for (int i = 0; i < 10; i++) {
+            batcher.add(i);
+        }
+        Thread.sleep(500);
+
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(0)).containsExactly(0, 1, 2, 3);
+        assertThat(batches.get(2)).containsExactly(8, 9);
+
+        // an item after the run schedules a new one.
+        batcher.add(10);
+        Thread.sleep(500);
+        assertThat(batches).hasSize(4);
+        assertThat(batches.get(3)).containsExactly(10);
+    }
+}
@@ -0,0 +1,49 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoalescerTest {
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private final List<String> runs = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void cleanup() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testRequestsWithinTheWindowRunOnce() throws InterruptedException {
+        Coalescer<String> coalescer = new Coalescer<>(scheduler, 200, runs::add);
+        for (int i = 0; i < 100; i++) {
+            coalescer.request("hot");
+        }
+        coalescer.request("cold");
+        Thread.sleep(500);
+
+        assertThat(runs).containsExactlyInAnyOrder("hot", "cold");
+        assertThat(coalescer.getRequestCount("hot")).isEqualTo(100);
+        assertThat(coalescer.getAbsorbedCount("hot")).isEqualTo(99);
+
+        // a request after the run schedules a new one.
+        assertThat(coalescer.request("hot")).isTrue();
+        Thread.sleep(500);
+        assertThat(runs).containsExactlyInAnyOrder("hot", "cold", "hot");
+    }
+}
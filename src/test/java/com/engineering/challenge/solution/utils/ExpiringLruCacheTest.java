@@ -0,0 +1,51 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpiringLruCacheTest {
+
+    @Test
+    void testValueExpiresAfterTheTimeToLive() {
+        ExpiringLruCache<Long, String> cache = new ExpiringLruCache<>(10, 100);
+        cache.putIfReserved(1L, cache.reserve(1L), "hot", 0);
+
+        assertThat(cache.get(1L, 99)).isEqualTo("hot");
+        assertThat(cache.get(1L, 100)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        ExpiringLruCache<Long, String> cache = new ExpiringLruCache<>(2, 100);
+        cache.putIfReserved(1L, cache.reserve(1L), "hot", 0);
+        cache.putIfReserved(2L, cache.reserve(2L), "cold", 0);
+        cache.get(1L, 0);
+        cache.putIfReserved(3L, cache.reserve(3L), "frozen", 0);
+
+        assertThat(cache.get(1L, 0)).isEqualTo("hot");
+        assertThat(cache.get(2L, 0)).isNull();
+        assertThat(cache.get(3L, 0)).isEqualTo("frozen");
+    }
+
+    @Test
+    void testValueReadBeforeAnInvalidationIsNotCached() {
+        ExpiringLruCache<Long, String> cache = new ExpiringLruCache<>(10, 100);
+        Object token = cache.reserve(1L);
+        cache.invalidate(1L);
+
+        assertThat(cache.putIfReserved(1L, token, "hot", 0)).isFalse();
+        assertThat(cache.get(1L, 0)).isNull();
+
+        // a later reservation wins over the earlier one.
+        Object first = cache.reserve(1L);
+        Object second = cache.reserve(1L);
+        assertThat(cache.putIfReserved(1L, first, "hot", 0)).isFalse();
+        assertThat(cache.putIfReserved(1L, second, "cold", 0)).isTrue();
+        assertThat(cache.get(1L, 0)).isEqualTo("cold");
+    }
+}
@@ -0,0 +1,84 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedTimingWheelTest {
+
+    private HashedTimingWheel timingWheel;
+
+    private final List<Integer> fired = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        // a round lasts 80ms, so the longer timers wait for more rounds.
+        timingWheel = new HashedTimingWheel("TestTimingWheel", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+    }
+
+    @AfterEach
+    void cleanup() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void testTimersFireInDeadlineOrderAcrossRounds() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+        timingWheel.schedule(() -> fire(3, latch), 250, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(() -> fire(1, latch), 20, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(() -> fire(2, latch), 100, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly(1, 2, 3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(250);
+        assertThat(timingWheel.getPendingTimers()).isZero();
+    }
+
+    @Test
+    void testCancelledTimerNeverFires() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedTimingWheel.Timeout cancelled = timingWheel.schedule(() -> fire(1, latch), 50, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(() -> fire(2, latch), 100, TimeUnit.MILLISECONDS);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThat(cancelled.cancel()).isFalse();
+        assertThat(timingWheel.getPendingTimers()).isEqualTo(1);
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly(2);
+        assertThat(cancelled.isExpired()).isFalse();
+    }
+
+    @Test
+    void testOverdueTimerFiresOnNextTick() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedTimingWheel.Timeout timeout = timingWheel.scheduleAt(() -> fire(1, latch), System.currentTimeMillis() - 1000);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+    }
+
+    @Test
+    void testWheelSizeIsRoundedUpToPowerOfTwo() {
+        HashedTimingWheel wheel = new HashedTimingWheel("TestTimingWheel", 1, TimeUnit.MILLISECONDS, 500, Runnable::run);
+        try {
+            assertThat(wheel.getWheelSize()).isEqualTo(512);
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    private void fire(int timer, CountDownLatch latch) {
+        fired.add(timer);
+        latch.countDown();
+    }
+}
@@ -0,0 +1,50 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(2);
+        assertThat(map.put(1L, "a")).isNull();
+        assertThat(map.put(0L, "zero")).isNull();
+        assertThat(map.put(-1L, "minus")).isNull();
+        assertThat(map.put(1L, "b")).isEqualTo("a");
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.get(1L)).isEqualTo("b");
+        assertThat(map.get(0L)).isEqualTo("zero");
+        assertThat(map.get(2L)).isNull();
+
+        assertThat(map.remove(0L)).isEqualTo("zero");
+        assertThat(map.remove(0L)).isNull();
+        assertThat(map.containsKey(0L)).isFalse();
+        assertThat(map.values()).containsExactlyInAnyOrder("b", "minus");
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomChurn() {
+        // few distinct keys, so the probe sequences collide and the removals shift entries back all the time.
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(2_000) << 12;
+            if (random.nextBoolean()) {
+                assertThat(map.put(key, (long) i)).isEqualTo(expected.put(key, (long) i));
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        map.forEach((key, value) -> assertThat(expected.get(key)).isEqualTo(value));
+    }
+}
@@ -0,0 +1,124 @@
+package com.engineering.challenge.solution.utils;
+
+import com.engineering.challenge.solution.domain.ShelfType;
+import com.engineering.challenge.solution.domain.entities.Order;
+
+import org.junit.jupiter.api.Test;
+import org.redisson.codec.SerializationCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderCodecTest {
+
+    // not the FST codec, which fails without reflective access to the JDK internals on JDK 9+.
+    private final OrderCodec codec = new OrderCodec(new SerializationCodec());
+
+    @Test
+    void testOrderRoundTrip() throws IOException {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        order.setName("Banana Split");
+        order.setTemp(ShelfType.FROZEN);
+        order.setShelfLife(20d);
+        order.setDecayRate(0.63d);
+        order.setOnShelfDate(LocalDateTime.of(2020, 5, 1, 12, 30, 15, 123_000_000));
+        order.setIsOnOverflowShelf(true);
+        order.onMove();
+
+        Order decoded = (Order) roundTrip(order);
+        assertThat(decoded).isEqualTo(order);
+    }
+
+    @Test
+    void testOrderWithoutOptionalFields() throws IOException {
+        Order order = new Order();
+        order.setName("Yogurt");
+
+        Order decoded = (Order) roundTrip(order);
+        assertThat(decoded.getIdentifier()).isNull();
+        assertThat(decoded.getValue()).isNull();
+        assertThat(decoded.getOnShelfDate()).isNull();
+        assertThat(decoded.getName()).isEqualTo("Yogurt");
+        assertThat(decoded.getIsOnOverflowShelf()).isFalse();
+    }
+
+    @Test
+    void testOrderOfSchemaVersion1IsRead() throws IOException {
+        LocalDateTime onShelfDate = LocalDateTime.of(2020, 5, 1, 12, 30, 15, 123_000_000);
+        byte[] name = "Yogurt".getBytes(StandardCharsets.UTF_8);
+        // name and on-shelf date, the date as the epoch millis of the local date-time as if it's in UTC.
+        ByteBuf buf = Unpooled.buffer()
+            .writeByte(OrderCodec.TYPE_ORDER)
+            .writeByte(1)
+            .writeByte(1 << 1 | 1 << 6)
+            .writeInt(name.length)
+            .writeBytes(name)
+            .writeLong(onShelfDate.toInstant(ZoneOffset.UTC).toEpochMilli())
+            .writeBoolean(true);
+        try {
+            Order decoded = (Order) codec.getMapValueDecoder().decode(buf, null);
+            assertThat(decoded.getName()).isEqualTo("Yogurt");
+            assertThat(decoded.getOnShelfDate()).isEqualTo(onShelfDate);
+            assertThat(decoded.getIsOnOverflowShelf()).isTrue();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void testDefaultFallbackWorksWithoutReflectiveAccess() throws IOException {
+        OrderCodec defaultCodec = new OrderCodec();
+        ByteBuf buf = defaultCodec.getMapValueEncoder().encode(Collections.singletonList(3));
+        try {
+            assertThat(defaultCodec.getMapValueDecoder().decode(buf, null)).isEqualTo(Collections.singletonList(3));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void testIdentifierStatusAndFallback() throws IOException {
+        assertThat(roundTrip(42L)).isEqualTo(42L);
+        assertThat(roundTrip("overflow")).isEqualTo("overflow");
+        assertThat(roundTrip(Collections.singletonList(3))).isEqualTo(Collections.singletonList(3));
+    }
+
+    @Test
+    void testOrderIsSmallerThanJavaSerialization() throws IOException {
+        Order order = new Order();
+        order.setIdentifier(7L);
+        order.setName("Banana Split");
+        order.setTemp(ShelfType.FROZEN);
+        order.setShelfLife(20d);
+        order.setDecayRate(0.63d);
+        order.setOnShelfDate(LocalDateTime.now());
+        order.onMove();
+
+        ByteBuf compact = codec.getMapValueEncoder().encode(order);
+        ByteBuf serialized = new SerializationCodec().getMapValueEncoder().encode(order);
+        try {
+            assertThat(compact.readableBytes()).isLessThan(serialized.readableBytes());
+        } finally {
+            compact.release();
+            serialized.release();
+        }
+    }
+
+    private Object roundTrip(Object value) throws IOException {
+        ByteBuf buf = codec.getMapValueEncoder().encode(value);
+        try {
+            return codec.getMapValueDecoder().decode(buf, null);
+        } finally {
+            buf.release();
+        }
+    }
+}
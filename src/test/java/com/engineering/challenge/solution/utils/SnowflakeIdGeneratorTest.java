@@ -0,0 +1,53 @@
+package com.engineering.challenge.solution.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    void testIdsAreIncreasingAndCarryTheNodeId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(42);
+        long before = System.currentTimeMillis();
+        long last = 0;
+        // more than one millisecond worth of sequence numbers.
+        for (int i = 0; i < 10000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(last);
+            assertThat(SnowflakeIdGenerator.nodeIdOf(id)).isEqualTo(42);
+            last = id;
+        }
+        assertThat(SnowflakeIdGenerator.timestampOf(last)).isGreaterThanOrEqualTo(before);
+    }
+
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(ids).hasSize(8 * 20000);
+    }
+
+    @Test
+    void testNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}